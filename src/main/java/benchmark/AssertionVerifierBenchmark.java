@@ -0,0 +1,87 @@
+package benchmark;
+
+import modern.PasskeyCredential;
+import passkey.AssertionVerifier;
+import passkey.CoseKeys;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+
+/**
+ * WebAuthn assertion verifications per second for ES256, EdDSA and RS256, with the
+ * decoded-key cache warm (repeat logins) and cold (key decoded and verifier initialised
+ * on every call), plus one tampered signature per algorithm as a sanity check.
+ *
+ * <pre>java benchmark.AssertionVerifierBenchmark [iterations]</pre>
+ */
+public class AssertionVerifierBenchmark {
+
+    private static final String RP_ID = "localhost";
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+
+        run("ES256", "EC", "SHA256withECDSA", iterations);
+        run("EdDSA", "Ed25519", "Ed25519", iterations);
+        run("RS256", "RSA", "SHA256withRSA", iterations / 5);
+    }
+
+    private static void run(String name, String keyAlgorithm, String signatureAlgorithm, int iterations)
+            throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(keyAlgorithm);
+        if (keyAlgorithm.equals("EC")) {
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+        } else if (keyAlgorithm.equals("RSA")) {
+            generator.initialize(2048);
+        }
+        KeyPair pair = generator.generateKeyPair();
+        byte[] cose = switch (name) {
+            case "ES256" -> CoseKeys.encodeEs256((ECPublicKey) pair.getPublic());
+            case "EdDSA" -> CoseKeys.encodeEd25519(pair.getPublic());
+            default -> CoseKeys.encodeRs256((RSAPublicKey) pair.getPublic());
+        };
+        PasskeyCredential credential = new PasskeyCredential("cred-" + name, "alice",
+                Base64.getUrlEncoder().withoutPadding().encodeToString(cose));
+
+        // Counter 0: authenticator without a signature counter, so the same assertion
+        // can be replayed against the verifier for the benchmark.
+        byte[] authenticatorData = new byte[37];
+        System.arraycopy(MessageDigest.getInstance("SHA-256").digest(RP_ID.getBytes(StandardCharsets.UTF_8)),
+                0, authenticatorData, 0, 32);
+        authenticatorData[32] = 0x05; // UP | UV
+        byte[] clientData = ("{\"type\":\"webauthn.get\",\"challenge\":\"dGVzdA\",\"origin\":\"http://localhost:7000\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        Signature signer = Signature.getInstance(signatureAlgorithm);
+        signer.initSign(pair.getPrivate());
+        signer.update(authenticatorData);
+        signer.update(MessageDigest.getInstance("SHA-256").digest(clientData));
+        byte[] signature = signer.sign();
+        byte[] tampered = signature.clone();
+        tampered[tampered.length - 1] ^= 1;
+
+        AssertionVerifier verifier = new AssertionVerifier(RP_ID);
+        System.out.printf("%s: valid=%b tampered=%b%n", name,
+                verifier.verify(credential, authenticatorData, clientData, signature),
+                verifier.verify(credential, authenticatorData, clientData, tampered));
+
+        int warmup = Math.max(100, iterations / 5);
+        Bench.measure(name + " verify, cache warm", warmup, iterations, () -> {
+            if (!verifier.verify(credential, authenticatorData, clientData, signature)) {
+                throw new IllegalStateException("verification failed");
+            }
+        });
+        Bench.measure(name + " verify, cache cold", warmup, iterations, () -> {
+            verifier.invalidate(credential.getId());
+            if (!verifier.verify(credential, authenticatorData, clientData, signature)) {
+                throw new IllegalStateException("verification failed");
+            }
+        });
+    }
+}
@@ -0,0 +1,186 @@
+package benchmark;
+
+import modern.PasskeyCredential;
+import passkey.CredentialRepository;
+import passkey.WebAuthnService;
+import storage.AuditLog;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Compares {@link WebAuthnService#authenticate(String, String)} with the audit pipeline
+ * against the same lookup followed by the {@code System.out.println} it replaced. The
+ * println goes to a file through a stream built like {@code System.out} (8 KB buffer,
+ * flushed on every line), so the console does not skew the result.
+ * <ul>
+ *     <li>Saturation: threads call in a tight loop. The pipeline column counts calls,
+ *     including those whose event was dropped because the writer fell behind; the
+ *     written column counts events that reached the file.</li>
+ *     <li>Fixed rate: {@code rate} calls/sec for 2 s, below the writer's capacity, with
+ *     the caller's latency and the process CPU per call, the writer thread
+ *     included.</li>
+ *     <li>Rotation: fills a small {@link AuditLog} with 1 MB files.</li>
+ * </ul>
+ *
+ * <pre>java benchmark.AuditLogBenchmark [operations] [maxThreads] [rate]</pre>
+ */
+public class AuditLogBenchmark {
+
+    private static final int USERS = 1_000;
+
+    private static final com.sun.management.OperatingSystemMXBean cpu =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    @FunctionalInterface
+    private interface Operation {
+        void run(int i);
+    }
+
+    @SuppressWarnings("deprecation") // the username-only check is the cheapest call that records an event
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int rate = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+        Path directory = Files.createTempDirectory("audit-benchmark");
+        System.setProperty("audit.dir", directory.resolve("shared").toString());
+
+        CredentialRepository repository = new CredentialRepository();
+        WebAuthnService service = new WebAuthnService(repository);
+        String[] ids = new String[USERS];
+        String[] names = new String[USERS];
+        for (int u = 0; u < USERS; u++) {
+            names[u] = "user" + u;
+            ids[u] = service.registerUser(names[u]).getId();
+        }
+        PrintStream stdout = new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(directory.resolve("stdout.txt").toFile()), 8192), true);
+        AuditLog audit = AuditLog.shared();
+        System.out.printf("%,d authentications per run, %d cores, files in %s%n",
+                operations, Runtime.getRuntime().availableProcessors(), directory);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 4) {
+            double println = throughput(threads, operations, i -> {
+                int u = i % USERS;
+                PasskeyCredential cred = repository.findById(ids[u]);
+                boolean valid = cred != null && cred.getUsername().equals(names[u]);
+                stdout.println("Validation for " + names[u] + " = " + valid);
+            });
+            long droppedBefore = audit.getDropped();
+            long recordedBefore = audit.getRecorded();
+            long writtenBefore = audit.getWritten();
+            long start = System.nanoTime();
+            double pipeline = throughput(threads, operations, i -> {
+                int u = i % USERS;
+                service.authenticate(ids[u], names[u]);
+            });
+            while (audit.getWritten() - writtenBefore < audit.getRecorded() - recordedBefore) {
+                Thread.sleep(1);
+            }
+            double writtenRate = (audit.getWritten() - writtenBefore) / ((System.nanoTime() - start) / 1e9);
+            System.out.printf("%2d threads: println %,10.0f/s   pipeline %,10.0f calls/s, %,10.0f written/s"
+                            + "   (%,d dropped)%n",
+                    threads, println, pipeline, writtenRate, audit.getDropped() - droppedBefore);
+        }
+
+        System.out.printf("Fixed rate: %,d calls/sec for 2 s on 4 threads%n", rate);
+        paced("println", 4, rate, i -> {
+            int u = i % USERS;
+            PasskeyCredential cred = repository.findById(ids[u]);
+            boolean valid = cred != null && cred.getUsername().equals(names[u]);
+            stdout.println("Validation for " + names[u] + " = " + valid);
+        }, null);
+        paced("audit pipeline", 4, rate, i -> {
+            int u = i % USERS;
+            service.authenticate(ids[u], names[u]);
+        }, audit);
+        audit.close();
+        System.out.printf("Shared log: %,d recorded, %,d dropped, %,d written in %,d batches (%.0f per write)%n",
+                audit.getRecorded(), audit.getDropped(), audit.getWritten(), audit.getBatches(),
+                (double) audit.getWritten() / Math.max(1, audit.getBatches()));
+
+        AuditLog small = new AuditLog(directory.resolve("rotation"), 4096, 1024 * 1024, 3);
+        for (int i = 0; i < 1_000_000; i++) {
+            small.record("passkey.validated", names[i % USERS], "true");
+        }
+        small.close();
+        System.out.printf("Rotation: 1,000,000 events into 1 MB files -> %,d written, %,d dropped, %d rotations%n",
+                small.getWritten(), small.getDropped(), small.getRotations());
+        try (Stream<Path> files = Files.list(directory.resolve("rotation"))) {
+            files.sorted().forEach(file -> {
+                try {
+                    System.out.printf("  %-18s %,10d bytes%n", file.getFileName(), Files.size(file));
+                } catch (java.io.IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+    }
+
+    private static void paced(String name, int threads, int rate, Operation operation, AuditLog audit)
+            throws InterruptedException {
+        int total = 2 * rate;
+        long[] latencies = new long[total];
+        AtomicInteger completed = new AtomicInteger();
+        long droppedBefore = audit != null ? audit.getDropped() : 0;
+        long writtenTarget = audit != null ? audit.getWritten() + total : 0;
+        long period = 1_000_000_000L * threads / rate;
+        long cpuBefore = cpu.getProcessCpuTime();
+        long start = System.nanoTime();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            workers[t] = new Thread(() -> {
+                for (int i = first, n = 0; i < total; i += threads, n++) {
+                    long wait = start + n * period - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    long begin = System.nanoTime();
+                    operation.run(i);
+                    latencies[completed.getAndIncrement()] = System.nanoTime() - begin;
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        while (audit != null && audit.getWritten() < writtenTarget - (audit.getDropped() - droppedBefore)) {
+            Thread.sleep(1);
+        }
+        double cpuPerCall = (cpu.getProcessCpuTime() - cpuBefore) / 1000.0 / total;
+        Bench.printLatencies("  " + name, latencies, completed.get());
+        System.out.printf("  %-38s %6.2f us CPU per call (process, all threads)%s%n", "", cpuPerCall,
+                audit != null ? String.format(", %,d dropped", audit.getDropped() - droppedBefore) : "");
+    }
+
+    private static double throughput(int threads, int operations, Operation operation) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < operations) {
+                    operation.run(i);
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        pool.shutdown();
+        return operations / ((System.nanoTime() - start) / 1e9);
+    }
+}
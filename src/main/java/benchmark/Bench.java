@@ -0,0 +1,70 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Minimal timing and allocation helpers shared by the benchmark mains in this package.
+ * Allocation figures come from the HotSpot per-thread allocation counter, so they only
+ * account for work done on the calling thread.
+ */
+public final class Bench {
+
+    private static final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private Bench() {
+    }
+
+    public static long allocatedBytes() {
+        return threadBean.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Runs the task {@code warmup} times, then {@code iterations} times while measuring,
+     * and prints ns/op and allocated bytes/op.
+     */
+    public static void measure(String name, int warmup, int iterations, Task task) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            task.run();
+        }
+
+        long allocBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocBefore;
+
+        System.out.printf("%-40s %12.1f ns/op %12.1f B/op%n",
+                name, (double) elapsed / iterations, (double) allocated / iterations);
+    }
+
+    /**
+     * Prints p50/p99/max of the given latency samples (nanoseconds) in microseconds.
+     */
+    public static void printLatencies(String name, long[] samplesNanos, int count) {
+        long[] sorted = Arrays.copyOf(samplesNanos, count);
+        Arrays.sort(sorted);
+        System.out.printf("%-40s p50=%8.1f us  p99=%8.1f us  max=%8.1f us  (n=%d)%n",
+                name,
+                percentile(sorted, 0.50) / 1000.0,
+                percentile(sorted, 0.99) / 1000.0,
+                (count == 0 ? 0 : sorted[count - 1]) / 1000.0,
+                count);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,39 @@
+package benchmark;
+
+import qrcode.BulkQRScanner;
+import qrcode.QRCodeGenerator;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Files/sec of {@link BulkQRScanner} as a function of thread count. Generates an archive
+ * of distinct QR images (default 2000; pass 100000 for the full audit-sized run) in a
+ * temporary directory, spread over subdirectories of 1000 files, and discards the JSONL.
+ */
+public class BulkScanBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int images = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Path root = Files.createTempDirectory("qr-archive");
+        QRCodeGenerator generator = QRCodeGenerator.builder().size(200).autoDisplay(false).build();
+
+        for (int i = 0; i < images; i++) {
+            Path dir = root.resolve("batch-" + (i / 1000));
+            Files.createDirectories(dir);
+            try (OutputStream out = Files.newOutputStream(dir.resolve("qr-" + i + ".png"))) {
+                generator.writeQRCodePng("{\"token\":\"AUDIT" + i + "\",\"type\":\"auth\"}", out);
+            }
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println(images + " images, " + cores + " cores");
+        for (int threads = 1; threads <= Math.max(2, cores); threads *= 2) {
+            BulkQRScanner.Summary summary = new BulkQRScanner(threads).scanDirectory(root, Writer.nullWriter());
+            System.out.printf("threads=%-3d %10.1f files/sec (%d decoded, %d failed)%n",
+                    threads, summary.filesPerSecond(), summary.decoded, summary.failed);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package benchmark;
+
+import passkey.AttestationObject;
+import passkey.AuthenticatorData;
+import passkey.CborWriter;
+import passkey.CoseKeys;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+
+/**
+ * Parse throughput and allocation of {@link AttestationObject} and
+ * {@link AuthenticatorData} for "none" and "packed" attestations with an ES256 key,
+ * using reused parser instances as the registration and login paths do. COSE key
+ * decoding to a JCA key is shown for scale.
+ *
+ * <pre>java benchmark.CborParseBenchmark [iterations]</pre>
+ */
+public class CborParseBenchmark {
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        byte[] cose = CoseKeys.encodeEs256((ECPublicKey) generator.generateKeyPair().getPublic());
+        SecureRandom random = new SecureRandom();
+        byte[] credentialId = new byte[32];
+        random.nextBytes(credentialId);
+        byte[] rpIdHash = MessageDigest.getInstance("SHA-256").digest("localhost".getBytes(StandardCharsets.UTF_8));
+
+        byte[] registrationData = authenticatorData(rpIdHash, credentialId, cose);
+        byte[] signature = new byte[71];
+        byte[] certificate = new byte[700];
+        random.nextBytes(signature);
+        random.nextBytes(certificate);
+
+        byte[] none = new CborWriter()
+                .writeMapHeader(3)
+                .writeText("fmt").writeText("none")
+                .writeText("attStmt").writeMapHeader(0)
+                .writeText("authData").writeBytes(registrationData)
+                .toByteArray();
+        byte[] packed = new CborWriter()
+                .writeMapHeader(3)
+                .writeText("fmt").writeText("packed")
+                .writeText("attStmt").writeMapHeader(3)
+                .writeText("alg").writeInt(CoseKeys.ES256)
+                .writeText("sig").writeBytes(signature)
+                .writeText("x5c").writeArrayHeader(1).writeBytes(certificate)
+                .writeText("authData").writeBytes(registrationData)
+                .toByteArray();
+        byte[] assertionData = new byte[37];
+        System.arraycopy(rpIdHash, 0, assertionData, 0, 32);
+        assertionData[32] = AuthenticatorData.FLAG_USER_PRESENT | AuthenticatorData.FLAG_USER_VERIFIED;
+        assertionData[36] = 7;
+
+        ByteBuffer noneBuffer = ByteBuffer.wrap(none);
+        ByteBuffer packedBuffer = ByteBuffer.wrap(packed);
+        ByteBuffer assertionBuffer = ByteBuffer.wrap(assertionData);
+        AttestationObject attestation = new AttestationObject();
+        AuthenticatorData authData = new AuthenticatorData();
+
+        attestation.wrap(packedBuffer);
+        System.out.printf("none: %d bytes, packed: %d bytes, fmt=%s, credentialId=%d bytes, COSE key=%d bytes%n%n",
+                none.length, packed.length, attestation.format(),
+                attestation.authenticatorData().credentialId().remaining(),
+                attestation.authenticatorData().credentialPublicKey().remaining());
+
+        Bench.measure("attestation none: parse", iterations / 10, iterations, () -> {
+            sink = attestation.wrap(noneBuffer);
+        });
+        Bench.measure("attestation packed: parse", iterations / 10, iterations, () -> {
+            sink = attestation.wrap(packedBuffer);
+        });
+        Bench.measure("attestation packed: parse + slices", iterations / 10, iterations, () -> {
+            AuthenticatorData data = attestation.wrap(packedBuffer).authenticatorData();
+            sink = data.credentialId();
+            sink = data.credentialPublicKey();
+        });
+        Bench.measure("assertion authenticatorData: parse", iterations / 10, iterations, () -> {
+            sink = authData.wrap(assertionBuffer);
+        });
+        Bench.measure("COSE key -> PublicKey (for scale)", 2_000, 20_000, () -> {
+            sink = CoseKeys.decode(attestation.authenticatorData().credentialPublicKey());
+        });
+    }
+
+    private static byte[] authenticatorData(byte[] rpIdHash, byte[] credentialId, byte[] cose) {
+        byte[] data = new byte[37 + 16 + 2 + credentialId.length + cose.length];
+        System.arraycopy(rpIdHash, 0, data, 0, 32);
+        data[32] = AuthenticatorData.FLAG_USER_PRESENT | AuthenticatorData.FLAG_USER_VERIFIED
+                | AuthenticatorData.FLAG_ATTESTED_CREDENTIAL;
+        int offset = 37 + 16;
+        data[offset] = (byte) (credentialId.length >>> 8);
+        data[offset + 1] = (byte) credentialId.length;
+        System.arraycopy(credentialId, 0, data, offset + 2, credentialId.length);
+        System.arraycopy(cose, 0, data, offset + 2 + credentialId.length, cose.length);
+        return data;
+    }
+}
@@ -0,0 +1,149 @@
+package benchmark;
+
+import passkey.ChallengeStore;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contention runs for {@link ChallengeStore}.
+ * <ul>
+ *     <li>Throughput: 1 to {@code maxThreads} threads each start and finish ceremonies
+ *     (issue + consume) with {@code pending} ceremonies left open in the background.
+ *     The baseline is a HashMap behind one lock with one shared SecureRandom, cleaned
+ *     by a full scan every {@code 10_000} issues.</li>
+ *     <li>Race: threads race to consume every challenge; each must be accepted exactly
+ *     once.</li>
+ *     <li>Churn: challenges issued and never answered stay bounded by the capacity.</li>
+ * </ul>
+ *
+ * <pre>java benchmark.ChallengeStoreBenchmark [maxThreads] [operations] [pending]</pre>
+ */
+public class ChallengeStoreBenchmark {
+
+    private static final long TTL_MS = 120_000;
+    private static final int CLEANUP_EVERY = 10_000;
+
+    /** The obvious store: one lock around a HashMap, expiry by periodic full scan. */
+    private static class LockedChallengeMap {
+        private final Map<String, Long> challenges = new HashMap<>();
+        private final SecureRandom random = new SecureRandom();
+        private int issuedSinceCleanup;
+
+        synchronized String issue() {
+            byte[] bytes = new byte[32];
+            random.nextBytes(bytes);
+            String challenge = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+            long now = System.currentTimeMillis();
+            challenges.put(challenge, now + TTL_MS);
+            if (++issuedSinceCleanup >= CLEANUP_EVERY) {
+                issuedSinceCleanup = 0;
+                challenges.values().removeIf(expiresAt -> expiresAt <= now);
+            }
+            return challenge;
+        }
+
+        synchronized boolean consume(String challenge) {
+            Long expiresAt = challenges.remove(challenge);
+            return expiresAt != null && expiresAt > System.currentTimeMillis();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Ceremony {
+        void run();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int pending = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+        System.out.printf("%d cores, %,d ceremonies per run, %,d left open%n",
+                Runtime.getRuntime().availableProcessors(), operations, pending);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            LockedChallengeMap locked = new LockedChallengeMap();
+            for (int i = 0; i < pending; i++) {
+                locked.issue();
+            }
+            double lockedRate = throughput(threads, operations, () -> locked.consume(locked.issue()));
+
+            try (ChallengeStore store = new ChallengeStore(2 * pending, TTL_MS)) {
+                for (int i = 0; i < pending; i++) {
+                    store.issue(ChallengeStore.AUTHENTICATION, null);
+                }
+                double storeRate = throughput(threads, operations,
+                        () -> store.consume(store.issue(ChallengeStore.AUTHENTICATION, null), ChallengeStore.AUTHENTICATION));
+                System.out.printf("%2d threads: locked map %,10.0f/s   ChallengeStore %,10.0f/s%n",
+                        threads, lockedRate, storeRate);
+            }
+        }
+
+        race(Math.max(2, maxThreads / 2), 200_000);
+        churn(100_000, 1_000_000);
+    }
+
+    private static double throughput(int threads, int operations, Ceremony ceremony) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                while (next.getAndIncrement() < operations) {
+                    ceremony.run();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        pool.shutdown();
+        return operations / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void race(int threads, int challenges) throws InterruptedException {
+        try (ChallengeStore store = new ChallengeStore(challenges, TTL_MS)) {
+            String[] issued = new String[challenges];
+            for (int i = 0; i < challenges; i++) {
+                issued[i] = store.issue(ChallengeStore.AUTHENTICATION, null);
+            }
+            AtomicLong wins = new AtomicLong();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                boolean forward = t % 2 == 0;
+                pool.execute(() -> {
+                    for (int i = 0; i < challenges; i++) {
+                        if (store.consume(issued[forward ? i : challenges - 1 - i], ChallengeStore.AUTHENTICATION) != null) {
+                            wins.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                });
+            }
+            done.await();
+            pool.shutdown();
+            System.out.printf("Race: %,d challenges, %d consumers each trying every one -> %,d accepted (%s)%n",
+                    challenges, threads, wins.get(), wins.get() == challenges && store.size() == 0 ? "OK" : "FAILED");
+        }
+    }
+
+    private static void churn(int capacity, int count) {
+        try (ChallengeStore store = new ChallengeStore(capacity, TTL_MS)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                store.issue(ChallengeStore.REGISTRATION, "user" + (i % 1000));
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Churn: %,d unanswered challenges, capacity %,d -> %,d live, %,d evicted, %,.0f issues/sec%n",
+                    count, capacity, store.size(), store.getEvicted(), count / seconds);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package benchmark;
+
+import org.example.QRCodeConfirmationServer;
+import qrcode.QRAuthService;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Requests/sec and latency of {@link QRCodeConfirmationServer} with the blocking engine
+ * (thread per connection, {@code Connection: close}) and the NIO engine (keep-alive),
+ * driven by a load generator in the same JVM over loopback.
+ * <ul>
+ *     <li>home: {@code clients} connections asking for {@code /} in a loop;</li>
+ *     <li>confirm: the phone's round trip for a fresh session: {@code GET /confirm},
+ *     {@code POST /action/confirm}, {@code GET /check-status};</li>
+ *     <li>pipelined (NIO only): {@code /check-status} sent 8 at a time before reading
+ *     the answers.</li>
+ * </ul>
+ * Clients reconnect whenever the server closes, and we count the connections opened.
+ *
+ * <pre>java benchmark.ConfirmationServerBenchmark [requests] [flows] [clients]</pre>
+ */
+public class ConfirmationServerBenchmark {
+
+    private static final int BLOCKING_PORT = 18094;
+    private static final int NIO_PORT = 18095;
+    private static final int PIPELINE_DEPTH = 8;
+
+    @FunctionalInterface
+    private interface Work {
+        /** Sends request {@code i} on the client, recording one latency sample per response. */
+        void run(Client client, int i, long[] latencies, AtomicInteger completed) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int flows = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        QRAuthService authService = new QRAuthService("http://localhost:8080");
+        authService.registerUser("alice@example.com", "Alice Tester");
+        String[] queries = new String[2 * (flows + flows / 10) + 1];
+        for (int i = 0; i < queries.length; i++) {
+            String url = authService.generateAuthSession("alice@example.com");
+            queries[i] = url.substring(url.indexOf('?') + 1);
+        }
+        AtomicInteger nextSession = new AtomicInteger();
+
+        QRCodeConfirmationServer blocking = new QRCodeConfirmationServer(BLOCKING_PORT, authService,
+                QRCodeConfirmationServer.Engine.BLOCKING);
+        QRCodeConfirmationServer nio = new QRCodeConfirmationServer(NIO_PORT, authService,
+                QRCodeConfirmationServer.Engine.NIO);
+        blocking.start();
+        nio.start();
+        Thread.sleep(500);
+
+        System.out.printf("%n%,d home requests, %,d confirm round trips, %d clients, %d cores%n",
+                requests, flows, clients, Runtime.getRuntime().availableProcessors());
+
+        byte[] home = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        Work homeWork = (client, i, latencies, completed) -> {
+            long begin = System.nanoTime();
+            client.exchange(home);
+            latencies[completed.getAndIncrement()] = System.nanoTime() - begin;
+        };
+        Work confirmWork = (client, i, latencies, completed) -> {
+            String query = queries[nextSession.getAndIncrement()];
+            String session = query.substring(0, query.indexOf('&'));
+            byte[][] flow = {
+                    ("GET /confirm?" + query + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                            .getBytes(StandardCharsets.US_ASCII),
+                    ("POST /action/confirm HTTP/1.1\r\nHost: localhost\r\n"
+                            + "Content-Type: application/x-www-form-urlencoded\r\n"
+                            + "Content-Length: " + query.length() + "\r\n\r\n" + query)
+                            .getBytes(StandardCharsets.US_ASCII),
+                    ("GET /check-status?" + session + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                            .getBytes(StandardCharsets.US_ASCII)};
+            for (byte[] request : flow) {
+                long begin = System.nanoTime();
+                client.exchange(request);
+                latencies[completed.getAndIncrement()] = System.nanoTime() - begin;
+            }
+        };
+        String pollQuery = queries[queries.length - 1];
+        byte[] poll = ("GET /check-status?" + pollQuery.substring(0, pollQuery.indexOf('&'))
+                + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] batch = new byte[poll.length * PIPELINE_DEPTH];
+        for (int d = 0; d < PIPELINE_DEPTH; d++) {
+            System.arraycopy(poll, 0, batch, d * poll.length, poll.length);
+        }
+        Work pipelinedWork = (client, i, latencies, completed) -> {
+            long begin = System.nanoTime();
+            client.pipeline(batch, PIPELINE_DEPTH);
+            long perRequest = (System.nanoTime() - begin) / PIPELINE_DEPTH;
+            for (int d = 0; d < PIPELINE_DEPTH; d++) {
+                latencies[completed.getAndIncrement()] = perRequest;
+            }
+        };
+
+        for (int round = 0; round < 2; round++) {
+            boolean warmup = round == 0;
+            int scale = warmup ? 10 : 1;
+            System.out.println(warmup ? "warm-up" : "measured");
+            run("home     blocking", BLOCKING_PORT, clients, requests / scale, 1, homeWork);
+            run("home     nio", NIO_PORT, clients, requests / scale, 1, homeWork);
+            run("confirm  blocking", BLOCKING_PORT, clients, flows / scale, 3, confirmWork);
+            run("confirm  nio", NIO_PORT, clients, flows / scale, 3, confirmWork);
+            run("pipelined nio (x" + PIPELINE_DEPTH + ")", NIO_PORT, clients,
+                    requests / scale / PIPELINE_DEPTH, PIPELINE_DEPTH, pipelinedWork);
+        }
+
+        blocking.stop();
+        nio.stop();
+        System.exit(0);
+    }
+
+    private static void run(String name, int port, int clients, int iterations,
+                            int requestsPerIteration, Work work) throws InterruptedException {
+        long[] latencies = new long[iterations * requestsPerIteration];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger connections = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Thread[] threads = new Thread[clients];
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            threads[c] = new Thread(() -> {
+                Client client = new Client(port);
+                int i;
+                while ((i = next.getAndIncrement()) < iterations) {
+                    try {
+                        work.run(client, i, latencies, completed);
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                        client.close();
+                    }
+                }
+                client.close();
+                connections.addAndGet(client.connects);
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Bench.printLatencies(String.format("  %-22s %8.0f req/s", name, completed.get() / seconds),
+                latencies, completed.get());
+        System.out.printf("  %-40s %,d connections for %,d requests, %d failed%n",
+                "", connections.get(), completed.get(), failed.get());
+    }
+
+    /** One client connection, reopened whenever the server closes it. */
+    private static final class Client {
+        final int port;
+        Socket socket;
+        InputStream in;
+        OutputStream out;
+        int connects;
+
+        Client(int port) {
+            this.port = port;
+        }
+
+        void exchange(byte[] request) throws IOException {
+            pipeline(request, 1);
+        }
+
+        /** Writes {@code responses} requests in one go, then reads their responses. */
+        void pipeline(byte[] requests, int responses) throws IOException {
+            if (socket == null) {
+                socket = new Socket("localhost", port);
+                socket.setTcpNoDelay(true);
+                in = new BufferedInputStream(socket.getInputStream());
+                out = socket.getOutputStream();
+                connects++;
+            }
+            out.write(requests);
+            out.flush();
+            boolean close = false;
+            for (int r = 0; r < responses; r++) {
+                close |= readResponse();
+            }
+            if (close) {
+                close();
+            }
+        }
+
+        /** @return whether the server closes the connection after this response */
+        private boolean readResponse() throws IOException {
+            String status = readLine();
+            if (status == null || !status.startsWith("HTTP/1.1 2") && !status.startsWith("HTTP/1.1 4")) {
+                throw new IOException("Unexpected status: " + status);
+            }
+            int length = 0;
+            boolean close = false;
+            String line;
+            while ((line = readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Content-Length")) {
+                    length = Integer.parseInt(value);
+                } else if (name.equalsIgnoreCase("Connection")) {
+                    close = value.equalsIgnoreCase("close");
+                }
+            }
+            in.skipNBytes(length);
+            return close;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) >= 0 && b != '\n') {
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+            return b < 0 && line.isEmpty() ? null : line.toString();
+        }
+
+        void close() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+                socket = null;
+            }
+        }
+    }
+}
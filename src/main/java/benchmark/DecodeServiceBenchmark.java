@@ -0,0 +1,57 @@
+package benchmark;
+
+import qrcode.QRDecodeService;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decodes/sec through {@link QRDecodeService} at increasing reader-pool sizes, using the
+ * sample PNGs in the working directory (or the files given as arguments).
+ */
+public class DecodeServiceBenchmark {
+
+    private static final String[] DEFAULT_SAMPLES = {
+            "test-auth-qr.png", "test-pairing-qr.png", "test-simple-qr.png",
+            "demo-large-qr.png", "demo-complete-auth-qr.png", "passwordless-qr.png"
+    };
+
+    public static void main(String[] args) throws Exception {
+        List<byte[]> samples = new ArrayList<>();
+        for (String name : args.length > 0 ? args : DEFAULT_SAMPLES) {
+            File file = new File(name);
+            if (file.exists()) {
+                samples.add(Files.readAllBytes(file.toPath()));
+            }
+        }
+        if (samples.isEmpty()) {
+            System.err.println("No sample images found in " + new File(".").getAbsolutePath());
+            return;
+        }
+
+        int decodes = 4000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println(samples.size() + " sample images, " + cores + " cores");
+
+        for (int poolSize = 1; poolSize <= Math.max(8, cores * 2); poolSize *= 2) {
+            try (QRDecodeService service = new QRDecodeService(poolSize, decodes, 60_000)) {
+                run(service, samples, decodes / 4); // warm-up
+                long start = System.nanoTime();
+                run(service, samples, decodes);
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                System.out.printf("pool=%-3d %10.0f decodes/sec%n", poolSize, decodes / seconds);
+            }
+        }
+    }
+
+    private static void run(QRDecodeService service, List<byte[]> samples, int count) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[count];
+        for (int i = 0; i < count; i++) {
+            futures[i] = service.decode(samples.get(i % samples.size()));
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import qrcode.QRCodeGenerator;
+import qrcode.QRCodeScanner;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Per-frame latency and allocation of decoding a 640x480 kiosk camera frame: as a PNG
+ * upload through scanFromBytes, versus raw luminance / YUV420 buffers, with and without
+ * a region of interest around the symbol.
+ */
+public class FrameIngestBenchmark {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+
+        QRCodeGenerator generator = QRCodeGenerator.builder().size(260).autoDisplay(false).build();
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = frame.createGraphics();
+        g.setColor(new Color(200, 200, 200));
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.drawImage(generator.generateQRCodeImage("http://192.168.1.100:8080/verify?token=KIOSK&session=SESSION_1"),
+                190, 110, null);
+        g.dispose();
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(frame, "PNG", png);
+        byte[] pngBytes = png.toByteArray();
+
+        byte[] luminance = new byte[WIDTH * HEIGHT * 3 / 2]; // Y plane followed by 4:2:0 chroma
+        frame.getRaster().getDataElements(0, 0, WIDTH, HEIGHT, luminance);
+        ByteBuffer direct = ByteBuffer.allocateDirect(luminance.length);
+        direct.put(luminance).flip();
+
+        Rectangle roi = new Rectangle(170, 90, 300, 300);
+        QRCodeScanner scanner = new QRCodeScanner();
+
+        Bench.measure("scanFromBytes (PNG)", iterations / 4, iterations, () -> scanner.scanFromBytes(pngBytes));
+        Bench.measure("scanFromYUV420 byte[] full frame", iterations / 4, iterations,
+                () -> scanner.scanFromYUV420(luminance, WIDTH, HEIGHT, null));
+        Bench.measure("scanFromYUV420 byte[] ROI", iterations / 4, iterations,
+                () -> scanner.scanFromYUV420(luminance, WIDTH, HEIGHT, roi));
+        Bench.measure("scanFromYUV420 direct ByteBuffer ROI", iterations / 4, iterations,
+                () -> scanner.scanFromYUV420(direct, WIDTH, HEIGHT, roi));
+    }
+}
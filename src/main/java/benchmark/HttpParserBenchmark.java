@@ -0,0 +1,145 @@
+package benchmark;
+
+import server.HttpRequestView;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Parse cost per request, in ns and allocated bytes, of {@link HttpRequestView} against
+ * the code it replaced in {@code QRCodeConfirmationServer}: {@code BufferedReader}
+ * lines, headers lowercased into a {@code HashMap}, {@code split} and
+ * {@code URLDecoder} for the query and the form body.
+ *
+ * <p>The requests are what a phone sends: {@code GET /confirm?session=...&token=...}
+ * and the form {@code POST /action/confirm}, with mobile Safari's headers. Each
+ * iteration first copies the raw bytes into the reused buffer, since decoding happens
+ * in place; the old code likewise reads from a stream. "+ 2 values" also makes the
+ * session and token strings the handler looks up.
+ *
+ * <pre>java benchmark.HttpParserBenchmark [iterations]</pre>
+ */
+public class HttpParserBenchmark {
+
+    private static final String HEADERS = "Host: 192.168.1.20:8082\r\n"
+            + "User-Agent: Mozilla/5.0 (iPhone; CPU iPhone OS 17_4 like Mac OS X) AppleWebKit/605.1.15 "
+            + "(KHTML, like Gecko) Version/17.4 Mobile/15E148 Safari/604.1\r\n"
+            + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+            + "Accept-Language: fr-FR,fr;q=0.9\r\n"
+            + "Accept-Encoding: gzip, deflate\r\n"
+            + "Connection: keep-alive\r\n"
+            + "Upgrade-Insecure-Requests: 1\r\n";
+
+    private static Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String session = UUID.randomUUID().toString();
+        String token = "QGjTBBxXdQEwm38br5fJ-bWs1kgcSvuDaZPYPHHIrfw";
+        String query = "session=" + session + "&token=" + token + "&email=alice%40example.com";
+        byte[] get = ("GET /confirm?" + query + " HTTP/1.1\r\n" + HEADERS + "\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] post = ("POST /action/confirm HTTP/1.1\r\n" + HEADERS
+                + "Content-Type: application/x-www-form-urlencoded\r\n"
+                + "Content-Length: " + query.length() + "\r\n\r\n" + query)
+                .getBytes(StandardCharsets.US_ASCII);
+
+        HttpRequestView view = new HttpRequestView();
+        ByteBuffer heap = ByteBuffer.allocate(8 * 1024);
+        ByteBuffer direct = ByteBuffer.allocateDirect(8 * 1024);
+        check(view, heap, get, session, token);
+        check(view, direct, post, session, token);
+        System.out.printf("GET %d bytes, POST %d bytes, %,d iterations%n", get.length, post.length, iterations);
+
+        for (int round = 0; round < 2; round++) {
+            for (byte[] request : new byte[][]{get, post}) {
+                String name = request == get ? "GET /confirm" : "POST /action/confirm";
+                Bench.measure(name + "  old", iterations / 10, iterations, () -> sink = legacy(request));
+                Bench.measure(name + "  view (heap)", iterations / 10, iterations,
+                        () -> sink = parse(view, heap, request) ? view : null);
+                Bench.measure(name + "  view (direct)", iterations / 10, iterations,
+                        () -> sink = parse(view, direct, request) ? view : null);
+                Bench.measure(name + "  view + 2 values", iterations / 10, iterations, () -> {
+                    parse(view, direct, request);
+                    sink = view.param("session");
+                    sink = view.param("token");
+                });
+            }
+            System.out.println();
+        }
+    }
+
+    private static boolean parse(HttpRequestView view, ByteBuffer buffer, byte[] request) {
+        buffer.clear();
+        buffer.put(request).flip();
+        return view.parse(buffer);
+    }
+
+    private static void check(HttpRequestView view, ByteBuffer buffer, byte[] request, String session,
+                              String token) throws IOException {
+        Map<String, String> expected = legacy(request);
+        if (!parse(view, buffer, request) || !session.equals(view.param("session"))
+                || !token.equals(view.param("token")) || !expected.get("email").equals(view.param("email"))
+                || !view.isKeepAlive()) {
+            throw new IllegalStateException("Parsers disagree on " + new String(request, StandardCharsets.US_ASCII));
+        }
+    }
+
+    // --- The parsing done by QRCodeConfirmationServer before HttpRequestView ---
+
+    private static Map<String, String> legacy(byte[] request) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(request)));
+        String requestLine = in.readLine();
+        String[] requestParts = requestLine.split(" ");
+        String method = requestParts[0];
+        String fullPath = requestParts[1];
+
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            int colonIndex = line.indexOf(':');
+            if (colonIndex > 0) {
+                String key = line.substring(0, colonIndex).trim().toLowerCase();
+                String value = line.substring(colonIndex + 1).trim();
+                headers.put(key, value);
+            }
+        }
+
+        String path = fullPath.contains("?") ? fullPath.split("\\?")[0] : fullPath;
+        Map<String, String> params = parsePairs(fullPath.contains("?")
+                ? fullPath.substring(fullPath.indexOf('?') + 1) : "");
+        if (method.equalsIgnoreCase("POST")) {
+            int contentLength = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+            char[] buffer = new char[contentLength];
+            int read = in.read(buffer, 0, contentLength);
+            params.putAll(parsePairs(new String(buffer, 0, Math.max(0, read))));
+        }
+        params.put("", path);
+        return params;
+    }
+
+    private static Map<String, String> parsePairs(String text) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (text.isEmpty()) {
+            return params;
+        }
+        for (String pair : text.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx > 0) {
+                String key = URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8.name());
+                String value = URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8.name());
+                params.put(key, value);
+            }
+        }
+        return params;
+    }
+}
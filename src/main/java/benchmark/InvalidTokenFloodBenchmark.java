@@ -0,0 +1,128 @@
+package benchmark;
+
+import org.example.QRCodeConfirmationServer;
+import org.example.QRCodeWebServer;
+import qrcode.QRAuthService;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Floods /verify on {@link QRCodeWebServer} and /confirm on
+ * {@link QRCodeConfirmationServer} with tokens that were never issued, with the live-key
+ * pre-check on and off, while the service holds a realistic number of pending sessions.
+ * Reports requests/sec and process CPU per request (clients run in the same JVM, so the
+ * difference between the two modes is the server-side saving).
+ *
+ * <pre>java benchmark.InvalidTokenFloodBenchmark [requests] [liveSessions] [concurrency]</pre>
+ */
+public class InvalidTokenFloodBenchmark {
+
+    private static final int WEB_PORT = 18090;
+    private static final int CONFIRM_PORT = 18092;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int liveSessions = args.length > 1 ? Integer.parseInt(args[1]) : 2048;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        QRAuthService authService = new QRAuthService("http://localhost:" + WEB_PORT);
+        String validToken = null;
+        for (int i = 0; i < liveSessions; i++) {
+            validToken = authService.generateLoginQR().token;
+        }
+
+        QRCodeWebServer web = new QRCodeWebServer(WEB_PORT, authService);
+        web.start();
+        QRCodeConfirmationServer confirm = new QRCodeConfirmationServer(CONFIRM_PORT, authService);
+        confirm.start();
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(concurrency)).build();
+
+        try {
+            int status = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + WEB_PORT
+                    + "/verify?token=" + validToken)).build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            System.out.println("\nvalid token still served: HTTP " + status);
+            System.out.printf("%d live sessions, %d invalid requests per run, concurrency %d%n%n",
+                    liveSessions, requests, concurrency);
+
+            for (boolean filter : new boolean[]{false, true, false, true}) {
+                authService.setLiveKeyFilterEnabled(filter);
+                String mode = filter ? "filter on " : "filter off";
+                flood("/verify  " + mode, concurrency, requests,
+                        () -> client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + WEB_PORT
+                                + "/verify?token=" + UUID.randomUUID())).build(),
+                                HttpResponse.BodyHandlers.discarding()).statusCode());
+                flood("/confirm " + mode, concurrency, requests / 4,
+                        () -> rawGet(CONFIRM_PORT, "/confirm?session=" + UUID.randomUUID()
+                                + "&token=" + UUID.randomUUID()));
+            }
+        } finally {
+            web.stop();
+            confirm.stop();
+        }
+        System.exit(0);
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        int send() throws Exception;
+    }
+
+    private static void flood(String name, int concurrency, int requests, Request request) throws Exception {
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        AtomicInteger next = new AtomicInteger();
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        long cpuStart = os.getProcessCpuTime();
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                clients.submit(() -> {
+                    while (next.getAndIncrement() < requests) {
+                        int status;
+                        try {
+                            status = request.send();
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                    }
+                    return null;
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double cpuMicros = (os.getProcessCpuTime() - cpuStart) / 1000.0 / requests;
+
+        System.out.printf("%-22s %8.0f req/sec  %7.1f us CPU/req  statuses=%s%n",
+                name, requests / seconds, cpuMicros, statuses);
+    }
+
+    private static int rawGet(int port, String target) throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + target + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            byte[] response = in.readAllBytes();
+            String statusLine = new String(response, 0, Math.min(response.length, 12), StandardCharsets.US_ASCII);
+            return statusLine.length() >= 12 ? Integer.parseInt(statusLine.substring(9, 12)) : -1;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package benchmark;
+
+import qrcode.QRCodeGenerator;
+import qrcode.QRCodeScanner;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+/**
+ * Decode latency and allocation for a 12-megapixel phone photo (4000x3000 JPEG) holding
+ * a QR code: full-resolution ImageIO.read + scanFromImage versus scanFromFile, which
+ * goes through {@link qrcode.PyramidDecoder}.
+ */
+public class LargePhotoBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        File photo = File.createTempFile("large-photo", ".jpg");
+        photo.deleteOnExit();
+
+        BufferedImage image = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(180, 170, 160), 4000, 3000, new Color(70, 65, 60)));
+        g.fillRect(0, 0, 4000, 3000);
+        g.drawImage(QRCodeGenerator.builder().size(700).autoDisplay(false).build()
+                .generateQRCodeImage("http://192.168.1.100:8080/verify?token=PHOTO&session=SESSION_12MP"), 2300, 1400, null);
+        g.dispose();
+        ImageIO.write(image, "jpg", photo);
+        image = null;
+
+        QRCodeScanner scanner = new QRCodeScanner();
+        Bench.measure("full-resolution decode", 2, iterations,
+                () -> scanner.scanFromImage(ImageIO.read(photo)));
+        Bench.measure("pyramid scanFromFile", 2, iterations,
+                () -> scanner.scanFromFile(photo.getPath()));
+    }
+}
@@ -0,0 +1,168 @@
+package benchmark;
+
+import modern.PasskeyCredential;
+import passkey.CredentialRepository;
+import passkey.VerificationPipeline;
+import passkey.WebAuthnService;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop login burst against {@link WebAuthnService}: assertions arrive at a fixed
+ * rate and latency is measured from each one's scheduled arrival, so a saturated server
+ * shows up as growing latency instead of a slower generator.
+ * <ul>
+ *     <li>inline: a 200-thread pool standing in for HTTP workers calls
+ *     {@code authenticate} directly, as the /login route did;</li>
+ *     <li>pipeline: the arriving thread hands off to {@code authenticateAsync} and is
+ *     free at once.</li>
+ * </ul>
+ * Every login carries its own challenge from {@link WebAuthnService#startAuthentication},
+ * signed before the run starts, so the challenge check is part of what is measured.
+ *
+ * <pre>java benchmark.LoginBurstBenchmark [ratePerSec] [seconds] [users]</pre>
+ */
+public class LoginBurstBenchmark {
+
+    private static final int HTTP_WORKERS = 200;
+
+    private static class User {
+        String credentialId;
+        PrivateKey privateKey;
+    }
+
+    private static class Assertion {
+        String credentialId;
+        byte[] authenticatorData;
+        byte[] clientData;
+        byte[] signature;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+
+        WebAuthnService service = new WebAuthnService(new CredentialRepository());
+        User[] enrolled = enroll(service, users);
+        System.out.printf("%d users, %d logins/sec for %d s, %d cores%n", users, rate, seconds,
+                Runtime.getRuntime().availableProcessors());
+
+        // warm-up: JIT and per-thread verifier caches
+        run("warm-up", service, sign(service, enrolled, rate / 4), rate / 4, 1, true);
+        run("warm-up", service, sign(service, enrolled, rate / 4), rate / 4, 1, false);
+
+        run("inline (200 workers)", service, sign(service, enrolled, rate * seconds), rate, seconds, true);
+        run("pipeline", service, sign(service, enrolled, rate * seconds), rate, seconds, false);
+        System.exit(0);
+    }
+
+    private static void run(String name, WebAuthnService service, Assertion[] assertions, int rate, int seconds,
+                            boolean inline) throws InterruptedException {
+        int total = rate * seconds;
+        long[] latencies = new long[total];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(total);
+        ExecutorService workers = inline ? Executors.newFixedThreadPool(HTTP_WORKERS) : null;
+        long period = 1_000_000_000L / rate;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long scheduled = start + i * period;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Assertion a = assertions[i];
+            if (inline) {
+                workers.execute(() -> {
+                    boolean ok = service.authenticate(a.credentialId, a.authenticatorData, a.clientData, a.signature);
+                    record(latencies, completed, failures, scheduled, ok);
+                    done.countDown();
+                });
+            } else {
+                service.authenticateAsync(a.credentialId, a.authenticatorData, a.clientData, a.signature)
+                        .whenComplete((ok, error) -> {
+                            record(latencies, completed, failures, scheduled, error == null && ok);
+                            done.countDown();
+                        });
+            }
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (workers != null) {
+            workers.shutdown();
+        }
+        if (!name.equals("warm-up")) {
+            System.out.printf("%-22s %8.0f successful verifications/sec, %d rejected or timed out%n",
+                    name, (total - failures.get()) / elapsed, failures.get());
+            Bench.printLatencies("  " + name, latencies, completed.get());
+            if (!inline) {
+                VerificationPipeline pipeline = service.getPipeline();
+                System.out.printf("  pipeline totals: %d verified, %d rejected as full, %d batches%n",
+                        pipeline.getVerified(), pipeline.getRejected(), pipeline.getBatches());
+            }
+        }
+    }
+
+    private static void record(long[] latencies, AtomicInteger completed, AtomicInteger failures,
+                               long scheduled, boolean ok) {
+        long latency = System.nanoTime() - scheduled;
+        int slot = completed.getAndIncrement();
+        latencies[slot] = latency;
+        if (!ok) {
+            failures.incrementAndGet();
+        }
+    }
+
+    /** Registers every user through the full attestation ceremony. */
+    private static User[] enroll(WebAuthnService service, int count) throws Exception {
+        VirtualAuthenticator authenticator = VirtualAuthenticator.create("localhost", "http://localhost:7000",
+                count, Runtime.getRuntime().availableProcessors());
+        User[] users = new User[count];
+        for (int u = 0; u < count; u++) {
+            VirtualAuthenticator.Registration registration =
+                    authenticator.register(u, service.startRegistration(authenticator.username(u)));
+            PasskeyCredential credential = service.registerUser(registration.username,
+                    registration.attestationObject, registration.clientDataJSON);
+            users[u] = new User();
+            users[u].credentialId = credential.getId();
+            users[u].privateKey = authenticator.privateKey(u);
+        }
+        return users;
+    }
+
+    /** One assertion per login, each over a freshly issued challenge, users taken in turn. */
+    private static Assertion[] sign(WebAuthnService service, User[] users, int count) throws Exception {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        byte[] authenticatorData = new byte[37]; // counter 0: the authenticator keeps none
+        System.arraycopy(sha256.digest("localhost".getBytes(StandardCharsets.UTF_8)), 0, authenticatorData, 0, 32);
+        authenticatorData[32] = 0x05;
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+
+        Assertion[] assertions = new Assertion[count];
+        for (int i = 0; i < count; i++) {
+            User user = users[i % users.length];
+            Assertion a = new Assertion();
+            a.credentialId = user.credentialId;
+            a.authenticatorData = authenticatorData;
+            a.clientData = ("{\"type\":\"webauthn.get\",\"challenge\":\"" + service.startAuthentication(null)
+                    + "\",\"origin\":\"http://localhost:7000\"}").getBytes(StandardCharsets.UTF_8);
+            signer.initSign(user.privateKey);
+            signer.update(authenticatorData);
+            signer.update(sha256.digest(a.clientData));
+            a.signature = signer.sign();
+            assertions[i] = a;
+        }
+        return assertions;
+    }
+}
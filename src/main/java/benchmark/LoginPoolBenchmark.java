@@ -0,0 +1,72 @@
+package benchmark;
+
+import qrcode.LoginQRPool;
+import qrcode.QRAuthService;
+import qrcode.QRCodeGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Synthetic 9am burst against the /generate-login work: many threads request a login QR
+ * at once, first creating and rendering each session inline, then claiming from a warm
+ * {@link LoginQRPool}. Prints p50/p99 request latency for both.
+ */
+public class LoginPoolBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int poolMin = args.length > 2 ? Integer.parseInt(args[2]) : 512;
+
+        QRAuthService authService = new QRAuthService();
+        QRCodeGenerator generator = QRCodeGenerator.builder().size(300).autoDisplay(false).build();
+
+        burst("inline generate + render", requests, threads, () -> {
+            QRAuthService.QRAuthData qrData = authService.generateLoginQR();
+            generator.writeQRCodePng(qrData.url, new ByteArrayOutputStream(1024));
+        });
+
+        LoginQRPool pool = new LoginQRPool(authService, generator, poolMin, 8 * poolMin);
+        pool.start();
+        while (pool.size() < poolMin) {
+            Thread.sleep(50);
+        }
+        burst("pooled claim", requests, threads, pool::claim);
+        System.out.printf("pool misses during burst: %d of %d, target size after burst: %d%n",
+                pool.getMisses(), pool.getClaims(), pool.getTargetSize());
+        pool.stop();
+    }
+
+    private static void burst(String name, int requests, int threads, Bench.Task request) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                startGate.await();
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    long start = System.nanoTime();
+                    request.run();
+                    latencies[i] = System.nanoTime() - start;
+                }
+                return null;
+            });
+        }
+
+        long start = System.nanoTime();
+        startGate.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, java.util.concurrent.TimeUnit.MINUTES);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        Bench.printLatencies(name, latencies, requests);
+        System.out.printf("%-40s %d requests in %d ms%n", "", requests, elapsedMs);
+    }
+}
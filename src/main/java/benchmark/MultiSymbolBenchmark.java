@@ -0,0 +1,54 @@
+package benchmark;
+
+import qrcode.MultiQRScanner;
+import qrcode.QRCodeGenerator;
+import qrcode.QRCodeScanner;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A 48-code enrollment sheet (6 columns x 8 rows): crop-and-rescan of every cell with
+ * {@link QRCodeScanner} versus one {@link MultiQRScanner} pass, sequential and parallel.
+ */
+public class MultiSymbolBenchmark {
+
+    private static final int COLUMNS = 6;
+    private static final int ROWS = 8;
+    private static final int CELL = 260;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        QRCodeGenerator generator = QRCodeGenerator.builder().size(200).autoDisplay(false).build();
+
+        BufferedImage sheet = new BufferedImage(COLUMNS * CELL, ROWS * CELL, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = sheet.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, sheet.getWidth(), sheet.getHeight());
+        List<Rectangle> cells = new ArrayList<>();
+        for (int i = 0; i < COLUMNS * ROWS; i++) {
+            int x = (i % COLUMNS) * CELL;
+            int y = (i / COLUMNS) * CELL;
+            g.drawImage(generator.generateQRCodeImage("ENROLL-" + i), x + 30, y + 30, null);
+            cells.add(new Rectangle(x, y, CELL, CELL));
+        }
+        g.dispose();
+
+        QRCodeScanner scanner = new QRCodeScanner();
+        MultiQRScanner multi = new MultiQRScanner();
+
+        System.out.println("single pass found " + multi.scanAll(sheet).size() + " of " + cells.size());
+
+        Bench.measure("48 cropped scans", 2, iterations, () -> {
+            for (Rectangle cell : cells) {
+                scanner.scanFromImage(sheet.getSubimage(cell.x, cell.y, cell.width, cell.height));
+            }
+        });
+        Bench.measure("multi-symbol single pass", 2, iterations, () -> multi.scanAll(sheet));
+        Bench.measure("multi-symbol single pass, parallel", 2, iterations, () -> multi.scanAll(sheet, true));
+    }
+}
@@ -0,0 +1,296 @@
+package benchmark;
+
+import com.google.gson.JsonParser;
+import passkey.CredentialRepository;
+import passkey.WebAuthnService;
+import server.WebAuthnController;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registers and logs in {@code users} simulated passkey users with
+ * {@link VirtualAuthenticator}, either against a {@link WebAuthnService} in this JVM or
+ * over HTTP against {@link WebAuthnController}.
+ *
+ * <p>Client threads own disjoint sets of users and work in batches, in lock-step:
+ * every thread fetches its challenges from the server, then every thread builds and
+ * signs its payloads, then every thread submits them. Only the server steps are
+ * timed, so the ceremonies/sec printed is server-side throughput, even when client
+ * and server share the cores.
+ *
+ * <pre>java benchmark.PasskeyLoadTest [inprocess|http] [users] [threads] [logins per user] [baseUrl]</pre>
+ * In http mode without a base URL, the controller is started in this JVM on port 7000.
+ */
+public class PasskeyLoadTest {
+
+    private static final int BATCH_PER_THREAD = 256;
+    private static final String RP_ID = "localhost";
+    private static final String ORIGIN = "http://localhost:7000";
+
+    /** The server side of a ceremony, in-process or remote. */
+    private interface Target {
+        String startRegistration(String username) throws Exception;
+
+        boolean register(VirtualAuthenticator.Registration registration) throws Exception;
+
+        String startAuthentication(String username) throws Exception;
+
+        boolean login(VirtualAuthenticator.Assertion assertion) throws Exception;
+    }
+
+    private static class InProcessTarget implements Target {
+        private final WebAuthnService service = new WebAuthnService(new CredentialRepository());
+
+        @Override
+        public String startRegistration(String username) throws GeneralSecurityException {
+            return service.startRegistration(username);
+        }
+
+        @Override
+        public boolean register(VirtualAuthenticator.Registration registration) {
+            try {
+                service.registerUser(registration.username, registration.attestationObject,
+                        registration.clientDataJSON);
+                return true;
+            } catch (GeneralSecurityException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public String startAuthentication(String username) {
+            return service.startAuthentication(username);
+        }
+
+        @Override
+        public boolean login(VirtualAuthenticator.Assertion assertion) {
+            return service.authenticate(assertion.credentialId, assertion.authenticatorData,
+                    assertion.clientDataJSON, assertion.signature);
+        }
+    }
+
+    private static class HttpTarget implements Target {
+        private final HttpClient client = HttpClient.newHttpClient();
+        private final String baseUrl;
+
+        HttpTarget(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        @Override
+        public String startRegistration(String username) throws Exception {
+            return challenge(post("/register/options", "username", username));
+        }
+
+        @Override
+        public boolean register(VirtualAuthenticator.Registration registration) throws Exception {
+            return post("/register", "username", registration.username,
+                    "attestationObject", encode(registration.attestationObject),
+                    "clientDataJSON", encode(registration.clientDataJSON)).statusCode() == 200;
+        }
+
+        @Override
+        public String startAuthentication(String username) throws Exception {
+            return challenge(post("/login/options", "username", username));
+        }
+
+        @Override
+        public boolean login(VirtualAuthenticator.Assertion assertion) throws Exception {
+            return post("/login", "id", assertion.credentialId,
+                    "authenticatorData", encode(assertion.authenticatorData),
+                    "clientDataJSON", encode(assertion.clientDataJSON),
+                    "signature", encode(assertion.signature)).statusCode() == 200;
+        }
+
+        private HttpResponse<String> post(String path, String... fields) throws Exception {
+            StringBuilder form = new StringBuilder();
+            for (int i = 0; i < fields.length; i += 2) {
+                if (i > 0) {
+                    form.append('&');
+                }
+                form.append(fields[i]).append('=').append(URLEncoder.encode(fields[i + 1], StandardCharsets.UTF_8));
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(form.toString()))
+                    .build();
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        }
+
+        private static String challenge(HttpResponse<String> response) {
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("No challenge: HTTP " + response.statusCode());
+            }
+            return JsonParser.parseString(response.body()).getAsJsonObject().get("challenge").getAsString();
+        }
+
+        private static String encode(byte[] bytes) {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        }
+    }
+
+    /** One ceremony type, driven through the three lock-step steps. */
+    private interface Ceremony {
+        String start(Target target, String username) throws Exception;
+
+        Object respond(VirtualAuthenticator authenticator, int user, String challenge) throws Exception;
+
+        boolean finish(Target target, Object response) throws Exception;
+    }
+
+    private static final Ceremony REGISTRATION = new Ceremony() {
+        @Override
+        public String start(Target target, String username) throws Exception {
+            return target.startRegistration(username);
+        }
+
+        @Override
+        public Object respond(VirtualAuthenticator authenticator, int user, String challenge) {
+            return authenticator.register(user, challenge);
+        }
+
+        @Override
+        public boolean finish(Target target, Object response) throws Exception {
+            return target.register((VirtualAuthenticator.Registration) response);
+        }
+    };
+
+    private static final Ceremony LOGIN = new Ceremony() {
+        @Override
+        public String start(Target target, String username) throws Exception {
+            return target.startAuthentication(username);
+        }
+
+        @Override
+        public Object respond(VirtualAuthenticator authenticator, int user, String challenge) throws Exception {
+            return authenticator.authenticate(user, challenge);
+        }
+
+        @Override
+        public boolean finish(Target target, Object response) throws Exception {
+            return target.login((VirtualAuthenticator.Assertion) response);
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "inprocess";
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        VirtualAuthenticator authenticator = VirtualAuthenticator.create(RP_ID, ORIGIN, users, cores);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %,d P-256 key pairs in %.1f s (%,.0f/s on %d threads)%n",
+                users, seconds, users / seconds, cores);
+
+        Target target;
+        if (mode.equals("http")) {
+            String baseUrl = args.length > 4 ? args[4] : null;
+            if (baseUrl == null) {
+                WebAuthnController.main(new String[0]);
+                baseUrl = "http://localhost:7000";
+            }
+            target = new HttpTarget(baseUrl);
+            try {
+                target.startAuthentication("warm-up");
+            } catch (ConnectException e) {
+                System.out.println("Nothing listening on " + baseUrl);
+                return;
+            }
+        } else {
+            target = new InProcessTarget();
+        }
+        System.out.printf("%s, %,d users, %d client threads, %d cores%n", mode, users, threads, cores);
+
+        run("registration", target, authenticator, REGISTRATION, threads, 1);
+        run("login", target, authenticator, LOGIN, threads, rounds);
+        System.exit(0);
+    }
+
+    private static void run(String name, Target target, VirtualAuthenticator authenticator, Ceremony ceremony,
+                            int threads, int rounds) throws Exception {
+        int users = authenticator.getUsers();
+        int perThread = (users + threads - 1) / threads;
+        int batches = rounds * ((perThread + BATCH_PER_THREAD - 1) / BATCH_PER_THREAD);
+        LongAdder succeeded = new LongAdder();
+        LongAdder failed = new LongAdder();
+
+        // steps alternate server (challenges), client (payloads), server (submission)
+        long[] stepNanos = new long[3];
+        long[] stepStart = {System.nanoTime()};
+        int[] step = {0};
+        CyclicBarrier barrier = new CyclicBarrier(threads, () -> {
+            long now = System.nanoTime();
+            stepNanos[step[0]] += now - stepStart[0];
+            stepStart[0] = now;
+            step[0] = (step[0] + 1) % 3;
+        });
+
+        Thread[] workers = new Thread[threads];
+        Throwable[] errors = new Throwable[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int from = t * perThread;
+            int to = Math.min(users, from + perThread);
+            int index = t;
+            workers[t] = new Thread(() -> {
+                String[] challenges = new String[BATCH_PER_THREAD];
+                Object[] responses = new Object[BATCH_PER_THREAD];
+                try {
+                    int next = from;
+                    for (int b = 0; b < batches; b++) {
+                        int size = 0;
+                        int first = next;
+                        while (size < BATCH_PER_THREAD && next < to) {
+                            challenges[size++] = ceremony.start(target, authenticator.username(next++));
+                        }
+                        if (next >= to) {
+                            next = from; // next round
+                        }
+                        barrier.await();
+                        for (int i = 0; i < size; i++) {
+                            responses[i] = ceremony.respond(authenticator, first + i, challenges[i]);
+                        }
+                        barrier.await();
+                        for (int i = 0; i < size; i++) {
+                            (ceremony.finish(target, responses[i]) ? succeeded : failed).increment();
+                        }
+                        barrier.await();
+                    }
+                } catch (Throwable e) {
+                    errors[index] = e;
+                    barrier.reset();
+                }
+            }, "virtual-client-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (Throwable error : errors) {
+            if (error != null) {
+                System.out.println(name + " aborted: " + error);
+                return;
+            }
+        }
+
+        double wall = (System.nanoTime() - start) / 1e9;
+        double server = (stepNanos[0] + stepNanos[2]) / 1e9;
+        long total = succeeded.sum() + failed.sum();
+        System.out.printf("%-13s %,9d ceremonies (%,d failed): %,8.0f/s server-side (%.1f s), "
+                        + "client signing %.1f s, wall %.1f s%n",
+                name, total, failed.sum(), total / server, server, stepNanos[1] / 1e9, wall);
+    }
+}
@@ -0,0 +1,78 @@
+package benchmark;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import qrcode.QRAuthService;
+import qrcode.QRCodeScanner;
+import qrcode.QRPayloadCodec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ns/op and bytes/op for the QR payload codec against the String.format writer and the
+ * Gson tree parser it replaces, plus the binary form.
+ */
+public class PayloadCodecBenchmark {
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        QRAuthService.QRAuthData auth = new QRAuthService.QRAuthData();
+        auth.token = "b3f1c0de-2c4e-4f7a-9a51-6d0e8c2f11aa";
+        auth.url = "http://192.168.1.100:8080/verify";
+        auth.exp = 1_760_000_000_000L;
+        auth.type = "auth";
+        auth.sessionId = "2f6a9e4c-0b7d-4d61-8c3e-5a1f9b7e2d40";
+
+        String authJson = auth.toJSON();
+        String pairingJson = QRPayloadCodec.encodePairing("7Q2K-93XF-LM4P", "pixel-8-pro-3f2b",
+                "http://192.168.1.100:8080/pair", "pairing");
+        byte[] authUtf8 = authJson.getBytes(StandardCharsets.UTF_8);
+        byte[] authBinary = QRPayloadCodec.encodeAuthBinary(auth);
+        System.out.println(authJson);
+        System.out.printf("auth payload: %d bytes JSON, %d bytes binary%n%n", authUtf8.length, authBinary.length);
+
+        int warmup = iterations / 4;
+        System.out.println("Encode");
+        Bench.measure("String.format", warmup, iterations, () -> sink = String.format(
+                "{\"token\":\"%s\",\"url\":\"%s\",\"exp\":%d,\"type\":\"%s\",\"session\":\"%s\"}",
+                auth.token, auth.url, auth.exp, auth.type, auth.sessionId));
+        Bench.measure("codec JSON", warmup, iterations, () -> sink = auth.toJSON());
+        Bench.measure("codec binary", warmup, iterations, () -> sink = QRPayloadCodec.encodeAuthBinary(auth));
+
+        System.out.println("\nDecode auth");
+        Bench.measure("Gson JsonObject", warmup, iterations, () -> sink = gsonAuth(authJson));
+        Bench.measure("codec JSON (String)", warmup, iterations, () -> sink = QRPayloadCodec.parseAuth(authJson));
+        Bench.measure("codec JSON (byte[])", warmup, iterations,
+                () -> sink = QRPayloadCodec.parseAuth(authUtf8, 0, authUtf8.length));
+        Bench.measure("codec binary", warmup, iterations, () -> sink = QRPayloadCodec.decodeAuthBinary(authBinary));
+
+        System.out.println("\nDecode pairing");
+        Bench.measure("Gson JsonObject", warmup, iterations, () -> sink = gsonPairing(pairingJson));
+        Bench.measure("codec JSON (String)", warmup, iterations,
+                () -> sink = QRPayloadCodec.parsePairing(pairingJson));
+    }
+
+    /** The parse path QRCodeScanner used before the codec. */
+    private static QRCodeScanner.AuthQRData gsonAuth(String jsonData) {
+        JsonObject json = JsonParser.parseString(jsonData).getAsJsonObject();
+        QRCodeScanner.AuthQRData authData = new QRCodeScanner.AuthQRData();
+        authData.token = json.get("token").getAsString();
+        authData.url = json.get("url").getAsString();
+        authData.expirationTime = json.get("exp").getAsLong();
+        authData.type = json.get("type").getAsString();
+        return authData;
+    }
+
+    private static QRCodeScanner.PairingQRData gsonPairing(String jsonData) {
+        JsonObject json = JsonParser.parseString(jsonData).getAsJsonObject();
+        QRCodeScanner.PairingQRData pairingData = new QRCodeScanner.PairingQRData();
+        pairingData.code = json.get("code").getAsString();
+        pairingData.deviceId = json.get("device").getAsString();
+        pairingData.url = json.get("url").getAsString();
+        pairingData.type = json.get("type").getAsString();
+        return pairingData;
+    }
+}
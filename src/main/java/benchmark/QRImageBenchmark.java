@@ -0,0 +1,62 @@
+package benchmark;
+
+import qrcode.QRCodeGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares the inline data-URL QR embedding with the streamed /qr/{sessionId}.png
+ * and .svg responses: bytes on the wire and allocation per render.
+ */
+public class QRImageBenchmark {
+
+    private static final String LOGIN_URL =
+            "http://192.168.1.100:8080/verify?token=Zk3q9XbT1aVx7yWc2NnL0pQeRr5sUu8tHhGgFfDdCcA&session=SESSION_3f2b1c4d-9e8f-4a7b-b6c5-d4e3f2a1b0c9";
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        QRCodeGenerator generator = QRCodeGenerator.builder().size(300).autoDisplay(false).build();
+
+        CountingOutputStream png = new CountingOutputStream();
+        generator.writeQRCodePng(LOGIN_URL, png);
+        CountingOutputStream svg = new CountingOutputStream();
+        Writer svgWriter = new OutputStreamWriter(svg, StandardCharsets.UTF_8);
+        generator.writeQRCodeSvg(LOGIN_URL, svgWriter);
+        svgWriter.flush();
+        String dataUrl = generator.generateQRCodeDataURL(LOGIN_URL);
+
+        System.out.println("Response size");
+        System.out.printf("%-40s %8d bytes%n", "inline data URL", dataUrl.length());
+        System.out.printf("%-40s %8d bytes%n", "/qr/{id}.png", png.count);
+        System.out.printf("%-40s %8d bytes%n", "/qr/{id}.svg", svg.count);
+
+        System.out.println("\nRender cost");
+        Bench.measure("inline data URL", iterations / 5, iterations,
+                () -> generator.generateQRCodeDataURL(LOGIN_URL));
+        Bench.measure("streamed PNG", iterations / 5, iterations,
+                () -> generator.writeQRCodePng(LOGIN_URL, new CountingOutputStream()));
+        Bench.measure("streamed SVG", iterations / 5, iterations, () -> {
+            Writer writer = new OutputStreamWriter(new CountingOutputStream(), StandardCharsets.UTF_8);
+            generator.writeQRCodeSvg(LOGIN_URL, writer);
+            writer.flush();
+        });
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count += len;
+        }
+    }
+}
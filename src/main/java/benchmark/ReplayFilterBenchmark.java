@@ -0,0 +1,80 @@
+package benchmark;
+
+import security.ReplayFilter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates a day of 100M single-use token consumptions (about 1,160/sec) through a
+ * {@link ReplayFilter} on a virtual clock: footprint, throughput, configured versus
+ * reported versus measured false-positive rate, and replays caught.
+ *
+ * <pre>java benchmark.ReplayFilterBenchmark [tokensPerDay] [falsePositiveRate]</pre>
+ */
+public class ReplayFilterBenchmark {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final long TTL_MS = 5 * 60 * 1000;
+
+    public static void main(String[] args) {
+        long perDay = args.length > 0 ? Long.parseLong(args[0]) : 100_000_000L;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 1e-6;
+        long perTtl = perDay * TTL_MS / DAY_MS;
+
+        AtomicLong now = new AtomicLong(1_700_000_000_000L);
+        ReplayFilter filter = new ReplayFilter(TTL_MS, perTtl, rate, 4, now::get);
+        System.out.printf("%,d tokens/day -> %,d per %d min TTL, target FP rate %.1e%n",
+                perDay, perTtl, TTL_MS / 60_000, rate);
+        System.out.printf("footprint %.2f MB fixed, %d hash functions%n%n",
+                filter.getMemoryBytes() / (1024.0 * 1024.0), filter.getHashFunctions());
+
+        long step = DAY_MS / perDay;
+        long stepRemainder = DAY_MS % perDay;
+        long replaysCaught = 0;
+        long replaysTried = 0;
+        long probes = 0;
+        long falsePositives = 0;
+        long heapStart = usedHeap();
+        long start = System.nanoTime();
+        long accumulator = 0;
+
+        for (long i = 0; i < perDay; i++) {
+            accumulator += stepRemainder;
+            now.addAndGet(step + accumulator / perDay);
+            accumulator %= perDay;
+
+            filter.markConsumed("tok-" + i);
+            if (i % 1000 == 999) {
+                // Replay a token consumed a little under one TTL ago
+                long old = Math.max(0, i - perTtl * 9 / 10);
+                replaysTried++;
+                if (!filter.markConsumed("tok-" + old)) {
+                    replaysCaught++;
+                }
+                // Probe a token that has never been consumed
+                probes++;
+                if (filter.isConsumed("fresh-" + i)) {
+                    falsePositives++;
+                }
+            }
+            if (i % (perDay / 8) == perDay / 8 - 1) {
+                System.out.printf("  %5.1f h  %,13d consumed  reported FP %.2e  heap +%.1f MB%n",
+                        (double) (i + 1) / perDay * 24, i + 1, filter.getFalsePositiveRate(),
+                        (usedHeap() - heapStart) / (1024.0 * 1024.0));
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%n%,.0f markConsumed/sec (single thread, incl. token string building)%n",
+                (perDay + replaysTried) / seconds);
+        System.out.printf("replays caught %,d of %,d%n", replaysCaught, replaysTried);
+        System.out.printf("measured FP %d of %,d fresh probes (%.1e), reported %.2e, target %.1e%n",
+                falsePositives, probes, (double) falsePositives / probes, filter.getFalsePositiveRate(), rate);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
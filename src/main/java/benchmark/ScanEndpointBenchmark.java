@@ -0,0 +1,121 @@
+package benchmark;
+
+import org.example.QRCodeWebServer;
+import qrcode.QRAuthService;
+import qrcode.QRCodeGenerator;
+import qrcode.QRCodeScanner;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test for POST /scan: concurrent clients upload the same auth QR PNG as a raw body
+ * and as multipart form data, and we report throughput, latency percentiles and the
+ * status codes returned (503 once the decode queue is full). Also compares the in-process
+ * Base64 path, which now decodes while reading instead of materialising the bytes.
+ *
+ * <pre>java benchmark.ScanEndpointBenchmark [port] [requestsPerLevel]</pre>
+ */
+public class ScanEndpointBenchmark {
+
+    private static final String BOUNDARY = "----scan-benchmark";
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18080;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        QRAuthService.QRAuthData data = new QRAuthService.QRAuthData();
+        data.token = "b3f1c0de-2c4e-4f7a-9a51-6d0e8c2f11aa";
+        data.url = "http://localhost:" + port + "/verify";
+        data.exp = System.currentTimeMillis() + 300_000;
+        data.type = "auth";
+        data.sessionId = "2f6a9e4c-0b7d-4d61-8c3e-5a1f9b7e2d40";
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        QRCodeGenerator.builder().size(300).autoDisplay(false).build().writeQRCodePng(data.toJSON(), png);
+        byte[] image = png.toByteArray();
+        byte[] multipart = multipartBody(image);
+
+        QRCodeScanner scanner = new QRCodeScanner();
+        String base64 = "data:image/png;base64," + Base64.getEncoder().encodeToString(image);
+        Bench.measure("in-process scanFromBytes", 200, 2000, () -> scanner.scanFromBytes(image));
+        Bench.measure("in-process scanFromBase64", 200, 2000, () -> scanner.scanFromBase64(base64));
+
+        QRAuthService authService = new QRAuthService("http://localhost:" + port);
+        QRCodeWebServer server = new QRCodeWebServer(port, authService);
+        server.start();
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(16)).build();
+        URI uri = URI.create("http://localhost:" + port + "/scan");
+
+        try {
+            System.out.println("PNG upload: " + image.length + " bytes, "
+                    + Runtime.getRuntime().availableProcessors() + " cores");
+            for (int concurrency : new int[]{1, 8, 32, 128}) {
+                run(client, uri, "raw", image, "image/png", concurrency, requests / 4); // warm-up
+                run(client, uri, "raw", image, "image/png", concurrency, requests);
+                run(client, uri, "multipart", multipart, "multipart/form-data; boundary=" + BOUNDARY,
+                        concurrency, requests);
+            }
+        } finally {
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    private static void run(HttpClient client, URI uri, String label, byte[] body, String contentType,
+                            int concurrency, int requests) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                clients.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .header("Content-Type", contentType)
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                                .build();
+                        long t0 = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        latencies[i] = System.nanoTime() - t0;
+                        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                    }
+                    return null;
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        String name = String.format("%-9s c=%-3d", label, concurrency);
+        System.out.printf("%s %8.0f req/sec  statuses=%s%n", name, requests / seconds, statuses);
+        Bench.printLatencies(name, latencies, requests);
+    }
+
+    private static byte[] multipartBody(byte[] image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"; filename=\"qr.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(image);
+        out.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+}
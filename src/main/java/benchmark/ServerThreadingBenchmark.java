@@ -0,0 +1,193 @@
+package benchmark;
+
+import org.example.PersonalAuthServer;
+import org.example.QRCodeConfirmationServer;
+import org.example.QRCodeWebServer;
+import qrcode.QRAuthService;
+import server.MainServer;
+import server.ServerExecutors;
+import server.WebAuthnController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Each HTTP server under slow clients, in the mode picked by {@code -Dserver.threads}
+ * (run once per mode; the servers on fixed ports cannot be restarted in one JVM).
+ *
+ * <p>For every server, {@code slow} connections send a request line and then drip one
+ * header byte every half second, never finishing, like a phone on a bad network. While
+ * they are held open, 8 clients send {@code requests} ordinary requests with a 3 s
+ * timeout; we report how many got through, their latency and the JVM's platform
+ * thread count.
+ *
+ * <pre>java -Dserver.threads=virtual|platform benchmark.ServerThreadingBenchmark [server|all] [slow] [requests]</pre>
+ */
+public class ServerThreadingBenchmark {
+
+    private static final int CLIENTS = 8;
+    private static final Duration TIMEOUT = Duration.ofSeconds(3);
+
+    private interface Server {
+        void start() throws Exception;
+    }
+
+    private static class Target {
+        final String name;
+        final int port;
+        final String method;
+        final String path;
+        final Server server;
+
+        Target(String name, int port, String method, String path, Server server) {
+            this.name = name;
+            this.port = port;
+            this.method = method;
+            this.path = path;
+            this.server = server;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String only = args.length > 0 ? args[0] : "all";
+        int slow = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+
+        List<Target> targets = List.of(
+                new Target("MainServer", 8080, "GET", "/login?username=bob",
+                        () -> MainServer.main(new String[0])),
+                new Target("WebAuthnController", 7000, "POST", "/login/options",
+                        () -> WebAuthnController.main(new String[0])),
+                new Target("QRCodeWebServer", 18081, "GET", "/",
+                        () -> new QRCodeWebServer(18081, new QRAuthService("http://localhost:18081")).start()),
+                new Target("QRCodeConfirmationServer", 18082, "GET", "/",
+                        () -> new QRCodeConfirmationServer(18082, new QRAuthService("http://localhost:18082")).start()),
+                new Target("PersonalAuthServer", 18083, "GET", "/login",
+                        () -> new PersonalAuthServer(18083, new QRAuthService("http://localhost:18083"),
+                                "alice@example.com").start()));
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIMEOUT).build();
+        List<String> results = new ArrayList<>();
+        for (Target target : targets) {
+            if (only.equals("all") || only.equals(target.name)) {
+                target.server.start();
+                Thread.sleep(500);
+                results.add(run(target, client, slow, requests));
+            }
+        }
+        System.out.printf("%nmode=%s, %d slow connections, %d requests from %d clients, %d cores%n",
+                ServerExecutors.mode(), slow, requests, CLIENTS, Runtime.getRuntime().availableProcessors());
+        results.forEach(System.out::println);
+        System.exit(0);
+    }
+
+    private static String run(Target target, HttpClient client, int slow, int requests) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + target.port + target.path))
+                .timeout(TIMEOUT)
+                .method(target.method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        for (int i = 0; i < 20; i++) {
+            send(client, request);
+        }
+
+        List<Socket> held = openSlow(target.port, slow);
+        Thread drip = new Thread(() -> drip(held), "slow-clients");
+        drip.setDaemon(true);
+        drip.start();
+        Thread.sleep(1000);
+
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(CLIENTS);
+        long start = System.nanoTime();
+        for (int c = 0; c < CLIENTS; c++) {
+            new Thread(() -> {
+                while (next.getAndIncrement() < requests) {
+                    long begin = System.nanoTime();
+                    if (send(client, request)) {
+                        latencies[completed.getAndIncrement()] = System.nanoTime() - begin;
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        drip.interrupt();
+        for (Socket socket : held) {
+            socket.close();
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, completed.get());
+        Arrays.sort(sorted);
+        return String.format("%-26s %4d ok %4d failed  %7.0f req/s  p50=%7.1f ms  p99=%7.1f ms  %5d platform threads",
+                target.name, completed.get(), failed.get(), completed.get() / seconds,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, threads);
+    }
+
+    private static boolean send(HttpClient client, HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 500;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static List<Socket> openSlow(int port, int count) throws IOException {
+        List<Socket> sockets = new ArrayList<>(count);
+        byte[] head = "GET / HTTP/1.1\r\nHost: localhost\r\nX-Slow: ".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < count; i++) {
+            Socket socket = new Socket("localhost", port);
+            socket.getOutputStream().write(head);
+            sockets.add(socket);
+        }
+        return sockets;
+    }
+
+    private static void drip(List<Socket> sockets) {
+        while (!Thread.currentThread().isInterrupted()) {
+            for (Socket socket : sockets) {
+                try {
+                    OutputStream out = socket.getOutputStream();
+                    out.write('a');
+                } catch (IOException e) {
+                    // closed by the server: no longer held
+                }
+            }
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.max(0, Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1))];
+    }
+}
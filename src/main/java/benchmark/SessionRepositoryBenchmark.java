@@ -0,0 +1,277 @@
+package benchmark;
+
+import qrcode.QRAuthService;
+import storage.SessionRepository;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures {@link SessionRepository} against the ad-hoc maps it replaces.
+ * <ul>
+ *     <li>Sweep: CPU the background sweeper spends while a small fraction of a large store
+ *     expires, against one full {@code removeIf} scan of the kind QRSessionManager used to
+ *     run every minute.</li>
+ *     <li>Token lookup: {@link QRAuthService#scanQRCode} resolving the session from the
+ *     token's signed claims, against the linear stream over all sessions it used to do.</li>
+ *     <li>Throughput: put/get/remove from several threads.</li>
+ *     <li>Stress: threads racing put/renew/get/remove with TTLs up to 200 ms, a 5 ms sweeper
+ *     and a capacity below the key space. Fails if a read returns an expired entry, if an
+ *     entry leaves the repository twice (remove, expiry or eviction) or if the size
+ *     overshoots capacity by more than one entry per thread.</li>
+ *     <li>Soak: millions of never-removed sessions into a bounded repository; the live
+ *     heap stays flat once capacity is reached. Then as many sessions created and removed
+ *     straight away, long before their TTL: removal takes them off the timing wheel too,
+ *     so the heap stays flat again.</li>
+ * </ul>
+ * There is no test suite, so the stress and soak checks live here and can also be run
+ * on their own.
+ *
+ * <pre>
+ * java benchmark.SessionRepositoryBenchmark [liveEntries] [threads] [soakEntries]
+ * java benchmark.SessionRepositoryBenchmark stress [threads] [seconds]
+ * java benchmark.SessionRepositoryBenchmark soak [entries]
+ * </pre>
+ */
+public class SessionRepositoryBenchmark {
+
+    private static final int STRESS_CAPACITY = 10_000;
+    private static final int STRESS_KEYS_PER_THREAD = 2_000;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("stress")) {
+            stress(args.length > 1 ? Integer.parseInt(args[1]) : 8, args.length > 2 ? Integer.parseInt(args[2]) : 10);
+            System.exit(0);
+        }
+        if (args.length > 0 && args[0].equals("soak")) {
+            soak(args.length > 1 ? Long.parseLong(args[1]) : 5_000_000);
+            System.exit(0);
+        }
+        int live = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long soakEntries = args.length > 2 ? Long.parseLong(args[2]) : 5_000_000;
+
+        sweep(live);
+        tokenLookup(50_000);
+        throughput(threads, 2_000_000);
+        stress(threads, 5);
+        soak(soakEntries);
+        System.exit(0);
+    }
+
+    private static void sweep(int live) throws InterruptedException {
+        int due = live / 100;
+        Map<String, Long> map = new ConcurrentHashMap<>();
+        try (SessionRepository<Long> repository = new SessionRepository<>("bench", live + due, 600_000, 10)) {
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            long sweeperId = Thread.getAllStackTraces().keySet().stream()
+                    .filter(t -> t.getName().equals("session-repository-sweeper"))
+                    .findFirst().orElseThrow().threadId();
+
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < live; i++) {
+                String id = UUID.randomUUID().toString();
+                map.put(id, now + 600_000);
+                repository.put(id, now);
+            }
+            long cpuStart = threadBean.getThreadCpuTime(sweeperId);
+            long wallStart = System.nanoTime();
+            for (int i = 0; i < due; i++) {
+                String id = UUID.randomUUID().toString();
+                map.put(id, now + 500);
+                repository.put(id, now, 500);
+            }
+            Thread.sleep(1000);
+            double sweeperMs = (threadBean.getThreadCpuTime(sweeperId) - cpuStart) / 1e6;
+            double windowMs = (System.nanoTime() - wallStart) / 1e6;
+
+            long start = System.nanoTime();
+            long expiry = System.currentTimeMillis();
+            map.entrySet().removeIf(e -> e.getValue() < expiry);
+            double scanMs = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("Sweep over %,d entries: one full removeIf scan %.1f ms;"
+                            + " timing-wheel sweeper %.1f ms CPU for ~%.0f passes in %.0f ms"
+                            + " (expired %,d of %,d due)%n",
+                    live + due, scanMs, sweeperMs, windowMs / 10, windowMs, repository.getExpired(), due);
+        }
+    }
+
+    private static void tokenLookup(int sessions) throws Exception {
+        QRAuthService service = new QRAuthService();
+        List<String> tokens = new ArrayList<>(sessions);
+        Map<String, QRAuthService.AuthSession> legacy = new ConcurrentHashMap<>();
+        for (int i = 0; i < sessions; i++) {
+            QRAuthService.QRAuthData qr = service.generateLoginQR();
+            tokens.add(qr.token);
+            legacy.put(qr.sessionId, service.getSession(qr.sessionId));
+        }
+
+        int lookups = 2_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            String token = tokens.get((i * 7919) % sessions);
+            sink = legacy.values().stream().filter(s -> token.equals(s.authToken)).findFirst().orElse(null);
+        }
+        double linearUs = (System.nanoTime() - start) / 1e3 / lookups;
+
+        start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            sink = service.scanQRCode(tokens.get(i), "bench-device");
+        }
+        double claimsUs = (System.nanoTime() - start) / 1e3 / sessions;
+
+        System.out.printf("Token lookup over %,d sessions: linear scan %.1f us, scanQRCode via signed claims %.2f us%n",
+                sessions, linearUs, claimsUs);
+    }
+
+    private static void throughput(int threads, int operations) throws InterruptedException {
+        try (SessionRepository<String> repository = new SessionRepository<>("bench", 100_000, 300_000)) {
+            AtomicInteger next = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch done = new CountDownLatch(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                pool.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < operations) {
+                        String id = "s" + i;
+                        repository.put(id, id);
+                        sink = repository.get(id);
+                        sink = repository.remove(id);
+                    }
+                    done.countDown();
+                });
+            }
+            done.await();
+            pool.shutdown();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Throughput: %,.0f put+get+remove/sec on %d threads%n", operations / seconds, threads);
+        }
+    }
+
+    private static void stress(int threads, int seconds) throws InterruptedException {
+        try (SessionRepository<String> repository = new SessionRepository<>("stress", STRESS_CAPACITY, 100, 5)) {
+            Set<String> departed = ConcurrentHashMap.newKeySet();
+            AtomicReference<String> failure = new AtomicReference<>();
+            AtomicLong operations = new AtomicLong();
+            AtomicInteger maxSize = new AtomicInteger();
+            repository.setRemovalListener((id, value) -> {
+                if (!departed.add(value)) {
+                    failure.compareAndSet(null, "Left twice: " + value);
+                }
+            });
+
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int owner = t;
+                workers[t] = new Thread(() -> {
+                    // Only the owner writes its keys, so it knows an upper bound on their expiry
+                    Map<String, Long> latestExpiry = new HashMap<>();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long sequence = 0;
+                    long done = 0;
+                    while (System.nanoTime() < deadline && failure.get() == null) {
+                        String id = "t" + owner + "-" + random.nextInt(STRESS_KEYS_PER_THREAD);
+                        int op = random.nextInt(10);
+                        long ttl = 1 + random.nextInt(200);
+                        if (op < 4) {
+                            repository.put(id, id + "#" + sequence++, ttl);
+                            latestExpiry.put(id, System.currentTimeMillis() + ttl);
+                        } else if (op < 5) {
+                            if (repository.renew(id, ttl) > 0) {
+                                latestExpiry.merge(id, System.currentTimeMillis() + ttl, Math::max);
+                            }
+                        } else if (op < 8) {
+                            long before = System.currentTimeMillis();
+                            String value = repository.get(id);
+                            if (value != null && (!value.startsWith(id + "#")
+                                    || latestExpiry.getOrDefault(id, 0L) < before)) {
+                                failure.compareAndSet(null, "Expired or foreign read: " + value);
+                            }
+                        } else {
+                            String target = op == 8 ? id
+                                    : "t" + random.nextInt(threads) + "-" + random.nextInt(STRESS_KEYS_PER_THREAD);
+                            String value = repository.remove(target);
+                            if (value != null && !departed.add(value)) {
+                                failure.compareAndSet(null, "Removed twice: " + value);
+                            }
+                        }
+                        if (++done % 1024 == 0) {
+                            int size = repository.size();
+                            maxSize.accumulateAndGet(size, Math::max);
+                            if (size > STRESS_CAPACITY + threads) {
+                                failure.compareAndSet(null, "Size " + size + " over capacity " + STRESS_CAPACITY);
+                            }
+                        }
+                    }
+                    operations.addAndGet(done);
+                });
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            System.out.printf("Stress: %d threads for %d s, %,.0f ops/sec; puts %,d, expired %,d, evicted %,d,"
+                            + " max size %,d of %,d%n",
+                    threads, seconds, operations.get() / (double) seconds, repository.getPuts(),
+                    repository.getExpired(), repository.getEvicted(), maxSize.get(), STRESS_CAPACITY);
+            if (failure.get() != null) {
+                throw new IllegalStateException("Stress failed: " + failure.get());
+            }
+        }
+    }
+
+    private static void soak(long count) {
+        try (SessionRepository<String> repository = new SessionRepository<>("soak", 100_000, 300_000)) {
+            System.out.printf("Soak: %,d sessions never removed (capacity %,d)%n", count, repository.getCapacity());
+            long step = Math.max(1, count / 10);
+            long start = System.nanoTime();
+            for (long i = 1; i <= count; i++) {
+                repository.put(UUID.randomUUID().toString(), "user");
+                if (i % step == 0) {
+                    System.out.printf("  %,12d stored  live=%,8d  evicted=%,12d  heap=%6.1f MB%n",
+                            i, repository.size(), repository.getEvicted(), usedHeapMb());
+                }
+            }
+            System.out.printf("  %.1f s, %,.0f puts/sec%n", (System.nanoTime() - start) / 1e9,
+                    count / ((System.nanoTime() - start) / 1e9));
+        }
+        try (SessionRepository<String> repository = new SessionRepository<>("churn", 100_000, 300_000)) {
+            System.out.printf("Churn: %,d sessions created and removed at once (TTL 5 min)%n", count);
+            long step = Math.max(1, count / 10);
+            for (long i = 1; i <= count; i++) {
+                String id = UUID.randomUUID().toString();
+                repository.put(id, "user");
+                repository.remove(id);
+                if (i % step == 0) {
+                    System.out.printf("  %,12d removed  live=%,8d  heap=%6.1f MB%n", i, repository.size(), usedHeapMb());
+                }
+            }
+        }
+    }
+
+    private static double usedHeapMb() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,107 @@
+package benchmark;
+
+import com.google.zxing.NotFoundException;
+import qrcode.QRCodeGenerator;
+import qrcode.QRCodeScanner;
+import qrcode.QRStreamScanner;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a synthetic webcam sequence: an empty, slightly noisy counter for 40 frames,
+ * then a phone showing a QR code drifting across the view. Reports sustainable
+ * frames/sec for per-frame full decoding versus {@link QRStreamScanner}, and the
+ * time-to-first-decode when frames arrive in real time at 30 fps.
+ */
+public class StreamScanBenchmark {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int EMPTY_FRAMES = 40;
+    private static final String PAYLOAD = "http://192.168.1.100:8080/verify?token=KIOSK&session=SESSION_42";
+
+    public static void main(String[] args) throws Exception {
+        int frameCount = args.length > 0 ? Integer.parseInt(args[0]) : 150;
+        List<QRStreamScanner.Frame> frames = recordSequence(frameCount);
+
+        QRCodeScanner naive = new QRCodeScanner();
+        long start = System.nanoTime();
+        for (QRStreamScanner.Frame frame : frames) {
+            try {
+                naive.scanFromLuminance(frame.luminance, WIDTH, HEIGHT, null);
+            } catch (NotFoundException e) {
+                // empty frame
+            }
+        }
+        report("full decode every frame", frameCount, System.nanoTime() - start);
+
+        QRStreamScanner stream = new QRStreamScanner();
+        start = System.nanoTime();
+        for (QRStreamScanner.Frame frame : frames) {
+            stream.processFrame(frame);
+        }
+        report("stream scanner", frameCount, System.nanoTime() - start);
+        System.out.printf("    skipped=%d decoded=%d tracked=%d%n",
+                stream.getFramesSkipped(), stream.getFramesDecoded(), stream.getTrackedDecodes());
+
+        QRStreamScanner live = new QRStreamScanner();
+        CountDownLatch firstDecode = new CountDownLatch(1);
+        long[] decodedAt = new long[1];
+        live.start(decode -> {
+            decodedAt[0] = System.nanoTime();
+            firstDecode.countDown();
+        });
+        long firstSymbolOffered = 0;
+        for (int i = 0; i < frames.size() && firstDecode.getCount() > 0; i++) {
+            QRStreamScanner.Frame frame = frames.get(i);
+            if (i == EMPTY_FRAMES) {
+                firstSymbolOffered = System.nanoTime();
+            }
+            live.offer(frame);
+            Thread.sleep(33);
+        }
+        firstDecode.await(5, TimeUnit.SECONDS);
+        live.stop();
+        System.out.printf("time-to-first-decode at 30 fps: %.1f ms (dropped %d of %d offered)%n",
+                (decodedAt[0] - firstSymbolOffered) / 1_000_000.0, live.getFramesDropped(), live.getFramesOffered());
+    }
+
+    private static void report(String name, int frames, long nanos) {
+        System.out.printf("%-40s %8.1f frames/sec%n", name, frames / (nanos / 1_000_000_000.0));
+    }
+
+    private static List<QRStreamScanner.Frame> recordSequence(int frameCount) throws Exception {
+        BufferedImage qr = QRCodeGenerator.builder().size(220).autoDisplay(false).build().generateQRCodeImage(PAYLOAD);
+        Random random = new Random(7);
+        List<QRStreamScanner.Frame> frames = new ArrayList<>();
+
+        for (int i = 0; i < frameCount; i++) {
+            BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = image.createGraphics();
+            g.setColor(new Color(120, 120, 120));
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            if (i >= EMPTY_FRAMES) {
+                int x = 120 + (i - EMPTY_FRAMES) * 2;
+                g.setColor(Color.DARK_GRAY);
+                g.fillRoundRect(x - 30, 60, 280, 360, 30, 30);
+                g.drawImage(qr, x, 130, null);
+            }
+            g.dispose();
+
+            byte[] luminance = new byte[WIDTH * HEIGHT];
+            image.getRaster().getDataElements(0, 0, WIDTH, HEIGHT, luminance);
+            for (int p = 0; p < luminance.length; p += 7) {
+                luminance[p] = (byte) Math.max(0, Math.min(255, (luminance[p] & 0xFF) + random.nextInt(3) - 1));
+            }
+            frames.add(new QRStreamScanner.Frame(luminance, WIDTH, HEIGHT, i * 33_000_000L));
+        }
+        return frames;
+    }
+}
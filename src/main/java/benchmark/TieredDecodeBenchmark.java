@@ -0,0 +1,87 @@
+package benchmark;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import qrcode.QRCodeGenerator;
+import qrcode.QRCodeScanner;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tiered decode vs the previous single MultiFormatReader + TRY_HARDER path on two sets:
+ * clean generated QR images, and "photographed" ones (rotated, shrunk onto a noisy,
+ * unevenly lit background) that the fast tier cannot read.
+ */
+public class TieredDecodeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        QRCodeGenerator generator = QRCodeGenerator.builder().size(400).autoDisplay(false).build();
+        Random random = new Random(42);
+
+        List<BufferedImage> clean = new ArrayList<>();
+        List<BufferedImage> photographed = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            BufferedImage image = generator.generateQRCodeImage(
+                    "http://192.168.1.100:8080/verify?token=TOKEN" + i + "&session=SESSION_" + i);
+            clean.add(image);
+            photographed.add(simulatePhoto(image, random));
+        }
+
+        MultiFormatReader legacyReader = new MultiFormatReader();
+        legacyReader.setHints(Map.of(DecodeHintType.TRY_HARDER, Boolean.TRUE, DecodeHintType.CHARACTER_SET, "UTF-8"));
+        QRCodeScanner scanner = new QRCodeScanner();
+
+        for (String set : new String[]{"clean", "photographed"}) {
+            List<BufferedImage> images = set.equals("clean") ? clean : photographed;
+            int[] next = {0};
+
+            Bench.measure(set + ": MultiFormat TRY_HARDER", iterations / 4, iterations, () -> {
+                BufferedImage image = images.get(next[0]++ % images.size());
+                legacyReader.decode(new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image))));
+            });
+
+            scanner.getTierStats().reset();
+            Bench.measure(set + ": tiered", iterations / 4, iterations,
+                    () -> scanner.scanFromImage(images.get(next[0]++ % images.size())));
+            System.out.println("    " + scanner.getTierStats());
+        }
+    }
+
+    private static BufferedImage simulatePhoto(BufferedImage qr, Random random) {
+        BufferedImage photo = new BufferedImage(900, 700, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = photo.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setPaint(new java.awt.GradientPaint(0, 0, new Color(170, 160, 150), 900, 700, new Color(90, 85, 80)));
+        g.fillRect(0, 0, 900, 700);
+        g.rotate(Math.toRadians(3 + random.nextInt(8)), 450, 350);
+        g.drawImage(qr, 250, 150, 320, 320, null);
+        g.dispose();
+
+        for (int y = 0; y < photo.getHeight(); y++) {
+            for (int x = 0; x < photo.getWidth(); x++) {
+                int noise = random.nextInt(25) - 12;
+                int rgb = photo.getRGB(x, y);
+                int r = clamp(((rgb >> 16) & 0xFF) + noise);
+                int gr = clamp(((rgb >> 8) & 0xFF) + noise);
+                int b = clamp((rgb & 0xFF) + noise);
+                photo.setRGB(x, y, (r << 16) | (gr << 8) | b);
+            }
+        }
+        return photo;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,99 @@
+package benchmark;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import qrcode.TokenStore;
+import security.TokenService;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Issue and verify cost of stateless {@link TokenService} tokens against the map-backed
+ * {@link TokenStore} and an equivalent HS256 JWT built with jjwt, single-threaded
+ * (ns/op, B/op) and as ops/sec across threads.
+ *
+ * <pre>java benchmark.TokenServiceBenchmark [iterations] [threads]</pre>
+ */
+public class TokenServiceBenchmark {
+
+    private static final long TTL_MS = 5 * 60 * 1000;
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        TokenService service = new TokenService();
+        String sessionId = UUID.randomUUID().toString();
+        String token = service.issue(sessionId, "login", TTL_MS);
+        SecretKey jwtKey = Keys.hmacShaKeyFor(TokenService.randomSecret());
+        String jwt = Jwts.builder().setSubject(sessionId).claim("purpose", "login")
+                .setExpiration(new Date(System.currentTimeMillis() + TTL_MS)).signWith(jwtKey).compact();
+        System.out.printf("token %d chars: %s%nJWT   %d chars%n%n", token.length(), token, jwt.length());
+
+        // Rotation: old tokens keep verifying until their key is retired
+        service.rotateKey("k2", TokenService.randomSecret());
+        System.out.println("after rotation: old token " + (service.verify(token) != null ? "valid" : "INVALID")
+                + ", new token signed with " + service.verify(service.issue(sessionId, "login", TTL_MS)).keyId);
+
+        int warmup = iterations / 5;
+        try (TokenStore store = new TokenStore(iterations * 2, TTL_MS)) {
+            Bench.measure("map store issue", warmup, iterations, () -> sink = store.issue());
+        }
+        Bench.measure("signed issue", warmup, iterations, () -> sink = service.issue(sessionId, "login", TTL_MS));
+        Bench.measure("jjwt HS256 issue", warmup / 10, iterations / 10, () -> sink = Jwts.builder()
+                .setSubject(sessionId).claim("purpose", "login")
+                .setExpiration(new Date(System.currentTimeMillis() + TTL_MS)).signWith(jwtKey).compact());
+
+        try (TokenStore store = new TokenStore(iterations * 2, TTL_MS)) {
+            String[] issued = new String[iterations + warmup];
+            for (int i = 0; i < issued.length; i++) {
+                issued[i] = store.issue();
+            }
+            AtomicInteger next = new AtomicInteger();
+            Bench.measure("map store consume", warmup, iterations,
+                    () -> sink = store.consume(issued[next.getAndIncrement()]));
+        }
+        Bench.measure("signed verify", warmup, iterations, () -> sink = service.verify(token, "login"));
+        Bench.measure("jjwt HS256 verify", warmup / 10, iterations / 10,
+                () -> sink = Jwts.parserBuilder().setSigningKey(jwtKey).build().parseClaimsJws(jwt).getBody());
+
+        System.out.println();
+        throughput("signed issue+verify", threads, iterations,
+                () -> sink = service.verify(service.issue(sessionId, "login", TTL_MS)));
+        try (TokenStore store = new TokenStore(1_000_000, TTL_MS)) {
+            throughput("map store issue+consume", threads, iterations, () -> sink = store.consume(store.issue()));
+        }
+    }
+
+    private static void throughput(String name, int threads, int operations, Bench.Task task)
+            throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                try {
+                    while (next.getAndIncrement() < operations) {
+                        task.run();
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        pool.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-40s %,12.0f ops/sec (%d threads)%n", name, operations / seconds, threads);
+    }
+}
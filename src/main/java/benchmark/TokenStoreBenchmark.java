@@ -0,0 +1,145 @@
+package benchmark;
+
+import qrcode.QRLoginService;
+import qrcode.TokenStore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress and soak runs for {@link TokenStore}.
+ * <ul>
+ *     <li>Stress: threads issue tokens and race two validators against each one; exactly
+ *     one validation per token must win.</li>
+ *     <li>Soak: issues millions of tokens that are never validated and prints the live
+ *     heap as it goes, which stays flat once the store reaches capacity.</li>
+ * </ul>
+ * Also shows the old unsynchronized HashMap store losing writes under the same load.
+ *
+ * <pre>java benchmark.TokenStoreBenchmark [soakTokens] [threads]</pre>
+ */
+public class TokenStoreBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long soakTokens = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        hashMapRace(threads, 200_000);
+        stress(threads, 500_000);
+        throughput(threads, 2_000_000);
+        soak(soakTokens);
+    }
+
+    /** What the previous static HashMap did under concurrent createToken calls. */
+    private static void hashMapRace(int threads, int perThread) throws InterruptedException {
+        Map<String, Long> map = new HashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            pool.execute(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        map.put(id + ":" + i, 0L);
+                    }
+                } catch (RuntimeException e) {
+                    System.out.println("HashMap threw " + e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        pool.shutdown();
+        System.out.printf("HashMap: %d puts, %d entries present (%d lost)%n",
+                (long) threads * perThread, map.size(), (long) threads * perThread - map.size());
+    }
+
+    private static void stress(int threads, int tokens) throws InterruptedException {
+        try (TokenStore store = new TokenStore(tokens, 60_000)) {
+            String[] issued = new String[tokens];
+            AtomicInteger next = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                pool.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < tokens) {
+                        issued[i] = store.issue();
+                    }
+                    done.countDown();
+                });
+            }
+            done.await();
+
+            AtomicLong wins = new AtomicLong();
+            CountDownLatch validated = new CountDownLatch(2 * threads);
+            for (int t = 0; t < 2 * threads; t++) {
+                boolean forward = t % 2 == 0;
+                pool.execute(() -> {
+                    for (int i = 0; i < tokens; i++) {
+                        if (store.consume(issued[forward ? i : tokens - 1 - i])) {
+                            wins.incrementAndGet();
+                        }
+                    }
+                    validated.countDown();
+                });
+            }
+            validated.await();
+            pool.shutdown();
+
+            System.out.printf("Stress: %d tokens, %d validators each trying every token -> %d wins, %d left (%s)%n",
+                    tokens, 2 * threads, wins.get(), store.size(),
+                    wins.get() == tokens && store.size() == 0 ? "OK" : "FAILED");
+        }
+    }
+
+    private static void throughput(int threads, int operations) throws InterruptedException {
+        try (TokenStore store = new TokenStore(100_000, 300_000)) {
+            AtomicInteger next = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch done = new CountDownLatch(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                pool.execute(() -> {
+                    while (next.getAndIncrement() < operations) {
+                        store.consume(store.issue());
+                    }
+                    done.countDown();
+                });
+            }
+            done.await();
+            pool.shutdown();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Throughput: %,.0f issue+consume pairs/sec on %d threads%n", operations / seconds, threads);
+        }
+    }
+
+    private static void soak(long count) {
+        TokenStore store = QRLoginService.getTokenStore();
+        System.out.printf("Soak: %,d unvalidated tokens through QRLoginService (capacity %,d)%n",
+                count, store.getCapacity());
+        long step = Math.max(1, count / 10);
+        long start = System.nanoTime();
+        for (long i = 1; i <= count; i++) {
+            QRLoginService.createToken();
+            if (i % step == 0) {
+                System.out.printf("  %,12d issued  live=%,8d  evicted=%,12d  heap=%6.1f MB%n",
+                        i, store.size(), store.getEvicted(), usedHeapMb());
+            }
+        }
+        System.out.printf("  %.1f s, %,.0f tokens/sec%n", (System.nanoTime() - start) / 1e9,
+                count / ((System.nanoTime() - start) / 1e9));
+    }
+
+    private static double usedHeapMb() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,205 @@
+package benchmark;
+
+import passkey.AuthenticatorData;
+import passkey.CborWriter;
+import passkey.CoseKeys;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Software authenticators for load tests: one ES256 passkey per simulated user, producing
+ * WebAuthn registration ("none" attestation) and assertion payloads that the real
+ * {@code WebAuthnService} accepts.
+ *
+ * <p>Key pairs are generated up front, in parallel, by {@link #create}. Payload builders
+ * are thread-safe, but each user keeps a signature counter, so a given user must not be
+ * driven by two threads at once or its assertions may arrive out of order.
+ */
+public class VirtualAuthenticator {
+
+    private static final int CREDENTIAL_ID_BYTES = 16;
+
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    });
+
+    private static final ThreadLocal<Signature> signers = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("SHA256withECDSA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("ECDSA unavailable", e);
+        }
+    });
+
+    public static class Registration {
+        public String username;
+        public String credentialId;
+        public byte[] attestationObject;
+        public byte[] clientDataJSON;
+    }
+
+    public static class Assertion {
+        public String credentialId;
+        public byte[] authenticatorData;
+        public byte[] clientDataJSON;
+        public byte[] signature;
+    }
+
+    private final String origin;
+    private final byte[] rpIdHash;
+    private final byte[][] credentialIds;
+    private final String[] encodedIds;
+    private final PrivateKey[] privateKeys;
+    private final byte[][] publicKeys;
+    private final long[] signCounts;
+
+    private VirtualAuthenticator(String rpId, String origin, int users) {
+        this.origin = origin;
+        this.rpIdHash = sha256.get().digest(rpId.getBytes(StandardCharsets.UTF_8));
+        this.credentialIds = new byte[users][];
+        this.encodedIds = new String[users];
+        this.privateKeys = new PrivateKey[users];
+        this.publicKeys = new byte[users][];
+        this.signCounts = new long[users];
+    }
+
+    /**
+     * Generates one P-256 key pair and credential id per user on {@code threads} threads.
+     */
+    public static VirtualAuthenticator create(String rpId, String origin, int users, int threads)
+            throws Exception {
+        VirtualAuthenticator authenticator = new VirtualAuthenticator(rpId, origin, users);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            int chunk = (users + threads - 1) / threads;
+            for (int from = 0; from < users; from += chunk) {
+                int start = from;
+                int end = Math.min(users, from + chunk);
+                chunks.add(pool.submit(() -> {
+                    authenticator.generate(start, end);
+                    return null;
+                }));
+            }
+            for (Future<?> f : chunks) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return authenticator;
+    }
+
+    private void generate(int from, int to) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        SecureRandom random = new SecureRandom();
+        for (int u = from; u < to; u++) {
+            KeyPair pair = generator.generateKeyPair();
+            byte[] id = new byte[CREDENTIAL_ID_BYTES];
+            random.nextBytes(id);
+            credentialIds[u] = id;
+            encodedIds[u] = Base64.getUrlEncoder().withoutPadding().encodeToString(id);
+            privateKeys[u] = pair.getPrivate();
+            publicKeys[u] = CoseKeys.encodeEs256((ECPublicKey) pair.getPublic());
+        }
+    }
+
+    public int getUsers() {
+        return privateKeys.length;
+    }
+
+    public String username(int user) {
+        return "vuser" + user;
+    }
+
+    /** The credential id as the server stores it: base64url without padding. */
+    public String credentialId(int user) {
+        return encodedIds[user];
+    }
+
+    /** For callers that sign their own assertions, e.g. with a fixed counter. */
+    public PrivateKey privateKey(int user) {
+        return privateKeys[user];
+    }
+
+    /**
+     * Answers a registration challenge with a "none" attestation carrying the user's
+     * credential id and COSE public key.
+     */
+    public Registration register(int user, String challenge) {
+        byte[] id = credentialIds[user];
+        byte[] cose = publicKeys[user];
+        byte[] authData = new byte[37 + 16 + 2 + id.length + cose.length];
+        System.arraycopy(rpIdHash, 0, authData, 0, 32);
+        authData[32] = (byte) (AuthenticatorData.FLAG_USER_PRESENT | AuthenticatorData.FLAG_USER_VERIFIED
+                | AuthenticatorData.FLAG_ATTESTED_CREDENTIAL);
+        int offset = 37 + 16; // zero counter and AAGUID
+        authData[offset] = (byte) (id.length >>> 8);
+        authData[offset + 1] = (byte) id.length;
+        System.arraycopy(id, 0, authData, offset + 2, id.length);
+        System.arraycopy(cose, 0, authData, offset + 2 + id.length, cose.length);
+
+        Registration registration = new Registration();
+        registration.username = username(user);
+        registration.credentialId = encodedIds[user];
+        registration.attestationObject = new CborWriter(authData.length + 40)
+                .writeMapHeader(3)
+                .writeText("fmt").writeText("none")
+                .writeText("attStmt").writeMapHeader(0)
+                .writeText("authData").writeBytes(authData)
+                .toByteArray();
+        registration.clientDataJSON = clientData("webauthn.create", challenge);
+        return registration;
+    }
+
+    /**
+     * Signs a login challenge with the user's key, moving its signature counter forward.
+     */
+    public Assertion authenticate(int user, String challenge) throws GeneralSecurityException {
+        long count = ++signCounts[user];
+        byte[] authData = new byte[37];
+        System.arraycopy(rpIdHash, 0, authData, 0, 32);
+        authData[32] = (byte) (AuthenticatorData.FLAG_USER_PRESENT | AuthenticatorData.FLAG_USER_VERIFIED);
+        authData[33] = (byte) (count >>> 24);
+        authData[34] = (byte) (count >>> 16);
+        authData[35] = (byte) (count >>> 8);
+        authData[36] = (byte) count;
+
+        Assertion assertion = new Assertion();
+        assertion.credentialId = encodedIds[user];
+        assertion.authenticatorData = authData;
+        assertion.clientDataJSON = clientData("webauthn.get", challenge);
+        Signature signer = signers.get();
+        signer.initSign(privateKeys[user]);
+        signer.update(authData);
+        signer.update(sha256.get().digest(assertion.clientDataJSON));
+        assertion.signature = signer.sign();
+        return assertion;
+    }
+
+    private byte[] clientData(String type, String challenge) {
+        return ("{\"type\":\"" + type + "\",\"challenge\":\"" + challenge + "\",\"origin\":\"" + origin
+                + "\",\"crossOrigin\":false}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -4,6 +4,7 @@ public class PasskeyCredential {
     private final String id;
     private final String username;
     private final String publicKey;
+    private volatile long signCount;
 
     public PasskeyCredential(String id, String username, String publicKey) {
         this.id = id;
@@ -22,4 +23,12 @@ public class PasskeyCredential {
     public String getPublicKey() {
         return publicKey;
     }
+
+    public long getSignCount() {
+        return signCount;
+    }
+
+    public void setSignCount(long signCount) {
+        this.signCount = signCount;
+    }
 }
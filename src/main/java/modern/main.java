@@ -4,6 +4,7 @@ import passkey.CredentialRepository;
 import passkey.WebAuthnService;
 
 public class main {
+    @SuppressWarnings("deprecation") // démo sans authentificateur : simple comparaison des noms
     public static void main(String[] args) {
 
         // Créer repository
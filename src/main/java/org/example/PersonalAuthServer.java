@@ -3,21 +3,28 @@ package org.example;
 import qrcode.QRAuthService;
 import qrcode.QRAuthService.User;
 import qrcode.QRCodeGenerator;
+import server.HttpRequestView;
+import server.ServerExecutors;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Serveur web qui montre UNIQUEMENT votre QR code
  */
 public class PersonalAuthServer {
 
+    private static final int REQUEST_BUFFER_BYTES = 8 * 1024;
+
     private ServerSocket serverSocket;
     private final QRAuthService authService;
     private final int port;
     private final String serverIp;
     private String targetUserEmail; // VOTRE email
+    private final ExecutorService connections = ServerExecutors.newExecutor("personal-auth", 0);
 
     public PersonalAuthServer(int port, QRAuthService authService, String userEmail) throws Exception {
         this.port = port;
@@ -73,7 +80,7 @@ public class PersonalAuthServer {
         while (true) {
             try {
                 Socket client = serverSocket.accept();
-                new Thread(() -> handleRequest(client)).start();
+                connections.execute(() -> handleRequest(client));
             } catch (IOException e) {
                 break;
             }
@@ -82,23 +89,19 @@ public class PersonalAuthServer {
 
     private void handleRequest(Socket client) {
         try (
-                BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+                InputStream in = client.getInputStream();
                 PrintWriter out = new PrintWriter(client.getOutputStream(), true)
         ) {
-            String request = in.readLine();
-            if (request == null) return;
-
-            String[] parts = request.split(" ");
-            if (parts.length < 2) return;
-
-            String path = parts[1];
+            // Un buffer par connexion, analysé sur place par HttpRequestView
+            HttpRequestView request = new HttpRequestView();
+            if (!request.readFrom(in, ByteBuffer.allocate(REQUEST_BUFFER_BYTES))) return;
 
-            if (path.equals("/") || path.equals("/index.html")) {
+            if (request.pathEquals("/") || request.pathEquals("/index.html")) {
                 servePersonalQRPage(out);
-            } else if (path.startsWith("/login")) {
-                serveAutoLogin(out, path);
-            } else if (path.startsWith("/auto-login")) {
-                serveDirectLogin(out, path);
+            } else if (request.pathStartsWith("/login")) {
+                serveAutoLogin(out, request);
+            } else if (request.pathStartsWith("/auto-login")) {
+                serveDirectLogin(out, request);
             } else {
                 servePersonalQRPage(out);
             }
@@ -226,11 +229,10 @@ public class PersonalAuthServer {
     /**
      * Login automatique - redirige directement vers le compte
      */
-    private void serveAutoLogin(PrintWriter out, String path) {
+    private void serveAutoLogin(PrintWriter out, HttpRequestView request) {
         try {
             // Extraire les paramètres
-            Map<String, String> params = parseQueryParams(path);
-            String userEmail = params.getOrDefault("user", targetUserEmail);
+            String userEmail = param(request, "user");
 
             User user = authService.getUserByEmail(userEmail);
             if (user == null) {
@@ -293,10 +295,9 @@ public class PersonalAuthServer {
     /**
      * Login direct - pour les liens manuels
      */
-    private void serveDirectLogin(PrintWriter out, String path) {
+    private void serveDirectLogin(PrintWriter out, HttpRequestView request) {
         try {
-            Map<String, String> params = parseQueryParams(path);
-            String email = params.getOrDefault("email", targetUserEmail);
+            String email = param(request, "email");
 
             // Page avec redirection automatique
             String html = String.format("""
@@ -343,23 +344,12 @@ public class PersonalAuthServer {
         }
     }
 
-    private Map<String, String> parseQueryParams(String path) {
-        Map<String, String> params = new HashMap<>();
-        if (path.contains("?")) {
-            String query = path.split("\\?")[1];
-            String[] pairs = query.split("&");
-            for (String pair : pairs) {
-                String[] keyValue = pair.split("=");
-                if (keyValue.length == 2) {
-                    try {
-                        params.put(keyValue[0], java.net.URLDecoder.decode(keyValue[1], "UTF-8"));
-                    } catch (Exception e) {
-                        params.put(keyValue[0], keyValue[1]);
-                    }
-                }
-            }
-        }
-        return params;
+    /**
+     * Paramètre de la requête, ou l'email cible s'il est absent ou vide
+     */
+    private String param(HttpRequestView request, String name) {
+        String value = request.param(name);
+        return value == null || value.isEmpty() ? targetUserEmail : value;
     }
 
     private void sendResponse(PrintWriter out, String html) {
@@ -379,6 +369,7 @@ public class PersonalAuthServer {
         } catch (IOException e) {
             // Ignore
         }
+        connections.shutdownNow();
     }
 
     public static void main(String[] args) {
@@ -3,28 +3,61 @@ package org.example;
 import qrcode.QRAuthService;
 import qrcode.QRAuthService.User;
 import qrcode.QRAuthService.AuthSession;
+import server.HttpRequestView;
+import server.NioHttpServer;
+import server.NioHttpServer.Response;
+import server.ServerExecutors;
 
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.URLDecoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+/**
+ * Serves the confirmation pages opened from the QR code on the phone.
+ *
+ * <p>By default requests are served by a {@link NioHttpServer}: one selector thread,
+ * keep-alive connections, so the confirm page, the confirm POST and the status polls
+ * of one phone share a connection. Routing logs and looks up sessions, so it runs on
+ * the server's thread pool, never on the selector thread. {@code -Dconfirmation.engine=blocking} brings back
+ * the original engine, a thread per connection closed after every response.
+ */
 public class QRCodeConfirmationServer {
 
+    public static final String ENGINE_PROPERTY = "confirmation.engine";
+
+    public enum Engine {
+        NIO, BLOCKING
+    }
+
+    private static final int REQUEST_BUFFER_BYTES = 8 * 1024;
+
+    private static final Response UNKNOWN_SESSION_RESPONSE = Response.cached(404, "Not Found",
+            "text/html; charset=UTF-8",
+            "<!DOCTYPE html><title>Error</title><p>Authentication session is expired or invalid.</p>", true);
+
     private ServerSocket serverSocket;
+    private NioHttpServer nioServer;
     private final QRAuthService authService;
     private final int port;
+    private final Engine engine;
     private boolean running = false;
-    private final ExecutorService threadPool = Executors.newFixedThreadPool(10);
+    private ExecutorService threadPool;
     private final String serverIp;
+    private Response homePage;
 
     public QRCodeConfirmationServer(int port, QRAuthService authService) throws Exception {
+        this(port, authService, "blocking".equalsIgnoreCase(System.getProperty(ENGINE_PROPERTY))
+                ? Engine.BLOCKING : Engine.NIO);
+    }
+
+    public QRCodeConfirmationServer(int port, QRAuthService authService, Engine engine) throws Exception {
         this.port = port;
         this.authService = authService;
+        this.engine = engine;
         this.serverIp = getLocalIP();
     }
 
@@ -37,6 +70,12 @@ public class QRCodeConfirmationServer {
     }
 
     public void start() {
+        homePage = Response.cached(200, "OK", "text/html; charset=UTF-8", createHomeHtml(), false);
+        threadPool = ServerExecutors.newExecutor("qr-confirmation", 10);
+        if (engine == Engine.NIO) {
+            startNio();
+            return;
+        }
         try {
             serverSocket = new ServerSocket(port);
             running = true;
@@ -76,6 +115,33 @@ public class QRCodeConfirmationServer {
         }
     }
 
+    private void startNio() {
+        try {
+            nioServer = new NioHttpServer(port, this::route, threadPool);
+        } catch (IOException e) {
+            System.err.println("❌ Could not start server on port " + port + ": " + e.getMessage());
+            System.out.println("⚠️  Trying port " + (port + 1) + "...");
+            try {
+                nioServer = new NioHttpServer(port + 1, this::route, threadPool);
+            } catch (IOException ex) {
+                System.err.println("❌ Failed to start on alternative port: " + ex.getMessage());
+                return;
+            }
+        }
+        running = true;
+        nioServer.start("qr-confirmation-nio");
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("🔐 QR CODE CONFIRMATION SERVER");
+        System.out.println("=".repeat(60));
+        System.out.println("\n🌐 Server running on:");
+        System.out.println("   http://localhost:" + nioServer.getPort());
+        System.out.println("   http://" + serverIp + ":" + nioServer.getPort());
+        System.out.println("\n📱 Waiting for mobile confirmations...");
+        System.out.println("=".repeat(60));
+    }
+
+
     private void startServerThread() {
         new Thread(() -> {
             while (running) {
@@ -93,61 +159,22 @@ public class QRCodeConfirmationServer {
 
     private void handleRequest(Socket clientSocket) {
         try (
-                BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+                InputStream in = clientSocket.getInputStream();
                 PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true)
         ) {
-            String requestLine = in.readLine();
-            if (requestLine == null || requestLine.isEmpty()) {
-                sendError(out, "Empty Request");
-                return;
-            }
-
-            String[] requestParts = requestLine.split(" ");
-            if (requestParts.length < 2) {
-                sendError(out, "Invalid Request");
-                return;
-            }
-
-            String method = requestParts[0];
-            String fullPath = requestParts[1];
-
-            // Read headers to get content length for POST requests
-            Map<String, String> headers = new HashMap<>();
-            String line;
-            while ((line = in.readLine()) != null && !line.isEmpty()) {
-                int colonIndex = line.indexOf(':');
-                if (colonIndex > 0) {
-                    String key = line.substring(0, colonIndex).trim().toLowerCase();
-                    String value = line.substring(colonIndex + 1).trim();
-                    headers.put(key, value);
+            OutputStream raw = clientSocket.getOutputStream();
+            HttpRequestView request = new HttpRequestView();
+            ByteBuffer buffer = ByteBuffer.allocate(REQUEST_BUFFER_BYTES);
+            try {
+                if (!request.readFrom(in, buffer)) {
+                    writeBlocking(out, raw, error("Empty Request"));
+                    return;
                 }
+            } catch (IllegalArgumentException | HttpRequestView.RequestTooLarge e) {
+                writeBlocking(out, raw, error("Invalid Request"));
+                return;
             }
-
-            String path = fullPath.contains("?") ? fullPath.split("\\?")[0] : fullPath;
-            Map<String, String> params = parseQueryParams(fullPath);
-
-            // Handle POST body if present
-            if (method.equalsIgnoreCase("POST")) {
-                String postBody = readPostBody(in, headers);
-                params.putAll(parsePostBody(postBody));
-            }
-
-            System.out.println("📡 Request: " + method + " " + path);
-
-            // Route requests
-            if (path.equals("/") || path.equals("/index.html")) {
-                serveHomePage(out);
-            } else if (path.equals("/confirm")) {
-                handleConfirmationPage(out, params);
-            } else if (path.equals("/action/confirm")) {
-                handleConfirmationAction(out, params);
-            } else if (path.equals("/success")) {
-                serveSuccessPage(out, params);
-            } else if (path.equals("/check-status")) {
-                handleCheckStatus(out, params);
-            } else {
-                serveHomePage(out);
-            }
+            writeBlocking(out, raw, route(request));
 
         } catch (Exception e) {
             System.err.println("❌ Error handling request: " + e.getMessage());
@@ -160,30 +187,55 @@ public class QRCodeConfirmationServer {
         }
     }
 
-    private String readPostBody(BufferedReader in, Map<String, String> headers) throws IOException {
-        if (!headers.containsKey("content-length")) {
-            return "";
-        }
+    /** Same response as the NIO engine, but the connection is always closed afterwards. */
+    private void writeBlocking(PrintWriter out, OutputStream raw, Response response) throws IOException {
+        ByteBuffer body = response.body.duplicate();
+        out.println("HTTP/1.1 " + response.status + " " + response.reason);
+        out.println("Content-Type: " + response.contentType);
+        out.println("Content-Length: " + body.remaining());
+        out.println("Connection: close");
+        out.println();
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        raw.write(bytes);
+        raw.flush();
+    }
 
-        int contentLength = Integer.parseInt(headers.get("content-length"));
-        if (contentLength <= 0) {
-            return "";
+    private Response route(HttpRequestView request) {
+        // Links for sessions that were never issued are rejected before any lookup
+        if (request.pathEquals("/confirm") || request.pathEquals("/action/confirm")) {
+            String sessionParam = request.param("session");
+            String tokenParam = request.param("token");
+            if (sessionParam != null && tokenParam != null
+                    && !(authService.mightBeLive(sessionParam) && authService.mightBeLive(tokenParam))) {
+                return UNKNOWN_SESSION_RESPONSE;
+            }
         }
 
-        char[] buffer = new char[contentLength];
-        int bytesRead = in.read(buffer, 0, contentLength);
-        return new String(buffer, 0, bytesRead);
+        // Route requests
+        if (request.pathEquals("/") || request.pathEquals("/index.html")) {
+            return homePage;
+        } else if (request.pathEquals("/confirm")) {
+            return handleConfirmationPage(request);
+        } else if (request.pathEquals("/action/confirm")) {
+            return handleConfirmationAction(request);
+        } else if (request.pathEquals("/success")) {
+            return serveSuccessPage(request);
+        } else if (request.pathEquals("/check-status")) {
+            return handleCheckStatus(request);
+        } else {
+            return homePage;
+        }
     }
 
     /** Handles serving the HTML page with the "Confirm" button. */
-    private void handleConfirmationPage(PrintWriter out, Map<String, String> params) {
-        String token = params.get("token");
-        String sessionId = params.get("session");
-        String email = params.get("email");
+    private Response handleConfirmationPage(HttpRequestView request) {
+        String token = request.param("token");
+        String sessionId = request.param("session");
+        String email = request.param("email");
 
         if (token == null || sessionId == null) {
-            sendError(out, "❌ Invalid confirmation link. Missing session or token.");
-            return;
+            return error("❌ Invalid confirmation link. Missing session or token.");
         }
 
         try {
@@ -191,14 +243,12 @@ public class QRCodeConfirmationServer {
             AuthSession session = authService.getSession(sessionId);
 
             if (session == null) {
-                sendError(out, "❌ Authentication session is expired or invalid.");
-                return;
+                return error("❌ Authentication session is expired or invalid.");
             }
 
             // Check if already confirmed
             if (session.status == QRAuthService.SessionStatus.AUTHENTICATED) {
-                sendResponse(out, createAlreadyConfirmedHtml());
-                return;
+                return Response.html(createAlreadyConfirmedHtml());
             }
 
             // Get user info
@@ -224,23 +274,22 @@ public class QRCodeConfirmationServer {
             }
 
             // Serve the confirmation page
-            sendResponse(out, createConfirmationHtml(user.displayName, user.email, sessionId, token));
+            return Response.html(createConfirmationHtml(user.displayName, user.email, sessionId, token));
 
         } catch (Exception e) {
             System.err.println("❌ Error in /confirm: " + e.getMessage());
-            sendError(out, "Server error: " + e.getMessage());
+            return error("Server error: " + e.getMessage());
         }
     }
 
     /** Handles the button click from the mobile device to confirm the login. */
-    private void handleConfirmationAction(PrintWriter out, Map<String, String> params) {
-        String token = params.get("token");
-        String sessionId = params.get("session");
-        String email = params.get("email");
+    private Response handleConfirmationAction(HttpRequestView request) {
+        String token = request.param("token");
+        String sessionId = request.param("session");
+        String email = request.param("email");
 
         if (token == null || sessionId == null) {
-            sendError(out, "❌ Invalid confirmation action.");
-            return;
+            return error("❌ Invalid confirmation action.");
         }
 
         try {
@@ -262,50 +311,49 @@ public class QRCodeConfirmationServer {
                 }
 
                 String successHtml = createSuccessHtml(userName, sessionId);
-                sendResponse(out, successHtml);
+                return Response.html(successHtml);
             } else {
-                sendError(out, "❌ Confirmation failed. Token expired or invalid.");
+                return error("❌ Confirmation failed. Token expired or invalid.");
             }
         } catch (Exception e) {
             System.err.println("❌ Error in /action/confirm: " + e.getMessage());
-            sendError(out, "Server error during confirmation.");
+            return error("Server error during confirmation.");
         }
     }
 
     /** Check session status (for polling) */
-    private void handleCheckStatus(PrintWriter out, Map<String, String> params) {
-        String sessionId = params.get("session");
+    private Response handleCheckStatus(HttpRequestView request) {
+        String sessionId = request.param("session");
 
         if (sessionId == null) {
-            sendJsonResponse(out, "{\"status\":\"error\",\"message\":\"No session ID\"}");
-            return;
+            return Response.json("{\"status\":\"error\",\"message\":\"No session ID\"}");
         }
 
         try {
             AuthSession session = authService.getSession(sessionId);
 
             if (session == null) {
-                sendJsonResponse(out, "{\"status\":\"expired\",\"message\":\"Session not found\"}");
+                return Response.json("{\"status\":\"expired\",\"message\":\"Session not found\"}");
             } else if (session.status == QRAuthService.SessionStatus.AUTHENTICATED) {
-                sendJsonResponse(out, String.format(
+                return Response.json(String.format(
                         "{\"status\":\"authenticated\",\"sessionId\":\"%s\",\"authenticated\":true}",
                         sessionId
                 ));
             } else {
-                sendJsonResponse(out, String.format(
+                return Response.json(String.format(
                         "{\"status\":\"%s\",\"authenticated\":false}",
                         session.status.toString().toLowerCase()
                 ));
             }
         } catch (Exception e) {
-            sendJsonResponse(out, "{\"status\":\"error\",\"message\":\"" + e.getMessage() + "\"}");
+            return Response.json("{\"status\":\"error\",\"message\":\"" + e.getMessage() + "\"}");
         }
     }
 
     // --- HTML Generation Methods (Mobile-Friendly) ---
 
-    private void serveHomePage(PrintWriter out) {
-        String html = """
+    private String createHomeHtml() {
+        return """
             <!DOCTYPE html>
             <html>
             <head>
@@ -351,16 +399,14 @@ public class QRCodeConfirmationServer {
             </body>
             </html>
             """.formatted(port, serverIp);
-
-        sendResponse(out, html);
     }
 
-    private void serveSuccessPage(PrintWriter out, Map<String, String> params) {
-        String userName = params.getOrDefault("user", "User");
-        String sessionId = params.getOrDefault("session", "");
+    private Response serveSuccessPage(HttpRequestView request) {
+        String userName = request.param("user", "User");
+        String sessionId = request.param("session", "");
 
         String html = createSuccessHtml(userName, sessionId);
-        sendResponse(out, html);
+        return Response.html(html);
     }
 
     private String createConfirmationHtml(String userName, String userEmail, String sessionId, String token) {
@@ -565,68 +611,7 @@ public class QRCodeConfirmationServer {
 
     // --- Utility Methods ---
 
-    private Map<String, String> parseQueryParams(String fullPath) {
-        Map<String, String> params = new HashMap<>();
-        if (!fullPath.contains("?")) {
-            return params;
-        }
-        String queryString = fullPath.substring(fullPath.indexOf('?') + 1);
-        String[] pairs = queryString.split("&");
-        for (String pair : pairs) {
-            try {
-                int idx = pair.indexOf('=');
-                if (idx > 0) {
-                    String key = URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8.name());
-                    String value = URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8.name());
-                    params.put(key, value);
-                }
-            } catch (UnsupportedEncodingException e) {
-                // Ignore, should not happen with UTF-8
-            }
-        }
-        return params;
-    }
-
-    private Map<String, String> parsePostBody(String body) {
-        Map<String, String> params = new HashMap<>();
-        if (body == null || body.isEmpty()) {
-            return params;
-        }
-        String[] pairs = body.split("&");
-        for (String pair : pairs) {
-            try {
-                int idx = pair.indexOf('=');
-                if (idx > 0) {
-                    String key = URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8.name());
-                    String value = URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8.name());
-                    params.put(key, value);
-                }
-            } catch (UnsupportedEncodingException e) {
-                // Ignore
-            }
-        }
-        return params;
-    }
-
-    private void sendResponse(PrintWriter out, String html) {
-        out.println("HTTP/1.1 200 OK");
-        out.println("Content-Type: text/html; charset=UTF-8");
-        out.println("Content-Length: " + html.getBytes(StandardCharsets.UTF_8).length);
-        out.println("Connection: close");
-        out.println();
-        out.println(html);
-    }
-
-    private void sendJsonResponse(PrintWriter out, String json) {
-        out.println("HTTP/1.1 200 OK");
-        out.println("Content-Type: application/json");
-        out.println("Content-Length: " + json.length());
-        out.println("Connection: close");
-        out.println();
-        out.println(json);
-    }
-
-    private void sendError(PrintWriter out, String message) {
+    private Response error(String message) {
         String html = String.format("""
             <!DOCTYPE html>
             <html>
@@ -638,7 +623,7 @@ public class QRCodeConfirmationServer {
             </body>
             </html>
             """, message);
-        sendResponse(out, html);
+        return Response.html(html);
     }
 
     public void stop() {
@@ -647,7 +632,12 @@ public class QRCodeConfirmationServer {
             if (serverSocket != null) {
                 serverSocket.close();
             }
-            threadPool.shutdownNow();
+            if (nioServer != null) {
+                nioServer.close();
+            }
+            if (threadPool != null) {
+                threadPool.shutdownNow();
+            }
         } catch (IOException e) {
             // Ignore
         }
@@ -1,12 +1,31 @@
 // File: src/main/java/org/example/QRCodeWebServer.java
 package org.example;
 
+import com.google.zxing.NotFoundException;
 import io.javalin.Javalin;
+import io.javalin.config.SizeUnit;
+import io.javalin.http.Context;
+import io.javalin.http.UploadedFile;
 import qrcode.QRAuthService;
 import qrcode.QRAuthService.User;
-
+import qrcode.LoginQRPool;
+import qrcode.QRCodeGenerator;
+import qrcode.QRCodeScanner;
+import qrcode.QRDecodeService;
+import server.ServerExecutors;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Web Server for QR Code Authentication
@@ -14,20 +33,47 @@ import java.util.Map;
  */
 public class QRCodeWebServer {
 
-    private final Javalin app;
+    private static final long MAX_UPLOAD_BYTES = 8L * 1024 * 1024;
+    private static final long MAX_UPLOAD_PIXELS = 25_000_000;
+    private static final int SCAN_QUEUE_CAPACITY = 64;
+    private static final long SCAN_TIMEOUT_MS = 5000;
+    private static final String SESSION_LOGIN_QR = "loginSessionId";
+    private static final byte[] UNKNOWN_TOKEN_PAGE =
+            "<!DOCTYPE html><title>Invalid</title><p>Invalid or expired QR code</p>".getBytes(StandardCharsets.UTF_8);
+
+    private Javalin app;
     private final QRAuthService authService;
+    private final QRCodeGenerator qrGenerator;
+    private final LoginQRPool loginPool;
+    private final QRDecodeService decodeService;
     private final int port;
 
     public QRCodeWebServer(int port, QRAuthService authService) {
+        this(port, authService, null);
+    }
+
+    /**
+     * @param loginPool optional pool of pre-rendered login sessions used by /generate-login;
+     *                  when null every request creates its session inline.
+     */
+    public QRCodeWebServer(int port, QRAuthService authService, LoginQRPool loginPool) {
         this.port = port;
         this.authService = authService;
+        this.qrGenerator = QRCodeGenerator.builder().size(300).autoDisplay(false).build();
+        this.loginPool = loginPool;
+        this.decodeService = new QRDecodeService(Runtime.getRuntime().availableProcessors(),
+                SCAN_QUEUE_CAPACITY, SCAN_TIMEOUT_MS);
         this.app = createJavalinApp();
     }
 
     private Javalin createJavalinApp() {
         // Remove static files configuration since we don't need it
+        ServerExecutors.configureJavalin();
         return Javalin.create(config -> {
             // No static files needed - we serve all HTML directly
+            config.jetty.multipartConfig.maxFileSize(MAX_UPLOAD_BYTES, SizeUnit.BYTES);
+            config.jetty.multipartConfig.maxTotalRequestSize(MAX_UPLOAD_BYTES + 64 * 1024, SizeUnit.BYTES);
+            config.jetty.multipartConfig.maxInMemoryFileSize(256, SizeUnit.KB);
         });
     }
 
@@ -94,8 +140,12 @@ public class QRCodeWebServer {
         // Generate QR code for login
         javalin.get("/generate-login", ctx -> {
             try {
-                // Generate QR code data
-                QRAuthService.QRAuthData qrData = authService.generateLoginQR();
+                // Generate QR code data, from the pre-rendered pool when available
+                QRAuthService.QRAuthData qrData = loginPool != null
+                        ? loginPool.claim()
+                        : authService.generateLoginQR();
+                // Only the browser that asked for this QR code may load its image
+                ctx.sessionAttribute(SESSION_LOGIN_QR, qrData.sessionId);
 
                 String html = """
                     <!DOCTYPE html>
@@ -122,13 +172,11 @@ public class QRCodeWebServer {
                             
                             <div class="qr-code">
                                 <p><strong>Session ID:</strong> <span id="sessionId">%s</span></p>
+                                <img src="/qr/%s.png" width="300" height="300" alt="Login QR Code">
                                 <p><strong>QR Code Data:</strong></p>
                                 <div style="padding: 10px; background: #f8f9fa; border-radius: 5px; font-family: monospace; word-break: break-all;">
                                     %s
                                 </div>
-                                <p style="margin-top: 15px; color: #666;">
-                                    <em>In a real implementation, this would be a scannable QR code image.</em>
-                                </p>
                             </div>
 
                             <div class="instructions">
@@ -183,6 +231,7 @@ public class QRCodeWebServer {
                     </body>
                     </html>
                     """.formatted(
+                        qrData.sessionId,
                         qrData.sessionId,
                         qrData.toJSON(),
                         qrData.token, port, qrData.token,
@@ -196,6 +245,12 @@ public class QRCodeWebServer {
             }
         });
 
+        // QR code image for a session, streamed straight into the response
+        javalin.get("/qr/{file}", this::serveSessionQRCode);
+
+        // Server-side decode of an uploaded QR image (raw body or multipart field "image")
+        javalin.post("/scan", this::scanUpload);
+
         // Mobile test page - easy access for testing
         javalin.get("/mobile-test", ctx -> {
             String token = ctx.queryParam("token");
@@ -216,6 +271,11 @@ public class QRCodeWebServer {
                 ctx.html("Invalid token");
                 return;
             }
+            if (!authService.mightBeLive(token)) {
+                // Never issued (or long expired): answer without touching the session store
+                ctx.status(404).contentType("text/html; charset=UTF-8").result(UNKNOWN_TOKEN_PAGE);
+                return;
+            }
 
             // Simulate mobile device scanning
             QRAuthService.AuthSession scannedSession = authService.scanQRCode(token, deviceId);
@@ -482,8 +542,221 @@ public class QRCodeWebServer {
         });
     }
 
+    /**
+     * Serves /qr/{sessionId}.png or /qr/{sessionId}.svg to the browser that generated the
+     * session, as recorded in its HTTP session by /generate-login; anyone else gets 404,
+     * since the image carries the live login token. The browser may keep the image but
+     * must revalidate it, which goes through the same check and is answered with 304
+     * when the ETag still matches.
+     */
+    private void serveSessionQRCode(Context ctx) throws Exception {
+        String file = ctx.pathParam("file");
+        int dot = file.lastIndexOf('.');
+        String sessionId = dot > 0 ? file.substring(0, dot) : file;
+        String format = dot > 0 ? file.substring(dot + 1) : "png";
+
+        if (!format.equals("png") && !format.equals("svg")) {
+            ctx.status(404).result("Unsupported QR format: " + format);
+            return;
+        }
+
+        QRAuthService.AuthSession session = sessionId.equals(ctx.sessionAttribute(SESSION_LOGIN_QR))
+                ? authService.getSession(sessionId)
+                : null;
+        if (session == null || session.qrContent == null) {
+            ctx.status(404).result("QR code not found");
+            return;
+        }
+
+        String etag = "\"" + file + "\"";
+        ctx.header("ETag", etag);
+        ctx.header("Cache-Control", "private, no-cache");
+
+        if (ifNoneMatch(ctx.header("If-None-Match"), file)) {
+            ctx.status(304);
+            return;
+        }
+
+        if (format.equals("svg")) {
+            ctx.contentType("image/svg+xml");
+            Writer writer = new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8);
+            qrGenerator.writeQRCodeSvg(session.qrContent, writer);
+            writer.flush();
+        } else if (session.qrImage != null) {
+            ctx.contentType("image/png");
+            ctx.result(session.qrImage);
+        } else {
+            ctx.contentType("image/png");
+            qrGenerator.writeQRCodePng(session.qrContent, ctx.outputStream());
+        }
+    }
+
+    /**
+     * Whether an If-None-Match header matches the current entity tag, per RFC 9110
+     * section 13.1.2: {@code *}, or a comma-separated list of tags compared weakly, so
+     * {@code W/"x"} matches {@code "x"}.
+     *
+     * @param opaqueTag the current tag without quotes
+     */
+    private static boolean ifNoneMatch(String header, String opaqueTag) {
+        if (header == null) {
+            return false;
+        }
+        if (header.trim().equals("*")) {
+            return true;
+        }
+        int i = 0;
+        int length = header.length();
+        while (i < length) {
+            char c = header.charAt(i);
+            if (c == ' ' || c == '\t' || c == ',') {
+                i++;
+                continue;
+            }
+            if (header.startsWith("W/", i)) {
+                i += 2;
+            }
+            if (i >= length || header.charAt(i) != '"') {
+                return false; // malformed list: treat as no match
+            }
+            int end = header.indexOf('"', i + 1);
+            if (end < 0) {
+                return false;
+            }
+            if (header.regionMatches(i + 1, opaqueTag, 0, opaqueTag.length())
+                    && end - i - 1 == opaqueTag.length()) {
+                return true;
+            }
+            i = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Decodes an uploaded image straight from the request stream on the bounded decode
+     * pool. Oversized uploads get 413, a full queue or a slow decode 503, and an image
+     * without a QR code 422. Once the answer is sent the body is cancelled, so a decode
+     * that timed out stops at its next read instead of draining the upload.
+     */
+    private void scanUpload(Context ctx) throws IOException {
+        if (ctx.req().getContentLengthLong() > MAX_UPLOAD_BYTES) {
+            ctx.status(413).json(Map.of("error", "Upload exceeds " + MAX_UPLOAD_BYTES + " bytes"));
+            return;
+        }
+
+        InputStream source;
+        if (ctx.isMultipartFormData()) {
+            UploadedFile upload = ctx.uploadedFile("image");
+            if (upload == null) {
+                ctx.status(400).json(Map.of("error", "Missing multipart field 'image'"));
+                return;
+            }
+            source = upload.content();
+        } else {
+            source = ctx.bodyInputStream();
+        }
+        CancellableInputStream body = new CancellableInputStream(source);
+
+        ctx.future(() -> decodeService
+                .submit(scanner -> describeScan(scanner,
+                        scanner.scanFromStream(body, MAX_UPLOAD_BYTES, MAX_UPLOAD_PIXELS)))
+                .handle((response, error) -> {
+                    body.cancel();
+                    if (error == null) {
+                        ctx.json(response);
+                    } else {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        ctx.status(scanErrorStatus(cause)).json(Map.of("error", scanErrorMessage(cause)));
+                    }
+                    return null;
+                }));
+    }
+
+    private static Map<String, Object> describeScan(QRCodeScanner scanner, String text) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("text", text);
+        try {
+            if (text.startsWith("{") && text.contains("\"device\"")) {
+                response.put("kind", "pairing");
+                response.put("pairing", scanner.parsePairingQRData(text));
+            } else if (text.startsWith("{") && text.contains("\"token\"")) {
+                response.put("kind", "auth");
+                response.put("auth", scanner.parseAuthQRData(text));
+            } else {
+                response.put("kind", "text");
+            }
+        } catch (RuntimeException e) {
+            // JSON that is not one of our payloads: report the raw text only
+            response.put("kind", "text");
+        }
+        return response;
+    }
+
+    private static int scanErrorStatus(Throwable cause) {
+        if (cause instanceof QRCodeScanner.ImageTooLargeException) {
+            return 413;
+        } else if (cause instanceof RejectedExecutionException || cause instanceof TimeoutException) {
+            return 503;
+        } else if (cause instanceof NotFoundException) {
+            return 422;
+        } else if (cause instanceof IOException || cause instanceof IllegalArgumentException) {
+            return 400;
+        }
+        return 500;
+    }
+
+    private static String scanErrorMessage(Throwable cause) {
+        if (cause instanceof RejectedExecutionException || cause instanceof TimeoutException) {
+            return "Scanner busy, retry later";
+        } else if (cause instanceof NotFoundException) {
+            return "No QR code found in image";
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /** Fails every read after {@link #cancel}, e.g. once the scan timed out. */
+    private static class CancellableInputStream extends FilterInputStream {
+        private volatile boolean cancelled;
+
+        CancellableInputStream(InputStream in) {
+            super(in);
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            return super.read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            checkCancelled();
+            return super.skip(n);
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if (cancelled) {
+                throw new InterruptedIOException("Scan cancelled");
+            }
+        }
+    }
+
     public void start() {
         setupRoutes(app);
+        if (loginPool != null) {
+            loginPool.start();
+        }
 
         try {
             app.start(port);
@@ -493,6 +766,7 @@ public class QRCodeWebServer {
             System.out.println("   • http://localhost:" + port + " - Home page");
             System.out.println("   • http://localhost:" + port + "/generate-login - Generate QR code");
             System.out.println("   • http://localhost:" + port + "/users - View all users");
+            System.out.println("   • POST http://localhost:" + port + "/scan - Decode an uploaded QR image");
             System.out.println("\n📱 Test the flow:");
             System.out.println("   1. Go to http://localhost:" + port + "/generate-login");
             System.out.println("   2. Use the test link on your phone");
@@ -504,9 +778,10 @@ public class QRCodeWebServer {
                 System.out.println("⚠️  Port " + port + " is busy. Trying alternative port 8081...");
                 try {
                     app.stop();
-                    Javalin newApp = Javalin.create();
-                    setupRoutes(newApp);
-                    newApp.start(8081);
+                    // Same Jetty settings (threads, upload limits) as the first attempt
+                    app = createJavalinApp();
+                    setupRoutes(app);
+                    app.start(8081);
                     System.out.println("🚀 Web server started on http://localhost:8081");
                     System.out.println("📱 You can now scan QR codes and they will open in your browser!");
                     System.out.println("\n🌐 Available pages:");
@@ -523,12 +798,16 @@ public class QRCodeWebServer {
     }
 
     public void stop() {
+        if (loginPool != null) {
+            loginPool.stop();
+        }
         app.stop();
+        decodeService.close();
     }
 
     public static void main(String[] args) {
         QRAuthService authService = new QRAuthService("http://localhost:8080");
-        QRCodeWebServer server = new QRCodeWebServer(8080, authService);
+        QRCodeWebServer server = new QRCodeWebServer(8080, authService, new LoginQRPool(authService, 16, 2048));
         server.start();
 
         // Keep server running
@@ -0,0 +1,186 @@
+package passkey;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import modern.PasskeyCredential;
+import storage.ObjectPool;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Verifies WebAuthn assertions (ES256, EdDSA, RS256) against stored passkey credentials.
+ *
+ * <p>Checks, in order: the rpIdHash in the authenticator data, the user-presence flag,
+ * the client data type, the signature over {@code authenticatorData || SHA-256(clientDataJSON)}
+ * and, when the authenticator keeps one, that the signature counter moved forward.
+ *
+ * <p>Decoded keys are kept in an LRU cache keyed by credential id, each with a small pool
+ * of {@link Signature}s already initialised for that key, so a repeat login does not
+ * parse the COSE key or set up a verifier again. The pools do not depend on thread
+ * identity, so they also pay off when every request runs on a new virtual thread.
+ */
+public class AssertionVerifier {
+
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private static final ObjectPool<MessageDigest> sha256 = new ObjectPool<>(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    });
+
+    private static final ObjectPool<AuthenticatorData> authData = new ObjectPool<>(AuthenticatorData::new);
+
+    private static class CachedKey {
+        final String encoded;
+        final ObjectPool<Signature> signatures;
+
+        CachedKey(String encoded, CoseKeys.CoseKey key) {
+            this.encoded = encoded;
+            this.signatures = new ObjectPool<>(() -> {
+                try {
+                    Signature signature = Signature.getInstance(
+                            CoseKeys.signatureAlgorithm(key.algorithm), CoseKeys.PROVIDER);
+                    signature.initVerify(key.publicKey);
+                    return signature;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("Cannot initialise verifier", e);
+                }
+            });
+        }
+    }
+
+    private final byte[] rpIdHash;
+    private final Map<String, CachedKey> keys;
+
+    public AssertionVerifier(String rpId) {
+        this(rpId, DEFAULT_CACHE_SIZE);
+    }
+
+    public AssertionVerifier(String rpId, int cacheSize) {
+        this.rpIdHash = digest(rpId.getBytes(StandardCharsets.UTF_8));
+        this.keys = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return true only if every check passes; the credential's sign count is then
+     *         updated
+     */
+    public boolean verify(PasskeyCredential credential, byte[] authenticatorData,
+                          byte[] clientDataJSON, byte[] signature) {
+        if (credential == null || authenticatorData == null || clientDataJSON == null || signature == null) {
+            return false;
+        }
+        long signCount;
+        AuthenticatorData parsed = authData.borrow();
+        try {
+            parsed.wrap(ByteBuffer.wrap(authenticatorData));
+            if (!isForRelyingParty(parsed) || !isAssertionClientData(clientDataJSON)) {
+                return false;
+            }
+            signCount = parsed.signCount();
+        } catch (CborReader.CborException e) {
+            return false;
+        } finally {
+            authData.release(parsed);
+        }
+
+        try {
+            CachedKey key = cachedKey(credential);
+            Signature verifier = key.signatures.borrow();
+            // A verifier that threw may hold partial input after a malformed signature: it is dropped
+            verifier.update(authenticatorData);
+            verifier.update(digest(clientDataJSON));
+            boolean valid = verifier.verify(signature);
+            key.signatures.release(verifier);
+            if (!valid) {
+                return false;
+            }
+        } catch (GeneralSecurityException | IllegalStateException e) {
+            return false;
+        }
+
+        synchronized (credential) {
+            if ((signCount != 0 || credential.getSignCount() != 0) && signCount <= credential.getSignCount()) {
+                return false; // counter went backwards: possible cloned authenticator
+            }
+            credential.setSignCount(signCount);
+        }
+        return true;
+    }
+
+    /**
+     * Whether authenticator data was produced for this relying party with the user present.
+     */
+    public boolean isForRelyingParty(AuthenticatorData data) {
+        return data.rpIdHashEquals(rpIdHash) && data.isUserPresent();
+    }
+
+    /**
+     * Drops the cached key for a credential, e.g. after it was deleted.
+     */
+    public void invalidate(String credentialId) {
+        synchronized (keys) {
+            keys.remove(credentialId);
+        }
+    }
+
+    public int getCachedKeys() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    private CachedKey cachedKey(PasskeyCredential credential) throws GeneralSecurityException {
+        String encoded = credential.getPublicKey();
+        CachedKey cached;
+        synchronized (keys) {
+            cached = keys.get(credential.getId());
+        }
+        if (cached == null || !cached.encoded.equals(encoded)) {
+            byte[] cose;
+            try {
+                cose = Base64.getUrlDecoder().decode(encoded);
+            } catch (IllegalArgumentException e) {
+                throw new GeneralSecurityException("Stored public key is not base64url COSE", e);
+            }
+            cached = new CachedKey(encoded, CoseKeys.decode(cose));
+            synchronized (keys) {
+                keys.put(credential.getId(), cached);
+            }
+        }
+        return cached;
+    }
+
+    private static byte[] digest(byte[] input) {
+        MessageDigest digest = sha256.borrow();
+        byte[] hash = digest.digest(input); // leaves it reset
+        sha256.release(digest);
+        return hash;
+    }
+
+    private static boolean isAssertionClientData(byte[] clientDataJSON) {
+        try {
+            JsonElement type = JsonParser.parseString(new String(clientDataJSON, StandardCharsets.UTF_8))
+                    .getAsJsonObject().get("type");
+            return type != null && "webauthn.get".equals(type.getAsString());
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package passkey;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zero-copy view of a WebAuthn attestationObject, the CBOR map
+ * {@code {"fmt": text, "attStmt": map, "authData": bytes}} returned at registration.
+ *
+ * <p>The attestation statement is exposed as an undecoded slice. Well-known formats
+ * come back as constants, so parsing them allocates no strings.
+ */
+public final class AttestationObject {
+
+    public static final String FORMAT_NONE = "none";
+    public static final String FORMAT_PACKED = "packed";
+    public static final String FORMAT_FIDO_U2F = "fido-u2f";
+    public static final String FORMAT_TPM = "tpm";
+    public static final String FORMAT_ANDROID_KEY = "android-key";
+    public static final String FORMAT_APPLE = "apple";
+
+    private static final String[] KNOWN_FORMATS = {
+            FORMAT_NONE, FORMAT_PACKED, FORMAT_FIDO_U2F, FORMAT_TPM, FORMAT_ANDROID_KEY, FORMAT_APPLE};
+
+    private static final String[] KEYS = {"fmt", "attStmt", "authData"};
+    private static final int KEY_FMT = 0;
+    private static final int KEY_ATT_STMT = 1;
+    private static final int KEY_AUTH_DATA = 2;
+
+    private final CborReader cbor = new CborReader();
+    private final AuthenticatorData authData = new AuthenticatorData();
+    private String format;
+    private ByteBuffer data;
+    private int statementOffset;
+    private int statementLength;
+
+    public static AttestationObject parse(ByteBuffer data) throws CborReader.CborException {
+        return new AttestationObject().wrap(data);
+    }
+
+    public AttestationObject wrap(ByteBuffer data) throws CborReader.CborException {
+        this.data = data;
+        this.format = null;
+        this.statementOffset = -1;
+        boolean hasAuthData = false;
+
+        cbor.reset(data);
+        int entries = cbor.readMapHeader();
+        for (int i = 0; i < entries; i++) {
+            int key = cbor.peekType() == CborReader.TEXT ? cbor.readTextIndex(KEYS) : skipKey();
+            switch (key) {
+                case KEY_FMT -> {
+                    int start = cbor.position();
+                    int known = cbor.readTextIndex(KNOWN_FORMATS);
+                    if (known >= 0) {
+                        format = KNOWN_FORMATS[known];
+                    } else {
+                        cbor.reset(data, start, data.limit());
+                        format = cbor.readTextString();
+                    }
+                }
+                case KEY_ATT_STMT -> {
+                    if (cbor.peekType() != CborReader.MAP) {
+                        throw new CborReader.CborException("attStmt is not a map");
+                    }
+                    statementOffset = cbor.position();
+                    cbor.skip();
+                    statementLength = cbor.position() - statementOffset;
+                }
+                case KEY_AUTH_DATA -> {
+                    int offset = cbor.skipBytes();
+                    authData.wrap(data, offset, cbor.position() - offset);
+                    hasAuthData = true;
+                }
+                default -> cbor.skip();
+            }
+        }
+        if (format == null || statementOffset < 0 || !hasAuthData) {
+            throw new CborReader.CborException("attestationObject lacks fmt, attStmt or authData");
+        }
+        return this;
+    }
+
+    public String format() {
+        return format;
+    }
+
+    /** The attestation statement as an undecoded CBOR map slice. */
+    public ByteBuffer attestationStatement() {
+        return data.slice(statementOffset, statementLength);
+    }
+
+    public AuthenticatorData authenticatorData() {
+        return authData;
+    }
+
+    private int skipKey() throws CborReader.CborException {
+        cbor.skip();
+        return -1;
+    }
+}
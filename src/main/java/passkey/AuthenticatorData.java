@@ -0,0 +1,142 @@
+package passkey;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zero-copy view of WebAuthn authenticator data:
+ * {@code rpIdHash(32) | flags(1) | signCount(4) | [aaguid(16) | credentialIdLength(2) |
+ * credentialId | credentialPublicKey (COSE)] | [extensions (CBOR)]}.
+ *
+ * <p>Accessors return slices of the wrapped buffer. An instance can be re-{@link #wrap}ped
+ * for every message, so parsing on the login path allocates nothing.
+ */
+public final class AuthenticatorData {
+
+    public static final int FLAG_USER_PRESENT = 0x01;
+    public static final int FLAG_USER_VERIFIED = 0x04;
+    public static final int FLAG_ATTESTED_CREDENTIAL = 0x40;
+    public static final int FLAG_EXTENSIONS = 0x80;
+
+    private static final int HEADER_LENGTH = 37;
+    private static final int AAGUID_LENGTH = 16;
+
+    private final CborReader cbor = new CborReader();
+    private ByteBuffer data;
+    private int base;
+    private int flags;
+    private long signCount;
+    private int credentialIdOffset;
+    private int credentialIdLength;
+    private int publicKeyOffset;
+    private int publicKeyLength;
+
+    public static AuthenticatorData parse(ByteBuffer data) throws CborReader.CborException {
+        return new AuthenticatorData().wrap(data);
+    }
+
+    /**
+     * Parses the bytes between the buffer's position and limit. The buffer is not
+     * modified, and must not be while this view is in use.
+     */
+    public AuthenticatorData wrap(ByteBuffer data) throws CborReader.CborException {
+        return wrap(data, data.position(), data.remaining());
+    }
+
+    /**
+     * Parses {@code length} bytes starting at the absolute index {@code offset}.
+     */
+    public AuthenticatorData wrap(ByteBuffer data, int offset, int length) throws CborReader.CborException {
+        if (length < HEADER_LENGTH || offset + length > data.limit()) {
+            throw new CborReader.CborException("Authenticator data shorter than 37 bytes or out of bounds");
+        }
+        int limit = offset + length;
+        this.data = data;
+        this.base = offset;
+        this.flags = data.get(base + 32) & 0xFF;
+        this.signCount = ((data.get(base + 33) & 0xFFL) << 24) | ((data.get(base + 34) & 0xFFL) << 16)
+                | ((data.get(base + 35) & 0xFFL) << 8) | (data.get(base + 36) & 0xFFL); // big-endian whatever the buffer order
+        this.credentialIdOffset = -1;
+        this.credentialIdLength = 0;
+        this.publicKeyOffset = -1;
+        this.publicKeyLength = 0;
+
+        int end = base + HEADER_LENGTH;
+        if ((flags & FLAG_ATTESTED_CREDENTIAL) != 0) {
+            int idLengthOffset = end + AAGUID_LENGTH;
+            if (idLengthOffset + 2 > limit) {
+                throw new CborReader.CborException("Truncated attested credential data");
+            }
+            credentialIdLength = ((data.get(idLengthOffset) & 0xFF) << 8) | (data.get(idLengthOffset + 1) & 0xFF);
+            credentialIdOffset = idLengthOffset + 2;
+            publicKeyOffset = credentialIdOffset + credentialIdLength;
+            if (publicKeyOffset > limit) {
+                throw new CborReader.CborException("Truncated credential id");
+            }
+            cbor.reset(data, publicKeyOffset, limit);
+            cbor.skip();
+            publicKeyLength = cbor.position() - publicKeyOffset;
+            end = publicKeyOffset + publicKeyLength;
+        }
+        if ((flags & FLAG_EXTENSIONS) != 0) {
+            cbor.reset(data, end, limit);
+            cbor.skip();
+            end = cbor.position();
+        }
+        if (end != limit) {
+            throw new CborReader.CborException("Trailing bytes after authenticator data");
+        }
+        return this;
+    }
+
+    public ByteBuffer rpIdHash() {
+        return data.slice(base, 32);
+    }
+
+    /** Compares the rpIdHash with the expected SHA-256 of the RP id, without allocating. */
+    public boolean rpIdHashEquals(byte[] expected) {
+        if (expected.length != 32) {
+            return false;
+        }
+        for (int i = 0; i < 32; i++) {
+            if (data.get(base + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int flags() {
+        return flags;
+    }
+
+    public boolean isUserPresent() {
+        return (flags & FLAG_USER_PRESENT) != 0;
+    }
+
+    public boolean isUserVerified() {
+        return (flags & FLAG_USER_VERIFIED) != 0;
+    }
+
+    public boolean hasAttestedCredential() {
+        return credentialIdOffset >= 0;
+    }
+
+    public long signCount() {
+        return signCount;
+    }
+
+    /** @return the AAGUID slice, or null without attested credential data */
+    public ByteBuffer aaguid() {
+        return hasAttestedCredential() ? data.slice(base + HEADER_LENGTH, AAGUID_LENGTH) : null;
+    }
+
+    /** @return the credential id slice, or null without attested credential data */
+    public ByteBuffer credentialId() {
+        return hasAttestedCredential() ? data.slice(credentialIdOffset, credentialIdLength) : null;
+    }
+
+    /** @return the COSE_Key slice, or null without attested credential data */
+    public ByteBuffer credentialPublicKey() {
+        return hasAttestedCredential() ? data.slice(publicKeyOffset, publicKeyLength) : null;
+    }
+}
@@ -0,0 +1,247 @@
+package passkey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull-style CBOR (RFC 8949) reader over a {@link ByteBuffer}. It builds no object tree:
+ * callers walk the items in order, byte and text strings come back as slices of the
+ * underlying buffer, and anything not needed is skipped in place.
+ *
+ * <p>Only definite-length items are accepted, as CTAP2 requires. A reader can be
+ * {@link #reset} onto a new buffer and reused. It is not thread-safe.
+ */
+public final class CborReader {
+
+    public static final int UNSIGNED = 0;
+    public static final int NEGATIVE = 1;
+    public static final int BYTES = 2;
+    public static final int TEXT = 3;
+    public static final int ARRAY = 4;
+    public static final int MAP = 5;
+    public static final int TAG = 6;
+    public static final int SIMPLE = 7;
+
+    private static final int MAX_DEPTH = 16;
+
+    public static class CborException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CborException(String message) {
+            super(message);
+        }
+    }
+
+    private ByteBuffer buffer;
+    private int position;
+    private int limit;
+
+    public CborReader() {
+    }
+
+    public CborReader(ByteBuffer buffer) {
+        reset(buffer);
+    }
+
+    /**
+     * Starts reading at the buffer's position, up to its limit. The buffer's own
+     * position is never moved.
+     */
+    public CborReader reset(ByteBuffer buffer) {
+        return reset(buffer, buffer.position(), buffer.limit());
+    }
+
+    /** Starts reading at the absolute index {@code offset}, up to {@code limit}. */
+    public CborReader reset(ByteBuffer buffer, int offset, int limit) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = limit;
+        return this;
+    }
+
+    /** Absolute index of the next item in the buffer. */
+    public int position() {
+        return position;
+    }
+
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    public int peekType() throws CborException {
+        require(1);
+        return (buffer.get(position) & 0xFF) >>> 5;
+    }
+
+    public long readInt() throws CborException {
+        int type = peekType();
+        if (type == UNSIGNED) {
+            return readArgument();
+        }
+        if (type == NEGATIVE) {
+            return -1 - readArgument();
+        }
+        throw new CborException("Expected integer, found major type " + type);
+    }
+
+    public int readMapHeader() throws CborException {
+        return readHeader(MAP);
+    }
+
+    public int readArrayHeader() throws CborException {
+        return readHeader(ARRAY);
+    }
+
+    /** Returns the byte string as a slice of the buffer, without copying. */
+    public ByteBuffer readBytes() throws CborException {
+        int length = readHeader(BYTES);
+        ByteBuffer slice = buffer.slice(position, length);
+        position += length;
+        return slice;
+    }
+
+    /**
+     * Reads a byte string header and skips its content.
+     * @return the content's absolute offset; its length is {@code position() - offset}
+     */
+    public int skipBytes() throws CborException {
+        int length = readHeader(BYTES);
+        int offset = position;
+        position += length;
+        return offset;
+    }
+
+    /** Returns the UTF-8 text string as a slice of the buffer, without copying. */
+    public ByteBuffer readText() throws CborException {
+        int length = readHeader(TEXT);
+        ByteBuffer slice = buffer.slice(position, length);
+        position += length;
+        return slice;
+    }
+
+    public String readTextString() throws CborException {
+        int length = readHeader(TEXT);
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        position += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a text string and compares it with an ASCII constant without allocating.
+     */
+    public boolean readTextEquals(String ascii) throws CborException {
+        int length = readHeader(TEXT);
+        int start = position;
+        position += length;
+        return regionEquals(start, length, ascii);
+    }
+
+    private boolean regionEquals(int start, int length, String ascii) {
+        if (length != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != (byte) ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a text string and looks it up among ASCII constants without allocating.
+     * @return the index of the matching candidate, or -1
+     */
+    public int readTextIndex(String[] candidates) throws CborException {
+        int length = readHeader(TEXT);
+        int start = position;
+        position += length;
+        for (int c = 0; c < candidates.length; c++) {
+            if (regionEquals(start, length, candidates[c])) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /** Skips the next item, including everything nested in it. */
+    public void skip() throws CborException {
+        skip(0);
+    }
+
+    private void skip(int depth) throws CborException {
+        if (depth > MAX_DEPTH) {
+            throw new CborException("CBOR nested too deeply");
+        }
+        int type = peekType();
+        long argument = readArgument();
+        switch (type) {
+            case BYTES, TEXT -> {
+                require(argument);
+                position += (int) argument;
+            }
+            case ARRAY -> {
+                for (long i = 0; i < argument; i++) {
+                    skip(depth + 1);
+                }
+            }
+            case MAP -> {
+                for (long i = 0; i < 2 * argument; i++) {
+                    skip(depth + 1);
+                }
+            }
+            case TAG -> skip(depth + 1);
+            default -> {
+                // integers and simple values carry everything in their argument
+            }
+        }
+    }
+
+    private int readHeader(int expectedType) throws CborException {
+        int type = peekType();
+        if (type != expectedType) {
+            throw new CborException("Expected major type " + expectedType + ", found " + type);
+        }
+        long argument = readArgument();
+        if (argument > Integer.MAX_VALUE) {
+            throw new CborException("CBOR length out of range");
+        }
+        if (expectedType == BYTES || expectedType == TEXT) {
+            require(argument);
+        }
+        return (int) argument;
+    }
+
+    private long readArgument() throws CborException {
+        require(1);
+        int initial = buffer.get(position++) & 0xFF;
+        int info = initial & 0x1F;
+        if (info < 24) {
+            return info;
+        }
+        int size = switch (info) {
+            case 24 -> 1;
+            case 25 -> 2;
+            case 26 -> 4;
+            case 27 -> 8;
+            default -> throw new CborException("Indefinite or reserved CBOR length");
+        };
+        require(size);
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (buffer.get(position++) & 0xFF);
+        }
+        if (value < 0 && initial >>> 5 != SIMPLE) { // 64-bit floats may use the top bit
+            throw new CborException("CBOR argument out of range");
+        }
+        return value;
+    }
+
+    private void require(long bytes) throws CborException {
+        if (bytes > limit - position) {
+            throw new CborException("Truncated CBOR");
+        }
+    }
+}
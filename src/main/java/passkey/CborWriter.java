@@ -0,0 +1,98 @@
+package passkey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal CBOR encoder for the structures the passkey code produces: definite-length
+ * maps and arrays, integers, byte and text strings. Callers are responsible for
+ * CTAP2 canonical key order.
+ */
+public final class CborWriter {
+
+    private byte[] buffer;
+    private int size;
+
+    public CborWriter() {
+        this(128);
+    }
+
+    public CborWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public CborWriter writeMapHeader(int entries) {
+        return writeHeader(CborReader.MAP, entries);
+    }
+
+    public CborWriter writeArrayHeader(int items) {
+        return writeHeader(CborReader.ARRAY, items);
+    }
+
+    public CborWriter writeInt(long value) {
+        return value >= 0 ? writeHeader(CborReader.UNSIGNED, value) : writeHeader(CborReader.NEGATIVE, -1 - value);
+    }
+
+    public CborWriter writeBytes(byte[] bytes) {
+        return writeBytes(bytes, 0, bytes.length);
+    }
+
+    public CborWriter writeBytes(byte[] bytes, int offset, int length) {
+        writeHeader(CborReader.BYTES, length);
+        return writeRaw(bytes, offset, length);
+    }
+
+    public CborWriter writeText(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        writeHeader(CborReader.TEXT, utf8.length);
+        return writeRaw(utf8, 0, utf8.length);
+    }
+
+    /** Appends bytes that are already CBOR (or not CBOR at all, e.g. authenticator data). */
+    public CborWriter writeRaw(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private CborWriter writeHeader(int type, long argument) {
+        ensure(9);
+        int major = type << 5;
+        if (argument < 24) {
+            buffer[size++] = (byte) (major | argument);
+        } else if (argument < 0x100) {
+            buffer[size++] = (byte) (major | 24);
+            buffer[size++] = (byte) argument;
+        } else if (argument < 0x10000) {
+            buffer[size++] = (byte) (major | 25);
+            buffer[size++] = (byte) (argument >>> 8);
+            buffer[size++] = (byte) argument;
+        } else if (argument < 0x100000000L) {
+            buffer[size++] = (byte) (major | 26);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (argument >>> shift);
+            }
+        } else {
+            buffer[size++] = (byte) (major | 27);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (argument >>> shift);
+            }
+        }
+        return this;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
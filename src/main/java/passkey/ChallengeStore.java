@@ -0,0 +1,139 @@
+package passkey;
+
+import storage.ObjectPool;
+import storage.SessionRepository;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Random challenges for WebAuthn ceremonies, each kept until the authenticator answers
+ * or its time-to-live runs out. Backed by a {@link SessionRepository}, so:
+ * <ul>
+ *     <li>there is no global lock: entries live in a concurrent map and challenges are
+ *     drawn from a small pool of {@link SecureRandom}s;</li>
+ *     <li>{@link #consume} takes the challenge out atomically; it can be used once, even
+ *     when the ceremony check then fails;</li>
+ *     <li>expiry runs on the repository's timing wheel and only visits the challenges
+ *     that came due;</li>
+ *     <li>at capacity, issuing evicts the challenge closest to expiry.</li>
+ * </ul>
+ */
+public class ChallengeStore implements AutoCloseable {
+
+    /** Ceremony types, as found in the {@code type} member of clientDataJSON. */
+    public static final String REGISTRATION = "webauthn.create";
+    public static final String AUTHENTICATION = "webauthn.get";
+
+    private static final int DEFAULT_CAPACITY = 100_000;
+    private static final long DEFAULT_TTL_MS = 120_000;
+    private static final int CHALLENGE_BYTES = 32;
+
+    private static final ObjectPool<SecureRandom> randoms = new ObjectPool<>(SecureRandom::new);
+
+    public static class Ceremony {
+        public final String type;
+        public final String username; // null for a login without a known user
+        public final long issuedAt;
+        public final boolean addsToAccount; // registration by a signed-in user for their own account
+
+        public Ceremony(String type, String username, long issuedAt) {
+            this(type, username, issuedAt, false);
+        }
+
+        public Ceremony(String type, String username, long issuedAt, boolean addsToAccount) {
+            this.type = type;
+            this.username = username;
+            this.issuedAt = issuedAt;
+            this.addsToAccount = addsToAccount;
+        }
+    }
+
+    private final SessionRepository<Ceremony> challenges;
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public ChallengeStore() {
+        this(DEFAULT_CAPACITY, DEFAULT_TTL_MS);
+    }
+
+    public ChallengeStore(int capacity, long ttlMillis) {
+        this.challenges = new SessionRepository<>("webauthn-challenges", capacity, ttlMillis);
+    }
+
+    /**
+     * Creates and stores a challenge for a ceremony.
+     * @return the challenge, base64url-encoded without padding as it comes back in
+     *         clientDataJSON
+     */
+    public String issue(String type, String username) {
+        return issue(type, username, false);
+    }
+
+    /**
+     * @param addsToAccount the caller is signed in as {@code username} and registers an
+     *                      extra passkey for that account
+     */
+    public String issue(String type, String username, boolean addsToAccount) {
+        byte[] bytes = new byte[CHALLENGE_BYTES];
+        SecureRandom random = randoms.borrow();
+        random.nextBytes(bytes);
+        randoms.release(random);
+        String challenge = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        challenges.put(challenge, new Ceremony(type, username, System.currentTimeMillis(), addsToAccount));
+        return challenge;
+    }
+
+    /**
+     * Takes a challenge out of the store.
+     * @return the ceremony it was issued for, or null if it is unknown, expired, already
+     *         used or was issued for another ceremony type
+     */
+    public Ceremony consume(String challenge, String type) {
+        Ceremony ceremony = challenges.remove(challenge);
+        if (ceremony == null || !ceremony.type.equals(type)) {
+            rejected.increment();
+            return null;
+        }
+        consumed.increment();
+        return ceremony;
+    }
+
+    public int size() {
+        return challenges.size();
+    }
+
+    public int getCapacity() {
+        return challenges.getCapacity();
+    }
+
+    public long getTtlMillis() {
+        return challenges.getDefaultTtlMillis();
+    }
+
+    public long getIssued() {
+        return challenges.getPuts();
+    }
+
+    public long getConsumed() {
+        return consumed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getExpired() {
+        return challenges.getExpired();
+    }
+
+    public long getEvicted() {
+        return challenges.getEvicted();
+    }
+
+    @Override
+    public void close() {
+        challenges.close();
+    }
+}
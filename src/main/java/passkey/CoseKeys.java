@@ -0,0 +1,213 @@
+package passkey;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * Converts COSE_Key structures (RFC 9052/9053), as found in WebAuthn credentials, to
+ * JCA public keys. Supports ES256 (EC2 P-256), EdDSA (OKP Ed25519) and RS256.
+ */
+public final class CoseKeys {
+
+    public static final int ES256 = -7;
+    public static final int EDDSA = -8;
+    public static final int RS256 = -257;
+
+    static final Provider PROVIDER = new BouncyCastleProvider();
+
+    private static final int KTY_OKP = 1;
+    private static final int KTY_EC2 = 2;
+    private static final int KTY_RSA = 3;
+    private static final int CRV_P256 = 1;
+    private static final int CRV_ED25519 = 6;
+    private static final byte[] ED25519_SPKI_PREFIX = {
+            0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00};
+    private static final ECParameterSpec P256 = p256();
+
+    /**
+     * A decoded key and the COSE algorithm it is meant to be used with.
+     */
+    public static class CoseKey {
+        public final int algorithm;
+        public final PublicKey publicKey;
+
+        CoseKey(int algorithm, PublicKey publicKey) {
+            this.algorithm = algorithm;
+            this.publicKey = publicKey;
+        }
+    }
+
+    private CoseKeys() {
+    }
+
+    public static CoseKey decode(byte[] cose) throws GeneralSecurityException {
+        return decode(ByteBuffer.wrap(cose));
+    }
+
+    /**
+     * Decodes the COSE_Key between the buffer's position and limit. Coordinates and
+     * moduli are read straight from the buffer; the buffer itself is not modified.
+     */
+    public static CoseKey decode(ByteBuffer cose) throws GeneralSecurityException {
+        Integer kty = null, alg = null, crv = null;
+        ByteBuffer x = null, y = null, n = null;
+
+        try {
+            CborReader reader = new CborReader(cose);
+            int entries = reader.readMapHeader();
+            for (int i = 0; i < entries; i++) {
+                if (reader.peekType() != CborReader.UNSIGNED && reader.peekType() != CborReader.NEGATIVE) {
+                    reader.skip();
+                    reader.skip();
+                    continue;
+                }
+                switch ((int) reader.readInt()) {
+                    case 1 -> kty = (int) reader.readInt();
+                    case 3 -> alg = (int) reader.readInt();
+                    case -1 -> { // crv for EC2/OKP, n for RSA
+                        if (reader.peekType() == CborReader.BYTES) {
+                            n = reader.readBytes();
+                        } else {
+                            crv = (int) reader.readInt();
+                        }
+                    }
+                    case -2 -> x = reader.readBytes(); // x for EC2/OKP, e for RSA
+                    case -3 -> y = reader.readBytes();
+                    default -> reader.skip();
+                }
+            }
+        } catch (CborReader.CborException e) {
+            throw new GeneralSecurityException("Malformed COSE key: " + e.getMessage(), e);
+        }
+        if (kty == null || alg == null) {
+            throw new GeneralSecurityException("COSE key without kty or alg");
+        }
+
+        if (kty == KTY_EC2 && alg == ES256) {
+            if (!Integer.valueOf(CRV_P256).equals(crv) || x == null || y == null
+                    || x.remaining() != 32 || y.remaining() != 32) {
+                throw new GeneralSecurityException("Unsupported EC2 key: only P-256 is accepted");
+            }
+            ECPoint point = new ECPoint(unsigned(x), unsigned(y));
+            return new CoseKey(alg, KeyFactory.getInstance("EC", PROVIDER)
+                    .generatePublic(new ECPublicKeySpec(point, P256)));
+        }
+        if (kty == KTY_OKP && alg == EDDSA) {
+            if (!Integer.valueOf(CRV_ED25519).equals(crv) || x == null || x.remaining() != 32) {
+                throw new GeneralSecurityException("Unsupported OKP key: only Ed25519 is accepted");
+            }
+            byte[] spki = new byte[ED25519_SPKI_PREFIX.length + 32];
+            System.arraycopy(ED25519_SPKI_PREFIX, 0, spki, 0, ED25519_SPKI_PREFIX.length);
+            x.get(x.position(), spki, ED25519_SPKI_PREFIX.length, 32);
+            return new CoseKey(alg, KeyFactory.getInstance("Ed25519", PROVIDER)
+                    .generatePublic(new X509EncodedKeySpec(spki)));
+        }
+        if (kty == KTY_RSA && alg == RS256) {
+            ByteBuffer e = x;
+            if (n == null || e == null || n.remaining() < 256) {
+                throw new GeneralSecurityException("Unsupported RSA key: missing n or e, or modulus below 2048 bits");
+            }
+            return new CoseKey(alg, KeyFactory.getInstance("RSA", PROVIDER)
+                    .generatePublic(new RSAPublicKeySpec(unsigned(n), unsigned(e))));
+        }
+        throw new GeneralSecurityException("Unsupported COSE key: kty=" + kty + ", alg=" + alg);
+    }
+
+    private static BigInteger unsigned(ByteBuffer magnitude) {
+        if (magnitude.hasArray()) {
+            return new BigInteger(1, magnitude.array(), magnitude.arrayOffset() + magnitude.position(),
+                    magnitude.remaining());
+        }
+        byte[] copy = new byte[magnitude.remaining()];
+        magnitude.get(magnitude.position(), copy);
+        return new BigInteger(1, copy);
+    }
+
+    /**
+     * JCA signature algorithm name for a COSE algorithm id.
+     */
+    public static String signatureAlgorithm(int coseAlgorithm) {
+        return switch (coseAlgorithm) {
+            case ES256 -> "SHA256withECDSA";
+            case EDDSA -> "Ed25519";
+            case RS256 -> "SHA256withRSA";
+            default -> throw new IllegalArgumentException("Unsupported COSE algorithm: " + coseAlgorithm);
+        };
+    }
+
+    /**
+     * Encodes a P-256 public key as an ES256 COSE_Key.
+     */
+    public static byte[] encodeEs256(ECPublicKey key) {
+        return new CborWriter(77)
+                .writeMapHeader(5)
+                .writeInt(1).writeInt(KTY_EC2)
+                .writeInt(3).writeInt(ES256)
+                .writeInt(-1).writeInt(CRV_P256)
+                .writeInt(-2).writeBytes(unsigned(key.getW().getAffineX(), 32))
+                .writeInt(-3).writeBytes(unsigned(key.getW().getAffineY(), 32))
+                .toByteArray();
+    }
+
+    /**
+     * Encodes an Ed25519 public key (as produced by the JDK or BouncyCastle) as an EdDSA
+     * COSE_Key.
+     */
+    public static byte[] encodeEd25519(PublicKey key) {
+        byte[] spki = key.getEncoded();
+        return new CborWriter(44)
+                .writeMapHeader(4)
+                .writeInt(1).writeInt(KTY_OKP)
+                .writeInt(3).writeInt(EDDSA)
+                .writeInt(-1).writeInt(CRV_ED25519)
+                .writeInt(-2).writeBytes(spki, spki.length - 32, 32)
+                .toByteArray();
+    }
+
+    /**
+     * Encodes an RSA public key as an RS256 COSE_Key.
+     */
+    public static byte[] encodeRs256(RSAPublicKey key) {
+        int modulusLength = (key.getModulus().bitLength() + 7) / 8;
+        return new CborWriter(modulusLength + 16)
+                .writeMapHeader(4)
+                .writeInt(1).writeInt(KTY_RSA)
+                .writeInt(3).writeInt(RS256)
+                .writeInt(-1).writeBytes(unsigned(key.getModulus(), modulusLength))
+                .writeInt(-2).writeBytes(key.getPublicExponent().toByteArray())
+                .toByteArray();
+    }
+
+    private static byte[] unsigned(BigInteger value, int length) {
+        byte[] raw = value.toByteArray();
+        byte[] out = new byte[length];
+        int copied = Math.min(raw.length, length);
+        System.arraycopy(raw, raw.length - copied, out, length - copied, copied);
+        return out;
+    }
+
+    private static ECParameterSpec p256() {
+        try {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec("secp256r1"));
+            return parameters.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("P-256 parameters unavailable", e);
+        }
+    }
+}
@@ -1,16 +1,36 @@
 package passkey;
 
 import modern.PasskeyCredential;
+import storage.AuditLog;
+
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Credentials by id, with an index by username so that checking whether a name is taken
+ * does not scan every credential. Changes for one username are made atomically.
+ */
 public class CredentialRepository {
 
     private final Map<String, PasskeyCredential> credentialsById = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> idsByUsername = new ConcurrentHashMap<>();
 
+    /**
+     * @throws IllegalArgumentException if a credential with this id is already registered;
+     *         an existing credential is never replaced
+     */
     public void save(PasskeyCredential credential) {
-        credentialsById.put(credential.getId(), credential);
-        System.out.println("Saved credential for " + credential.getUsername());
+        idsByUsername.compute(credential.getUsername(), (username, ids) -> {
+            if (credentialsById.putIfAbsent(credential.getId(), credential) != null) {
+                throw new IllegalArgumentException("Credential id already registered");
+            }
+            Set<String> updated = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            updated.add(credential.getId());
+            return updated;
+        });
+        AuditLog.shared().record("credential.saved", credential.getUsername(), credential.getId());
     }
 
     public PasskeyCredential findById(String id) {
@@ -18,18 +38,47 @@ public class CredentialRepository {
     }
 
     public PasskeyCredential findByUsername(String username) {
-        return credentialsById.values().stream()
-                .filter(c -> c.getUsername().equals(username))
-                .findFirst()
-                .orElse(null);
+        Set<String> ids = idsByUsername.get(username);
+        if (ids != null) {
+            for (String id : ids) {
+                PasskeyCredential credential = credentialsById.get(id);
+                if (credential != null) {
+                    return credential;
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean hasCredentials(String username) {
+        return idsByUsername.containsKey(username);
     }
 
-    public void remove(String username) {
-        credentialsById.values().removeIf(c -> c.getUsername().equals(username));
-        System.out.println("Removed credential for " + username);
+    /**
+     * Removes every credential of the user.
+     * @return the ids removed, empty if the user had none
+     */
+    public Set<String> remove(String username) {
+        Set<String> removed = new HashSet<>();
+        idsByUsername.computeIfPresent(username, (name, ids) -> {
+            ids.forEach(credentialsById::remove);
+            removed.addAll(ids);
+            return null;
+        });
+        AuditLog.shared().record("credential.removed", username, null);
+        return removed;
     }
 
     public void removeById(String id) {
-        credentialsById.remove(id);
+        PasskeyCredential credential = credentialsById.get(id);
+        if (credential == null) {
+            return;
+        }
+        idsByUsername.computeIfPresent(credential.getUsername(), (name, ids) -> {
+            if (credentialsById.remove(id, credential)) {
+                ids.remove(id);
+            }
+            return ids.isEmpty() ? null : ids;
+        });
     }
 }
@@ -1,14 +1,27 @@
 package passkey;
 
 import modern.PasskeyCredential;
+import storage.AuditLog;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
 import java.util.UUID;
 
 public class PasskeyManager {
 
+    private static final String DEFAULT_RP_ID = "localhost";
+
     private final CredentialRepository repository;
+    private final AssertionVerifier verifier;
 
     public PasskeyManager(CredentialRepository repository) {
+        this(repository, new AssertionVerifier(DEFAULT_RP_ID));
+    }
+
+    public PasskeyManager(CredentialRepository repository, AssertionVerifier verifier) {
         this.repository = repository;
+        this.verifier = verifier;
     }
 
     public PasskeyCredential createPasskey(String username) {
@@ -16,14 +29,67 @@ public class PasskeyManager {
         String fakeKey = "FAKE_PUBLIC_KEY_" + UUID.randomUUID();
         PasskeyCredential credential = new PasskeyCredential(id, username, fakeKey);
         repository.save(credential);
-        System.out.println("Created passkey for " + username);
+        AuditLog.shared().record("passkey.created", username, id);
+        return credential;
+    }
+
+    /**
+     * Registers the credential carried by a WebAuthn attestationObject. The attestation
+     * statement itself is not checked (fmt "none" semantics); the authenticator data must
+     * be for this relying party, with the user present and an attested credential. The
+     * COSE key is decoded once here so that unsupported or malformed keys are refused at
+     * registration, not at login.
+     * @throws IllegalArgumentException if the credential id is already registered
+     */
+    public PasskeyCredential registerPasskey(String username, byte[] attestationObject)
+            throws GeneralSecurityException {
+        AttestationObject attestation;
+        try {
+            attestation = AttestationObject.parse(ByteBuffer.wrap(attestationObject));
+        } catch (CborReader.CborException e) {
+            throw new GeneralSecurityException("Malformed attestationObject: " + e.getMessage(), e);
+        }
+        AuthenticatorData data = attestation.authenticatorData();
+        if (!verifier.isForRelyingParty(data) || !data.hasAttestedCredential()) {
+            throw new GeneralSecurityException("Attestation is not for this relying party or has no credential");
+        }
+        byte[] publicKey = toArray(data.credentialPublicKey());
+        CoseKeys.decode(publicKey);
+        String credentialId = Base64.getUrlEncoder().withoutPadding().encodeToString(toArray(data.credentialId()));
+        PasskeyCredential credential = new PasskeyCredential(credentialId, username,
+                Base64.getUrlEncoder().withoutPadding().encodeToString(publicKey));
+        credential.setSignCount(data.signCount());
+        repository.save(credential);
+        verifier.invalidate(credentialId);
         return credential;
     }
 
+    private static byte[] toArray(ByteBuffer slice) {
+        byte[] bytes = new byte[slice.remaining()];
+        slice.get(slice.position(), bytes);
+        return bytes;
+    }
+
+    /**
+     * Username-only check, kept for the demo flows that have no authenticator. It proves
+     * nothing about possession of the key; use {@link #verifyAssertion} for real logins.
+     */
     public boolean validate(String id, String username) {
         PasskeyCredential cred = repository.findById(id);
         boolean valid = cred != null && cred.getUsername().equals(username);
-        System.out.println("Validation for " + username + " = " + valid);
+        AuditLog.shared().record("passkey.validated", username, String.valueOf(valid));
         return valid;
     }
+
+    /**
+     * Checks a WebAuthn assertion signed by the credential's private key.
+     */
+    public boolean verifyAssertion(String id, byte[] authenticatorData, byte[] clientDataJSON, byte[] signature) {
+        PasskeyCredential cred = repository.findById(id);
+        return cred != null && verifier.verify(cred, authenticatorData, clientDataJSON, signature);
+    }
+
+    public AssertionVerifier getVerifier() {
+        return verifier;
+    }
 }
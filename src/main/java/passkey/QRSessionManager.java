@@ -1,20 +1,16 @@
 package passkey;
 
-import java.util.Map;
+import storage.AuditLog;
+import storage.SessionRepository;
+
 import java.util.UUID;
-import java.util.concurrent.*;
 
 public class QRSessionManager {
 
     private static final long EXPIRATION_MS = 5 * 60 * 1000; // 5 min
-    private static final Map<String, QRSession> sessions = new ConcurrentHashMap<>();
-
-    static {
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(() -> {
-            sessions.entrySet().removeIf(e -> e.getValue().isExpired());
-        }, 0, 1, TimeUnit.MINUTES);
-    }
+    private static final int MAX_SESSIONS = 50_000;
+    private static final SessionRepository<QRSession> sessions =
+            new SessionRepository<>("qr-sessions", MAX_SESSIONS, EXPIRATION_MS);
 
     public static class QRSession {
         public String username;
@@ -33,20 +29,19 @@ public class QRSessionManager {
     public static String createSession(String username) {
         String id = UUID.randomUUID().toString();
         sessions.put(id, new QRSession(username));
-        System.out.println("Created QR session " + id + " for " + username);
+        AuditLog.shared().record("qr-session.created", username, id);
         return id;
     }
 
     public static QRSession getSession(String id) {
-        QRSession session = sessions.get(id);
-        if (session == null || session.isExpired()) {
-            sessions.remove(id);
-            return null;
-        }
-        return session;
+        return sessions.get(id);
     }
 
     public static void removeSession(String id) {
         sessions.remove(id);
     }
+
+    public static SessionRepository<QRSession> getRepository() {
+        return sessions;
+    }
 }
@@ -0,0 +1,187 @@
+package passkey;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verifies WebAuthn assertions off the request threads. Submissions go into a queue; a
+ * single drain task takes them out in batches and forks each batch over a dedicated
+ * fork-join pool sized to the cores, splitting it until every worker has a share.
+ *
+ * <p>At most {@code maxPending} assertions may be queued or in flight; beyond that the
+ * returned future fails immediately with {@link RejectedExecutionException}. The default
+ * bound is a fraction of a second of work per core, so under overload excess logins are
+ * refused at once instead of queueing until they time out. A future that is still queued
+ * when its timeout fires is never verified.
+ */
+public class VerificationPipeline implements AutoCloseable {
+
+    private static final int DEFAULT_BATCH_SIZE = 64;
+    private static final int DEFAULT_MAX_PENDING_PER_CORE = 512; // ~0.15 s of ES256 work per core
+    private static final long DEFAULT_TIMEOUT_MS = 2000;
+    private static final int LEAF_SIZE = 2;
+
+    private static class Pending {
+        final String credentialId;
+        final byte[] authenticatorData;
+        final byte[] clientDataJSON;
+        final byte[] signature;
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        Pending(String credentialId, byte[] authenticatorData, byte[] clientDataJSON, byte[] signature) {
+            this.credentialId = credentialId;
+            this.authenticatorData = authenticatorData;
+            this.clientDataJSON = clientDataJSON;
+            this.signature = signature;
+        }
+    }
+
+    private class VerifyBatch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Pending[] batch;
+        private final int from;
+        private final int to;
+
+        VerifyBatch(Pending[] batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    verifyNow(batch[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new VerifyBatch(batch, from, middle), new VerifyBatch(batch, middle, to));
+        }
+    }
+
+    private final PasskeyManager manager;
+    private final ForkJoinPool pool;
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final int batchSize;
+    private final int maxPending;
+    private final long timeoutMs;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public VerificationPipeline(PasskeyManager manager) {
+        this(manager, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE,
+                DEFAULT_MAX_PENDING_PER_CORE * Runtime.getRuntime().availableProcessors(), DEFAULT_TIMEOUT_MS);
+    }
+
+    public VerificationPipeline(PasskeyManager manager, int parallelism, int batchSize, int maxPending,
+                                long timeoutMs) {
+        if (parallelism < 1 || batchSize < 1 || maxPending < 1 || timeoutMs <= 0) {
+            throw new IllegalArgumentException("Parallelism, batch size, queue bound and timeout must be positive");
+        }
+        this.manager = manager;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("assertion-verifier-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, true); // FIFO: batches are verified in arrival order
+    }
+
+    /**
+     * Queues an assertion for verification.
+     * @return a future completing with the verification result, or failing with
+     *         {@link RejectedExecutionException} when the pipeline is saturated or with a
+     *         {@link java.util.concurrent.TimeoutException} after the timeout
+     */
+    public CompletableFuture<Boolean> verify(String credentialId, byte[] authenticatorData,
+                                             byte[] clientDataJSON, byte[] signature) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            rejected.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Verification queue full"));
+        }
+        Pending request = new Pending(credentialId, authenticatorData, clientDataJSON, signature);
+        queue.add(request);
+        if (draining.compareAndSet(false, true)) {
+            pool.execute(this::drain);
+        }
+        return request.future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        do {
+            Pending[] batch = new Pending[batchSize];
+            int size;
+            while ((size = poll(batch)) > 0) {
+                batches.increment();
+                new VerifyBatch(batch, 0, size).fork();
+                batch = new Pending[batchSize];
+            }
+            draining.set(false);
+            // a submission that saw draining == true just before the reset is picked up here
+        } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    private int poll(Pending[] batch) {
+        int size = 0;
+        Pending next;
+        while (size < batch.length && (next = queue.poll()) != null) {
+            batch[size++] = next;
+        }
+        return size;
+    }
+
+    private void verifyNow(Pending request) {
+        try {
+            if (!request.future.isDone() && request.future.complete(manager.verifyAssertion(
+                    request.credentialId, request.authenticatorData, request.clientDataJSON, request.signature))) {
+                verified.increment();
+            }
+        } catch (Throwable e) {
+            request.future.completeExceptionally(e);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getVerified() {
+        return verified.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
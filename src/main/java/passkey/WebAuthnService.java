@@ -1,37 +1,184 @@
 package passkey;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import modern.PasskeyCredential;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
 public class WebAuthnService {
 
+    private static final String DEFAULT_ORIGIN = "http://localhost:7000";
+
     private final CredentialRepository repository;
+    private final PasskeyManager manager;
+    private final VerificationPipeline pipeline;
+    private final ChallengeStore challenges;
+    private final String origin;
 
     public WebAuthnService(CredentialRepository repository) {
+        this(repository, DEFAULT_ORIGIN);
+    }
+
+    /**
+     * @param origin the relying party's web origin; the {@code origin} in clientDataJSON
+     *               must be exactly this
+     */
+    public WebAuthnService(CredentialRepository repository, String origin) {
         this.repository = repository;
+        this.origin = origin;
+        this.manager = new PasskeyManager(repository);
+        this.pipeline = new VerificationPipeline(manager);
+        this.challenges = new ChallengeStore();
+    }
+
+    /**
+     * Starts a registration ceremony for a new username.
+     * @return the challenge the authenticator must sign, valid once
+     * @throws GeneralSecurityException if the username already has a passkey
+     */
+    public String startRegistration(String username) throws GeneralSecurityException {
+        return startRegistration(username, null);
+    }
+
+    /**
+     * Starts a registration ceremony. A username that already has a passkey only gets
+     * another one from its own signed-in user.
+     * @param authenticatedUser the user the caller has logged in as, or null
+     * @return the challenge the authenticator must sign, valid once
+     * @throws GeneralSecurityException if the username is taken by someone else
+     */
+    public String startRegistration(String username, String authenticatedUser) throws GeneralSecurityException {
+        boolean existing = repository.hasCredentials(username);
+        if (existing && !username.equals(authenticatedUser)) {
+            throw new GeneralSecurityException("Username already registered");
+        }
+        return challenges.issue(ChallengeStore.REGISTRATION, username, existing);
+    }
+
+    public boolean hasPasskey(String username) {
+        return repository.hasCredentials(username);
+    }
+
+    /**
+     * Starts a login ceremony.
+     * @param username the user expected to log in, or null to accept any credential
+     * @return the challenge the authenticator must sign, valid once
+     */
+    public String startAuthentication(String username) {
+        return challenges.issue(ChallengeStore.AUTHENTICATION, username);
     }
 
     public PasskeyCredential registerUser(String username) {
-        PasskeyManager manager = new PasskeyManager(repository);
         return manager.createPasskey(username);
     }
 
+    /**
+     * Finishes a registration ceremony started with {@link #startRegistration}.
+     */
+    public PasskeyCredential registerUser(String username, byte[] attestationObject, byte[] clientDataJSON)
+            throws GeneralSecurityException {
+        ChallengeStore.Ceremony ceremony = consumeChallenge(clientDataJSON, ChallengeStore.REGISTRATION);
+        if (ceremony == null || !username.equals(ceremony.username)) {
+            throw new GeneralSecurityException("Unknown, expired or already used challenge");
+        }
+        if (!ceremony.addsToAccount && repository.hasCredentials(username)) {
+            throw new GeneralSecurityException("Username already registered"); // taken since the challenge was issued
+        }
+        return manager.registerPasskey(username, attestationObject);
+    }
+
+    /**
+     * Username-only check: it proves nothing about possession of the key.
+     * @deprecated use {@link #startAuthentication} and
+     *             {@link #authenticate(String, byte[], byte[], byte[])}
+     */
+    @Deprecated
     public boolean authenticate(String id, String username) {
-        PasskeyManager manager = new PasskeyManager(repository);
         return manager.validate(id, username);
     }
 
+    /**
+     * Finishes a login ceremony started with {@link #startAuthentication}: the challenge
+     * in the client data is consumed, then the assertion is verified.
+     */
+    public boolean authenticate(String id, byte[] authenticatorData, byte[] clientDataJSON, byte[] signature) {
+        return checkChallenge(id, clientDataJSON)
+                && manager.verifyAssertion(id, authenticatorData, clientDataJSON, signature);
+    }
+
+    /**
+     * Same check as {@link #authenticate(String, byte[], byte[], byte[])}. The challenge is
+     * consumed on the calling thread; the signature is verified on the verification pool.
+     */
+    public CompletableFuture<Boolean> authenticateAsync(String id, byte[] authenticatorData,
+                                                        byte[] clientDataJSON, byte[] signature) {
+        if (!checkChallenge(id, clientDataJSON)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return pipeline.verify(id, authenticatorData, clientDataJSON, signature);
+    }
+
+    public ChallengeStore getChallenges() {
+        return challenges;
+    }
+
+    public VerificationPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /** Replaces every passkey of the user with a new one. */
     public PasskeyCredential resetPasskey(String username) {
-        PasskeyCredential old = repository.findByUsername(username);
-        if (old != null) repository.remove(username);
+        removeCredentials(username);
         return registerUser(username);
     }
 
     public boolean deleteUser(String username) {
-        PasskeyCredential cred = repository.findByUsername(username);
-        if (cred != null) {
-            repository.remove(username);
+        return removeCredentials(username);
+    }
+
+    /** Removes all of the user's credentials and evicts each one's cached key. */
+    private boolean removeCredentials(String username) {
+        Set<String> removed = repository.remove(username);
+        for (String id : removed) {
+            manager.getVerifier().invalidate(id);
+        }
+        return !removed.isEmpty();
+    }
+
+    private boolean checkChallenge(String id, byte[] clientDataJSON) {
+        ChallengeStore.Ceremony ceremony = consumeChallenge(clientDataJSON, ChallengeStore.AUTHENTICATION);
+        if (ceremony == null) {
+            return false;
+        }
+        if (ceremony.username == null) {
             return true;
         }
-        return false;
+        PasskeyCredential cred = repository.findById(id);
+        return cred != null && ceremony.username.equals(cred.getUsername());
+    }
+
+    private ChallengeStore.Ceremony consumeChallenge(byte[] clientDataJSON, String type) {
+        if (clientDataJSON == null) {
+            return null;
+        }
+        try {
+            JsonObject clientData = JsonParser.parseString(new String(clientDataJSON, StandardCharsets.UTF_8))
+                    .getAsJsonObject();
+            JsonElement challenge = clientData.get("challenge");
+            JsonElement clientType = clientData.get("type");
+            JsonElement clientOrigin = clientData.get("origin");
+            if (challenge == null || clientType == null || !type.equals(clientType.getAsString())
+                    || clientOrigin == null || !origin.equals(clientOrigin.getAsString())) {
+                return null;
+            }
+            return challenges.consume(challenge.getAsString(), type);
+        } catch (RuntimeException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,161 @@
+package qrcode;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Re-scans a directory tree of QR images in parallel and streams one JSON line per file
+ * as results arrive, so memory stays flat no matter how large the archive is. The tree
+ * is walked lazily and at most {@code 2 * parallelism} files are in flight at a time.
+ *
+ * <pre>java qrcode.BulkQRScanner &lt;directory&gt; [results.jsonl] [threads]</pre>
+ */
+public class BulkQRScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkQRScanner.class);
+    private static final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    private static final long FILE_TIMEOUT_MS = 60_000;
+
+    private final int parallelism;
+
+    public static class Summary {
+        public long files;
+        public long decoded;
+        public long failed;
+        public long elapsedMs;
+
+        public double filesPerSecond() {
+            return elapsedMs == 0 ? files : files * 1000.0 / elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Summary{files=%d, decoded=%d, failed=%d, elapsed=%dms, %.1f files/sec}",
+                    files, decoded, failed, elapsedMs, filesPerSecond());
+        }
+    }
+
+    public BulkQRScanner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BulkQRScanner(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Scans every PNG/JPEG/GIF/BMP file under {@code root} and writes one JSON object per
+     * line to {@code out}, in completion order. The writer is flushed but not closed.
+     */
+    public Summary scanDirectory(Path root, Writer out) throws IOException, InterruptedException {
+        Summary summary = new Summary();
+        AtomicLong decoded = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        Semaphore inFlight = new Semaphore(2 * parallelism);
+        long start = System.nanoTime();
+
+        try (QRDecodeService decoder = new QRDecodeService(parallelism, 2 * parallelism, FILE_TIMEOUT_MS);
+             Stream<Path> paths = Files.walk(root)) {
+
+            Iterator<Path> images = paths.filter(Files::isRegularFile).filter(BulkQRScanner::isImage).iterator();
+            while (images.hasNext()) {
+                Path image = images.next();
+                inFlight.acquire();
+                summary.files++;
+
+                long fileStart = System.nanoTime();
+                // The permit comes back once the result line is written and the worker is
+                // done with the file. A file that times out is reported straight away, but
+                // keeps its permit while it is still decoding, so slow images cannot pile
+                // up past the decoder's queue.
+                AtomicInteger pending = new AtomicInteger(2);
+                Runnable done = () -> {
+                    if (pending.decrementAndGet() == 0) {
+                        inFlight.release();
+                    }
+                };
+                decoder.submit(scanner -> scanner.scanFromFile(image.toString()), done).whenComplete((text, error) -> {
+                    long micros = (System.nanoTime() - fileStart) / 1000;
+                    String line;
+                    if (error == null) {
+                        decoded.incrementAndGet();
+                        line = "{\"file\":" + gson.toJson(image.toString()) + ",\"ok\":true,\"text\":"
+                                + gson.toJson(text) + ",\"us\":" + micros + "}\n";
+                    } else {
+                        failed.incrementAndGet();
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        line = "{\"file\":" + gson.toJson(image.toString()) + ",\"ok\":false,\"error\":"
+                                + gson.toJson(cause.getClass().getSimpleName()) + ",\"us\":" + micros + "}\n";
+                    }
+                    writeLine(out, line);
+                    done.run();
+                });
+            }
+
+            inFlight.acquire(2 * parallelism); // wait for the tail
+        }
+
+        out.flush();
+        summary.decoded = decoded.get();
+        summary.failed = failed.get();
+        summary.elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Bulk scan of {} finished: {}", root, summary);
+        return summary;
+    }
+
+    private static void writeLine(Writer out, String line) {
+        synchronized (out) {
+            try {
+                out.write(line);
+            } catch (IOException e) {
+                logger.error("Could not write scan result: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isImage(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg")
+                || name.endsWith(".gif") || name.endsWith(".bmp");
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: BulkQRScanner <directory> [results.jsonl] [threads]");
+            System.exit(1);
+        }
+
+        Path root = Paths.get(args[0]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        try (Writer out = args.length > 1
+                ? Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+            Summary summary = new BulkQRScanner(threads).scanDirectory(root, out);
+            System.err.println(summary);
+        } catch (Exception e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
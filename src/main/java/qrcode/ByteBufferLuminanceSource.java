@@ -0,0 +1,85 @@
+package qrcode;
+
+import com.google.zxing.LuminanceSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Luminance source over an 8-bit grayscale plane held in a {@link ByteBuffer}, including
+ * direct buffers that have no backing array. Rows are read with absolute bulk gets, so
+ * the frame itself is never copied; only the region of interest is materialised when
+ * the binarizer asks for the whole matrix. The buffer's position marks the first pixel
+ * and is not modified.
+ */
+public final class ByteBufferLuminanceSource extends LuminanceSource {
+
+    private final ByteBuffer data;
+    private final int base;
+    private final int dataWidth;
+    private final int dataHeight;
+    private final int left;
+    private final int top;
+
+    public ByteBufferLuminanceSource(ByteBuffer data, int dataWidth, int dataHeight,
+                                     int left, int top, int width, int height) {
+        this(data, data.position(), dataWidth, dataHeight, left, top, width, height);
+        if ((long) dataWidth * dataHeight > data.remaining()) {
+            throw new IllegalArgumentException("Buffer holds " + data.remaining()
+                    + " bytes, need " + (long) dataWidth * dataHeight);
+        }
+    }
+
+    private ByteBufferLuminanceSource(ByteBuffer data, int base, int dataWidth, int dataHeight,
+                                      int left, int top, int width, int height) {
+        super(width, height);
+        if (left < 0 || top < 0 || left + width > dataWidth || top + height > dataHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        this.data = data;
+        this.base = base;
+        this.dataWidth = dataWidth;
+        this.dataHeight = dataHeight;
+        this.left = left;
+        this.top = top;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        data.get(base + (top + y) * dataWidth + left, row, 0, width);
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int width = getWidth();
+        int height = getHeight();
+        byte[] matrix = new byte[width * height];
+
+        if (width == dataWidth) {
+            data.get(base + top * dataWidth, matrix, 0, matrix.length);
+            return matrix;
+        }
+        for (int y = 0; y < height; y++) {
+            data.get(base + (top + y) * dataWidth + left, matrix, y * width, width);
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        return new ByteBufferLuminanceSource(data, base, dataWidth, dataHeight,
+                this.left + left, this.top + top, width, height);
+    }
+}
@@ -0,0 +1,71 @@
+package qrcode;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts which decode tier of {@link QRCodeScanner} succeeded and how long the whole
+ * attempt took, so the tier order can be tuned from real traffic. Safe to share
+ * between scanners on different threads.
+ */
+public class DecodeTierStats {
+
+    public enum Tier {
+        /** QR-only reader, PURE_BARCODE hint, global histogram binarizer. */
+        PURE,
+        /** Multi-format reader, hybrid binarizer, TRY_HARDER. */
+        HYBRID_TRY_HARDER,
+        /** As HYBRID_TRY_HARDER on the image rotated by 90 degrees. */
+        ROTATED,
+        /** As HYBRID_TRY_HARDER on the inverted image (light modules on dark). */
+        INVERTED,
+        /** Every tier failed. */
+        FAILED
+    }
+
+    private final Map<Tier, LongAdder> counts = new EnumMap<>(Tier.class);
+    private final Map<Tier, LongAdder> nanos = new EnumMap<>(Tier.class);
+
+    public DecodeTierStats() {
+        for (Tier tier : Tier.values()) {
+            counts.put(tier, new LongAdder());
+            nanos.put(tier, new LongAdder());
+        }
+    }
+
+    public void record(Tier tier, long elapsedNanos) {
+        counts.get(tier).increment();
+        nanos.get(tier).add(elapsedNanos);
+    }
+
+    public long getCount(Tier tier) {
+        return counts.get(tier).sum();
+    }
+
+    /**
+     * Mean time from the start of the decode until this tier finished, in microseconds.
+     */
+    public double getMeanMicros(Tier tier) {
+        long count = getCount(tier);
+        return count == 0 ? 0 : nanos.get(tier).sum() / 1000.0 / count;
+    }
+
+    public void reset() {
+        counts.values().forEach(LongAdder::reset);
+        nanos.values().forEach(LongAdder::reset);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DecodeTierStats{");
+        for (Tier tier : Tier.values()) {
+            if (tier.ordinal() > 0) {
+                sb.append(", ");
+            }
+            sb.append(tier).append('=').append(getCount(tier))
+                    .append(String.format(" (%.0fus)", getMeanMicros(tier)));
+        }
+        return sb.append('}').toString();
+    }
+}
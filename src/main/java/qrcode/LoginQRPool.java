@@ -0,0 +1,200 @@
+package qrcode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Pool of pre-created PENDING login sessions whose QR image is already rendered.
+ * Absorbs bursts on /generate-login: a request just claims an entry, while a background
+ * task refills the pool, retires idle entries before they expire and sizes the pool
+ * from the recent claim rate.
+ *
+ * <p>The signed token in each QR carries its own expiry, so an entry cannot be renewed:
+ * once fewer than {@link #RETIRE_MARGIN_MS} remain, its session is cancelled and a fresh
+ * entry takes its place. A claimed QR therefore always leaves the user that long to scan.
+ */
+public class LoginQRPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginQRPool.class);
+    private static final long REFILL_INTERVAL_MS = 250;
+    private static final long RETIRE_MARGIN_MS = 60 * 1000;
+    private static final double DEMAND_HORIZON_SECONDS = 2.0;
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private final QRAuthService authService;
+    private final QRCodeGenerator generator;
+    private final int minSize;
+    private final int maxSize;
+
+    private final ConcurrentLinkedQueue<QRAuthService.QRAuthData> entries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ScheduledExecutorService refiller;
+    private volatile int targetSize;
+    private double claimRate;
+    private long lastClaims;
+    private long lastTick;
+
+    public LoginQRPool(QRAuthService authService, int minSize, int maxSize) {
+        this(authService, QRCodeGenerator.builder().size(300).autoDisplay(false).build(), minSize, maxSize);
+    }
+
+    public LoginQRPool(QRAuthService authService, QRCodeGenerator generator, int minSize, int maxSize) {
+        if (minSize < 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid pool bounds: " + minSize + ".." + maxSize);
+        }
+        this.authService = authService;
+        this.generator = generator;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetSize = minSize;
+    }
+
+    public synchronized void start() {
+        if (refiller != null) {
+            return;
+        }
+        lastTick = System.nanoTime();
+        refiller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "login-qr-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refiller.scheduleWithFixedDelay(this::maintain, 0, REFILL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        logger.info("Login QR pool started (min={}, max={})", minSize, maxSize);
+    }
+
+    public synchronized void stop() {
+        if (refiller == null) {
+            return;
+        }
+        refiller.shutdownNow();
+        refiller = null;
+
+        QRAuthService.QRAuthData entry;
+        while ((entry = entries.poll()) != null) {
+            size.decrementAndGet();
+            authService.cancelSession(entry.sessionId);
+        }
+    }
+
+    /**
+     * Claims a pre-rendered login session, or creates one inline when the pool is empty.
+     */
+    public QRAuthService.QRAuthData claim() throws Exception {
+        claims.increment();
+
+        long threshold = System.currentTimeMillis() + RETIRE_MARGIN_MS;
+        QRAuthService.QRAuthData entry;
+        while ((entry = entries.poll()) != null) {
+            size.decrementAndGet();
+            if (entry.exp >= threshold
+                    && authService.getSessionStatus(entry.sessionId) == QRAuthService.SessionStatus.PENDING) {
+                return entry;
+            }
+            authService.cancelSession(entry.sessionId);
+        }
+
+        misses.increment();
+        return createEntry();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int getTargetSize() {
+        return targetSize;
+    }
+
+    public long getClaims() {
+        return claims.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private QRAuthService.QRAuthData createEntry() throws Exception {
+        QRAuthService.QRAuthData qrData = authService.generateLoginQR();
+        QRAuthService.AuthSession session = authService.getSession(qrData.sessionId);
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream(1024);
+        generator.writeQRCodePng(qrData.url, png);
+        if (session != null) {
+            session.qrImage = png.toByteArray();
+        }
+        return qrData;
+    }
+
+    private void maintain() {
+        try {
+            updateTargetSize();
+            retireExpiringEntries();
+            resize();
+        } catch (Exception e) {
+            logger.warn("Login QR pool maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    private void updateTargetSize() {
+        long now = System.nanoTime();
+        long total = claims.sum();
+        double seconds = (now - lastTick) / 1_000_000_000.0;
+        double rate = seconds > 0 ? (total - lastClaims) / seconds : 0;
+
+        claimRate = RATE_SMOOTHING * rate + (1 - RATE_SMOOTHING) * claimRate;
+        lastClaims = total;
+        lastTick = now;
+
+        int wanted = (int) Math.ceil(claimRate * DEMAND_HORIZON_SECONDS);
+        targetSize = Math.max(minSize, Math.min(maxSize, wanted));
+    }
+
+    /** Drops entries whose token is about to expire; {@link #resize} replaces them. */
+    private void retireExpiringEntries() {
+        long threshold = System.currentTimeMillis() + RETIRE_MARGIN_MS;
+        for (QRAuthService.QRAuthData entry : entries) {
+            if (entry.exp < threshold && entries.remove(entry)) {
+                size.decrementAndGet();
+                authService.cancelSession(entry.sessionId);
+            }
+        }
+    }
+
+    private void resize() {
+        int missing = targetSize - size.get();
+        if (missing > 0) {
+            IntStream.range(0, missing).parallel().forEach(i -> {
+                try {
+                    entries.offer(createEntry());
+                    size.incrementAndGet();
+                } catch (Exception e) {
+                    logger.warn("Could not pre-render login QR: {}", e.getMessage());
+                }
+            });
+            return;
+        }
+
+        // Shrink lazily so a short lull does not throw away sessions we are about to need
+        while (size.get() > targetSize * 2 && size.get() > minSize) {
+            QRAuthService.QRAuthData entry = entries.poll();
+            if (entry == null) {
+                break;
+            }
+            size.decrementAndGet();
+            authService.cancelSession(entry.sessionId);
+        }
+    }
+}
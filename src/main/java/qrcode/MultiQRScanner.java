@@ -0,0 +1,340 @@
+package qrcode;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Finds every QR code on a page, e.g. a printed enrollment sheet, in a single pass.
+ * The page is converted to luminance and binarized exactly once. Symbols are then
+ * located as dark connected regions on a coarse grid of that bit matrix, and ZXing's
+ * multi-symbol reader runs on each region alone, so every symbol is decoded about once
+ * and the reader's finder-pattern matching (cubic in the number of patterns it sees)
+ * stays cheap on pages with dozens of codes. Regions larger than a tile, such as a
+ * cluttered photo where everything touches, are split into overlapping tiles. Regions
+ * can be decoded in parallel for very large sheets.
+ */
+public class MultiQRScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MultiQRScanner.class);
+    private static final int DEFAULT_TILE_SIZE = 640;
+    private static final int DEFAULT_OVERLAP = 320;
+    private static final int BLOCK = 8; // grid cell edge for locating symbols; one byte of a row word
+    private static final int MIN_REGION = 21; // a version 1 symbol at one pixel per module
+    private static final int QUIET_ZONE = 2 * BLOCK;
+
+    private final Map<DecodeHintType, Object> quickHints;
+    private final Map<DecodeHintType, Object> hints;
+    private final int tileSize;
+    private final int overlap;
+
+    public MultiQRScanner() {
+        this(DEFAULT_TILE_SIZE, DEFAULT_OVERLAP);
+    }
+
+    /**
+     * @param tileSize largest region decoded in one go; bigger ones are split into tiles
+     * @param overlap  how far neighbouring tiles overlap; must be at least the size of the
+     *                 largest symbol in a split region so each one lies whole in some tile
+     */
+    public MultiQRScanner(int tileSize, int overlap) {
+        if (tileSize <= 0 || overlap < 0) {
+            throw new IllegalArgumentException("Tile size must be positive and overlap non-negative");
+        }
+        this.quickHints = new HashMap<>();
+        this.quickHints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+        this.hints = new HashMap<>(quickHints);
+        this.hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        this.tileSize = tileSize;
+        this.overlap = overlap;
+    }
+
+    public static class Symbol {
+        public final String text;
+        public final ResultPoint[] points;
+        public final Rectangle bounds;
+
+        Symbol(String text, ResultPoint[] points, Rectangle bounds) {
+            this.text = text;
+            this.points = points;
+            this.bounds = bounds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Symbol{text='%s', at=(%d,%d %dx%d)}",
+                    text, bounds.x, bounds.y, bounds.width, bounds.height);
+        }
+    }
+
+    public List<Symbol> scanAll(BufferedImage image) {
+        return scanAll(image, false);
+    }
+
+    /**
+     * Decodes every symbol in the image, each reported once with its position in page
+     * coordinates.
+     * @param parallel decode the regions on the common fork-join pool
+     * @return the symbols found, possibly empty
+     */
+    public List<Symbol> scanAll(BufferedImage image, boolean parallel) {
+        if (image == null) {
+            throw new IllegalArgumentException("Image cannot be null");
+        }
+        BufferedImageLuminanceSource page = new BufferedImageLuminanceSource(image);
+        BitMatrix bits;
+        try {
+            bits = new HybridBinarizer(page).getBlackMatrix();
+        } catch (NotFoundException e) {
+            return Collections.emptyList();
+        }
+
+        List<Rectangle> regions = new ArrayList<>();
+        for (Rectangle region : locate(bits)) {
+            if (region.width <= tileSize && region.height <= tileSize) {
+                regions.add(region);
+            } else {
+                regions.addAll(tiles(region));
+            }
+        }
+        List<Symbol> found = (parallel ? regions.parallelStream() : regions.stream())
+                .map(region -> decodeRegion(page, bits, region))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+
+        List<Symbol> symbols = deduplicate(found);
+        logger.debug("Found {} QR codes in {}x{} image ({} regions)",
+                symbols.size(), page.getWidth(), page.getHeight(), regions.size());
+        return symbols;
+    }
+
+    /**
+     * Dark connected areas of the page, padded by a quiet zone and merged where they
+     * overlap. The grid marks each {@link #BLOCK}-pixel cell holding any black pixel,
+     * read a byte of a row word at a time.
+     */
+    private List<Rectangle> locate(BitMatrix bits) {
+        int width = bits.getWidth();
+        int height = bits.getHeight();
+        int gridWidth = (width + BLOCK - 1) / BLOCK;
+        int gridHeight = (height + BLOCK - 1) / BLOCK;
+        boolean[] dark = new boolean[gridWidth * gridHeight];
+        BitArray row = new BitArray(width);
+        for (int y = 0; y < height; y++) {
+            int[] words = bits.getRow(y, row).getBitArray();
+            int cells = (y / BLOCK) * gridWidth;
+            for (int w = 0; w < words.length; w++) {
+                int word = words[w];
+                for (int k = 0; word != 0; k++, word >>>= BLOCK) {
+                    if ((word & 0xFF) != 0) {
+                        dark[cells + w * (32 / BLOCK) + k] = true;
+                    }
+                }
+            }
+        }
+
+        List<Rectangle> regions = new ArrayList<>();
+        int[] stack = new int[dark.length];
+        for (int start = 0; start < dark.length; start++) {
+            if (!dark[start]) {
+                continue;
+            }
+            dark[start] = false;
+            int size = 0;
+            stack[size++] = start;
+            int minX = gridWidth, minY = gridHeight, maxX = 0, maxY = 0;
+            while (size > 0) {
+                int cell = stack[--size];
+                int cx = cell % gridWidth;
+                int cy = cell / gridWidth;
+                minX = Math.min(minX, cx);
+                minY = Math.min(minY, cy);
+                maxX = Math.max(maxX, cx);
+                maxY = Math.max(maxY, cy);
+                for (int ny = Math.max(0, cy - 1); ny <= Math.min(gridHeight - 1, cy + 1); ny++) {
+                    for (int nx = Math.max(0, cx - 1); nx <= Math.min(gridWidth - 1, cx + 1); nx++) {
+                        int next = ny * gridWidth + nx;
+                        if (dark[next]) {
+                            dark[next] = false;
+                            stack[size++] = next;
+                        }
+                    }
+                }
+            }
+            int left = Math.max(0, minX * BLOCK - QUIET_ZONE);
+            int top = Math.max(0, minY * BLOCK - QUIET_ZONE);
+            int right = Math.min(width, (maxX + 1) * BLOCK + QUIET_ZONE);
+            int bottom = Math.min(height, (maxY + 1) * BLOCK + QUIET_ZONE);
+            if (right - left - 2 * QUIET_ZONE >= MIN_REGION && bottom - top - 2 * QUIET_ZONE >= MIN_REGION) {
+                regions.add(new Rectangle(left, top, right - left, bottom - top));
+            }
+        }
+        return mergeOverlapping(regions);
+    }
+
+    private static List<Rectangle> mergeOverlapping(List<Rectangle> regions) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < regions.size() && !merged; i++) {
+                for (int j = i + 1; j < regions.size(); j++) {
+                    if (regions.get(i).intersects(regions.get(j))) {
+                        regions.set(i, regions.get(i).union(regions.remove(j)));
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return regions;
+    }
+
+    private List<Rectangle> tiles(Rectangle area) {
+        int stride = Math.max(1, tileSize - overlap);
+        int columns = Math.max(1, (int) Math.ceil((double) Math.max(0, area.width - tileSize) / stride) + 1);
+        int rows = Math.max(1, (int) Math.ceil((double) Math.max(0, area.height - tileSize) / stride) + 1);
+        List<Rectangle> tiles = new ArrayList<>(columns * rows);
+        for (int tile = 0; tile < columns * rows; tile++) {
+            int left = Math.min((tile % columns) * stride, Math.max(0, area.width - tileSize));
+            int top = Math.min((tile / columns) * stride, Math.max(0, area.height - tileSize));
+            tiles.add(new Rectangle(area.x + left, area.y + top,
+                    Math.min(tileSize, area.width - left), Math.min(tileSize, area.height - top)));
+        }
+        return tiles;
+    }
+
+    private List<Symbol> decodeRegion(LuminanceSource page, BitMatrix bits, Rectangle region) {
+        int left = region.x;
+        int top = region.y;
+        BitMatrix matrix = region.width == bits.getWidth() && region.height == bits.getHeight()
+                ? bits : copyRegion(bits, left, top, region.width, region.height);
+
+        BinaryBitmap bitmap = new BinaryBitmap(new PrecomputedBinarizer(
+                page.crop(left, top, region.width, region.height), matrix));
+        Result[] results;
+        try {
+            results = decode(bitmap);
+        } catch (NotFoundException e) {
+            return Collections.emptyList();
+        }
+
+        List<Symbol> symbols = new ArrayList<>(results.length);
+        for (Result result : results) {
+            ResultPoint[] points = result.getResultPoints();
+            ResultPoint[] translated = new ResultPoint[points.length];
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = 0, maxY = 0;
+            for (int i = 0; i < points.length; i++) {
+                float x = points[i].getX() + left;
+                float y = points[i].getY() + top;
+                translated[i] = new ResultPoint(x, y);
+                minX = Math.min(minX, (int) x);
+                minY = Math.min(minY, (int) y);
+                maxX = Math.max(maxX, (int) x);
+                maxY = Math.max(maxY, (int) y);
+            }
+            symbols.add(new Symbol(result.getText(), translated,
+                    new Rectangle(minX, minY, maxX - minX, maxY - minY)));
+        }
+        return symbols;
+    }
+
+    /** A plain pass finds a cleanly printed symbol; TRY_HARDER only for what it misses. */
+    private Result[] decode(BinaryBitmap bitmap) throws NotFoundException {
+        QRCodeMultiReader reader = new QRCodeMultiReader();
+        try {
+            return reader.decodeMultiple(bitmap, quickHints);
+        } catch (NotFoundException e) {
+            return reader.decodeMultiple(bitmap, hints);
+        }
+    }
+
+    /**
+     * Copies a rectangle of the page matrix 32 pixels at a time: each target word is
+     * the source words at the region's bit offset, shifted together.
+     */
+    static BitMatrix copyRegion(BitMatrix bits, int left, int top, int width, int height) {
+        BitMatrix region = new BitMatrix(width, height);
+        BitArray source = new BitArray(bits.getWidth());
+        BitArray target = new BitArray(width);
+        int[] out = target.getBitArray();
+        int first = left >>> 5;
+        int shift = left & 31;
+        int lastMask = (width & 31) == 0 ? -1 : (1 << (width & 31)) - 1;
+        for (int y = 0; y < height; y++) {
+            int[] in = bits.getRow(top + y, source).getBitArray();
+            for (int w = 0; w < out.length; w++) {
+                int i = first + w;
+                int low = i < in.length ? in[i] >>> shift : 0;
+                int high = shift != 0 && i + 1 < in.length ? in[i + 1] << (32 - shift) : 0;
+                out[w] = low | high;
+            }
+            out[out.length - 1] &= lastMask;
+            region.setRow(y, target);
+        }
+        return region;
+    }
+
+    private static List<Symbol> deduplicate(List<Symbol> symbols) {
+        List<Symbol> unique = new ArrayList<>();
+        for (Symbol symbol : symbols) {
+            boolean duplicate = unique.stream().anyMatch(other -> other.text.equals(symbol.text)
+                    && Math.abs(other.bounds.getCenterX() - symbol.bounds.getCenterX()) < symbol.bounds.width / 2.0 + 1
+                    && Math.abs(other.bounds.getCenterY() - symbol.bounds.getCenterY()) < symbol.bounds.height / 2.0 + 1);
+            if (!duplicate) {
+                unique.add(symbol);
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Hands out an already binarized region so the page is never thresholded twice.
+     */
+    private static final class PrecomputedBinarizer extends Binarizer {
+        private final BitMatrix matrix;
+
+        PrecomputedBinarizer(LuminanceSource source, BitMatrix matrix) {
+            super(source);
+            this.matrix = matrix;
+        }
+
+        @Override
+        public BitArray getBlackRow(int y, BitArray row) {
+            return matrix.getRow(y, row);
+        }
+
+        @Override
+        public BitMatrix getBlackMatrix() {
+            return matrix;
+        }
+
+        /**
+         * ZXing asks for this when it crops or rotates the bitmap. The new source has no
+         * precomputed matrix, so it is thresholded the way the page was.
+         */
+        @Override
+        public Binarizer createBinarizer(LuminanceSource source) {
+            return new HybridBinarizer(source);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package qrcode;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.DetectorResult;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.detector.Detector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes QR codes in large photos without materialising the full-resolution image in
+ * the common case. The file is read once with ImageIO source subsampling, a luminance
+ * pyramid is built from that, and the symbol is located starting from the coarsest
+ * level. Only the matching region is then read back from the file, subsampled just
+ * enough to keep a few pixels per module, and decoded. A symbol too small to be found
+ * on the pyramid still gets the full-resolution scan before the decode gives up.
+ */
+public class PyramidDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PyramidDecoder.class);
+    private static final long LARGE_IMAGE_PIXELS = 4_000_000;
+    private static final int BASE_LEVEL_SIZE = 1600;
+    private static final int MIN_LEVEL_SIZE = 400;
+    private static final int TARGET_PIXELS_PER_MODULE = 4;
+    private static final double REGION_PADDING = 0.25;
+
+    private final QRCodeScanner scanner;
+    private final Map<DecodeHintType, Object> detectHints = Map.of(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+
+    public PyramidDecoder(QRCodeScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    private static class Level {
+        final byte[] luminance;
+        final int width;
+        final int height;
+        final int scale; // full-resolution pixels per level pixel
+
+        Level(byte[] luminance, int width, int height, int scale) {
+            this.luminance = luminance;
+            this.width = width;
+            this.height = height;
+            this.scale = scale;
+        }
+    }
+
+    /**
+     * Decodes the file, through the pyramid if it is large enough to benefit. The file
+     * header is read once; small images are then read whole by the same reader.
+     * @throws NotFoundException if no symbol was found, even at full resolution
+     */
+    public String decode(File file) throws IOException, NotFoundException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                throw new IOException("Could not open image stream: " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Could not read image from file: " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height <= LARGE_IMAGE_PIXELS) {
+                    return scanner.scanFromImage(reader.read(0));
+                }
+                logger.debug("Decoding {}x{} image through pyramid", width, height);
+                return decodeLarge(reader, width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private String decodeLarge(ImageReader reader, int width, int height) throws IOException, NotFoundException {
+        int baseFactor = Math.max(1, (Math.max(width, height) + BASE_LEVEL_SIZE - 1) / BASE_LEVEL_SIZE);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(baseFactor, baseFactor, 0, 0);
+        BufferedImage baseImage = reader.read(0, param);
+
+        BufferedImageLuminanceSource baseSource = new BufferedImageLuminanceSource(baseImage);
+        List<Level> pyramid = buildPyramid(new Level(baseSource.getMatrix(),
+                baseSource.getWidth(), baseSource.getHeight(), baseFactor));
+
+        for (int i = pyramid.size() - 1; i >= 0; i--) {
+            Level level = pyramid.get(i);
+            DetectorResult detected = detect(level);
+            if (detected == null) {
+                continue;
+            }
+            String text = decodeRegion(reader, width, height, level, detected);
+            if (text != null) {
+                return text;
+            }
+        }
+
+        // Nothing located cleanly: run the full search on the base level
+        Level base = pyramid.get(0);
+        try {
+            return scanner.decodeTiered(new PlanarYUVLuminanceSource(base.luminance,
+                    base.width, base.height, 0, 0, base.width, base.height, false)).getText();
+        } catch (NotFoundException e) {
+            // A symbol smaller than a few base-level pixels per module: read the full image
+            logger.debug("Not found on the pyramid, scanning {}x{} at full resolution", width, height);
+        }
+        pyramid.clear();
+        return scanner.scanFromImage(reader.read(0));
+    }
+
+    private List<Level> buildPyramid(Level base) {
+        List<Level> levels = new ArrayList<>();
+        levels.add(base);
+        Level current = base;
+        while (Math.max(current.width, current.height) / 2 >= MIN_LEVEL_SIZE) {
+            current = halve(current);
+            levels.add(current);
+        }
+        return levels;
+    }
+
+    private static Level halve(Level level) {
+        int width = level.width / 2;
+        int height = level.height / 2;
+        byte[] out = new byte[width * height];
+        byte[] in = level.luminance;
+        for (int y = 0; y < height; y++) {
+            int row = 2 * y * level.width;
+            for (int x = 0; x < width; x++) {
+                int i = row + 2 * x;
+                int sum = (in[i] & 0xFF) + (in[i + 1] & 0xFF)
+                        + (in[i + level.width] & 0xFF) + (in[i + level.width + 1] & 0xFF);
+                out[y * width + x] = (byte) (sum >> 2);
+            }
+        }
+        return new Level(out, width, height, level.scale * 2);
+    }
+
+    private DetectorResult detect(Level level) {
+        try {
+            PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(level.luminance,
+                    level.width, level.height, 0, 0, level.width, level.height, false);
+            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+            return new Detector(bitmap.getBlackMatrix()).detect(detectHints);
+        } catch (ReaderException e) {
+            return null;
+        }
+    }
+
+    private String decodeRegion(ImageReader reader, int width, int height, Level level, DetectorResult detected)
+            throws IOException {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -1, maxY = -1;
+        for (ResultPoint point : detected.getPoints()) {
+            minX = Math.min(minX, point.getX());
+            minY = Math.min(minY, point.getY());
+            maxX = Math.max(maxX, point.getX());
+            maxY = Math.max(maxY, point.getY());
+        }
+        float symbolSize = Math.max(maxX - minX, maxY - minY) * level.scale;
+        int padding = (int) (symbolSize * REGION_PADDING) + level.scale;
+
+        int left = Math.max(0, (int) (minX * level.scale) - padding);
+        int top = Math.max(0, (int) (minY * level.scale) - padding);
+        int right = Math.min(width, (int) (maxX * level.scale) + padding);
+        int bottom = Math.min(height, (int) (maxY * level.scale) + padding);
+        if (right <= left || bottom <= top) {
+            return null;
+        }
+
+        int modules = detected.getBits().getWidth();
+        int pixelsPerModule = (int) (symbolSize / Math.max(1, modules - 7));
+        int subsampling = Math.max(1, pixelsPerModule / TARGET_PIXELS_PER_MODULE);
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(left, top, right - left, bottom - top));
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        BufferedImage region = reader.read(0, param);
+
+        try {
+            return scanner.scanFromImage(region);
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -2,10 +2,13 @@ package qrcode;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import security.ReplayFilter;
+import security.TimeSlicedBloomFilter;
+import security.TokenService;
+import storage.SessionRepository;
 
 import java.net.InetAddress;
 import java.net.NetworkInterface;
-import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -13,12 +16,21 @@ public class QRAuthService {
 
     private static final Logger logger = LoggerFactory.getLogger(QRAuthService.class);
     private static final int DEFAULT_TOKEN_VALIDITY_MINUTES = 5;
-    private static final int DEFAULT_TOKEN_LENGTH = 32;
+    private static final String LOGIN_PURPOSE = "login";
+    private static final String CONFIRM_PURPOSE = "confirm";
+    private static final double REPLAY_FALSE_POSITIVE_RATE = 1e-6;
+    private static final long EXPECTED_LIVE_KEYS = 200_000;
+    private static final double LIVE_KEY_FALSE_POSITIVE_RATE = 1e-3;
+    private static final int MAX_ACTIVE_SESSIONS = 200_000;
+    private static final long AUTHENTICATED_RETENTION_MS = 60_000;
 
     private final Map<String, User> users;
-    private final Map<String, AuthSession> activeSessions;
+    private final SessionRepository<AuthSession> activeSessions;
     private final Map<String, PairedDevice> pairedDevices;
-    private final SecureRandom secureRandom;
+    private final TokenService tokenService;
+    private final ReplayFilter replayFilter;
+    private final TimeSlicedBloomFilter liveKeys;
+    private volatile boolean liveKeyFilterEnabled = true;
     private String serverUrl;
 
     public QRAuthService() {
@@ -26,10 +38,22 @@ public class QRAuthService {
     }
 
     public QRAuthService(String serverUrl) {
+        this(serverUrl, new TokenService());
+    }
+
+    /**
+     * @param tokenService signs the QR tokens; share its keys between instances so any of
+     *                     them can verify a token another one issued
+     */
+    public QRAuthService(String serverUrl, TokenService tokenService) {
         this.users = new ConcurrentHashMap<>();
-        this.activeSessions = new ConcurrentHashMap<>();
+        long validityMillis = DEFAULT_TOKEN_VALIDITY_MINUTES * 60 * 1000L;
+        this.activeSessions = new SessionRepository<>("auth-sessions", MAX_ACTIVE_SESSIONS, validityMillis);
+        this.activeSessions.setRemovalListener((id, session) -> session.status = SessionStatus.EXPIRED);
         this.pairedDevices = new ConcurrentHashMap<>();
-        this.secureRandom = new SecureRandom();
+        this.tokenService = tokenService;
+        this.replayFilter = new ReplayFilter(validityMillis, EXPECTED_LIVE_KEYS, REPLAY_FALSE_POSITIVE_RATE);
+        this.liveKeys = new TimeSlicedBloomFilter(validityMillis, EXPECTED_LIVE_KEYS, LIVE_KEY_FALSE_POSITIVE_RATE);
         this.serverUrl = serverUrl;
         setupDummyUsers();
     }
@@ -62,10 +86,7 @@ public class QRAuthService {
         public String sessionId;
 
         public String toJSON() {
-            return String.format(
-                    "{\"token\":\"%s\",\"url\":\"%s\",\"exp\":%d,\"type\":\"%s\",\"session\":\"%s\"}",
-                    token, url, exp, type, sessionId
-            );
+            return QRPayloadCodec.encodeAuth(token, url, exp, type, sessionId);
         }
     }
 
@@ -81,6 +102,8 @@ public class QRAuthService {
         public long authenticatedAt;
         public SessionStatus status;
         public String deviceId;
+        public String qrContent;
+        public byte[] qrImage;
 
         public AuthSession(String sessionId, String userId, String authToken, long expiresAt) {
             this.sessionId = sessionId;
@@ -111,8 +134,9 @@ public class QRAuthService {
      */
     public QRAuthData generateLoginQR() throws Exception {
         String sessionId = "SESSION_" + UUID.randomUUID().toString();
-        String authToken = generateSecureToken(DEFAULT_TOKEN_LENGTH);
-        long expiresAt = System.currentTimeMillis() + (DEFAULT_TOKEN_VALIDITY_MINUTES * 60 * 1000);
+        long validityMillis = DEFAULT_TOKEN_VALIDITY_MINUTES * 60 * 1000L;
+        String authToken = tokenService.issue(sessionId, LOGIN_PURPOSE, validityMillis);
+        long expiresAt = System.currentTimeMillis() + validityMillis;
 
         // Get local IP for mobile access
         String localIp = getLocalIP();
@@ -123,7 +147,8 @@ public class QRAuthService {
 
         // Create session
         AuthSession session = new AuthSession(sessionId, null, authToken, expiresAt);
-        activeSessions.put(sessionId, session);
+        session.qrContent = mobileUrl;
+        store(session);
 
         // Create QR data
         QRAuthData qrData = new QRAuthData();
@@ -151,22 +176,24 @@ public class QRAuthService {
             throw new Exception("User not found: " + userEmail);
         }
 
-        // 1. Generate unique session ID and token
+        // 1. Generate unique session ID and a token signed for it
         String sessionId = UUID.randomUUID().toString();
-        String token = generateSecureToken(DEFAULT_TOKEN_LENGTH);
-        long expirationTime = System.currentTimeMillis() + (DEFAULT_TOKEN_VALIDITY_MINUTES * 60 * 1000);
+        long validityMillis = DEFAULT_TOKEN_VALIDITY_MINUTES * 60 * 1000L;
+        String token = tokenService.issue(sessionId, CONFIRM_PURPOSE, validityMillis);
+        long expirationTime = System.currentTimeMillis() + validityMillis;
 
-        // 2. Create and store the session
-        AuthSession newSession = new AuthSession(sessionId, user.userId, token, expirationTime);
-        activeSessions.put(sessionId, newSession);
-
-        logger.info("Generated new AuthSession for {}: SessionId={}", user.displayName, sessionId);
-
-        // 3. Construct the mobile-facing URL, pointing to the confirmation server (port 8082)
+        // 2. Construct the mobile-facing URL, pointing to the confirmation server (port 8082)
         String confirmationUrl = serverUrl.replace(":8080", ":8082")
                 + "/confirm?session=" + sessionId
                 + "&token=" + token;
 
+        // 3. Create and store the session
+        AuthSession newSession = new AuthSession(sessionId, user.userId, token, expirationTime);
+        newSession.qrContent = confirmationUrl;
+        store(newSession);
+
+        logger.info("Generated new AuthSession for {}: SessionId={}", user.displayName, sessionId);
+
         logger.info("QR Code URL: {}", confirmationUrl);
         return confirmationUrl;
     }
@@ -179,6 +206,13 @@ public class QRAuthService {
      * @return true if confirmation was successful and the token/session was valid.
      */
     public boolean confirmAuthSession(String sessionId, String token) {
+        // Forged, expired or borrowed tokens are rejected from the signature alone
+        TokenService.Claims claims = tokenService.verify(token, CONFIRM_PURPOSE);
+        if (claims == null || !claims.sessionId.equals(sessionId)) {
+            logger.warn("Confirmation failed: Invalid token for session: {}", sessionId);
+            return false;
+        }
+
         AuthSession session = activeSessions.get(sessionId);
 
         if (session == null) {
@@ -202,9 +236,15 @@ public class QRAuthService {
             return false;
         }
 
+        if (!replayFilter.markConsumed(token)) {
+            logger.warn("Confirmation failed: Token already used for session: {}", sessionId);
+            return false;
+        }
+
         // Success: Mark as confirmed
         session.status = SessionStatus.AUTHENTICATED;
         session.authenticatedAt = System.currentTimeMillis();
+        retainAuthenticated(session);
 
         // Update user's last login
         User user = users.values().stream()
@@ -225,10 +265,7 @@ public class QRAuthService {
     public AuthSession scanQRCode(String authToken, String deviceId) {
         logger.info("📱 QR Code scanned by device: {}", deviceId);
 
-        AuthSession session = activeSessions.values().stream()
-                .filter(s -> authToken.equals(s.authToken))
-                .findFirst()
-                .orElse(null);
+        AuthSession session = findByToken(authToken);
 
         if (session == null) {
             logger.warn("❌ Invalid auth token");
@@ -265,10 +302,7 @@ public class QRAuthService {
             return null;
         }
 
-        AuthSession session = activeSessions.values().stream()
-                .filter(s -> authToken.equals(s.authToken))
-                .findFirst()
-                .orElse(null);
+        AuthSession session = findByToken(authToken);
 
         if (session == null) {
             logger.warn("❌ Session not found");
@@ -280,10 +314,16 @@ public class QRAuthService {
             return null;
         }
 
+        if (!replayFilter.markConsumed(authToken)) {
+            logger.warn("❌ Auth token already used");
+            return null;
+        }
+
         session.status = SessionStatus.AUTHENTICATED;
         session.userId = user.userId;
         session.deviceId = deviceId;
         session.authenticatedAt = System.currentTimeMillis();
+        retainAuthenticated(session);
 
         user.lastLogin = System.currentTimeMillis();
         if (!user.deviceIds.contains(deviceId)) {
@@ -326,16 +366,82 @@ public class QRAuthService {
      * Get session by ID
      */
     public AuthSession getSession(String sessionId) {
-        AuthSession session = activeSessions.get(sessionId);
-        if (session != null && session.expiresAt < System.currentTimeMillis()) {
-            session.status = SessionStatus.EXPIRED;
-            return null; // Session expired
+        return activeSessions.get(sessionId); // null once expired
+    }
+
+    /**
+     * Cheap pre-check for tokens and session ids arriving from the network.
+     * @return false if no session with this token or id was created or renewed within
+     *         the validity period, so the request can be rejected without touching the
+     *         session store; true means "maybe", and the real lookup decides
+     */
+    public boolean mightBeLive(String tokenOrSessionId) {
+        if (tokenOrSessionId == null) {
+            return false;
+        }
+        return !liveKeyFilterEnabled || liveKeys.mightContain(tokenOrSessionId);
+    }
+
+    /**
+     * Turns the {@link #mightBeLive} pre-check off (every key is "maybe live"), e.g. to
+     * compare load with and without it.
+     */
+    public void setLiveKeyFilterEnabled(boolean enabled) {
+        this.liveKeyFilterEnabled = enabled;
+    }
+
+    private void store(AuthSession session) {
+        activeSessions.put(session.sessionId, session);
+        markLive(session);
+    }
+
+    /**
+     * Resolves a login token to its session from the signed claims, without a token
+     * index. The session must still hold that exact token.
+     */
+    private AuthSession findByToken(String authToken) {
+        TokenService.Claims claims = tokenService.verify(authToken, LOGIN_PURPOSE);
+        if (claims == null) {
+            return null;
+        }
+        AuthSession session = activeSessions.get(claims.sessionId);
+        return session != null && session.authToken.equals(authToken) ? session : null;
+    }
+
+    /**
+     * Keeps a just-authenticated session around long enough for the desktop to pick up
+     * the result, even if it was confirmed moments before expiring.
+     */
+    private void retainAuthenticated(AuthSession session) {
+        if (session.expiresAt - System.currentTimeMillis() < AUTHENTICATED_RETENTION_MS) {
+            long expiresAt = activeSessions.renew(session.sessionId, AUTHENTICATED_RETENTION_MS);
+            if (expiresAt > 0) {
+                session.expiresAt = expiresAt;
+            }
+        }
+    }
+
+    private void markLive(AuthSession session) {
+        liveKeys.add(session.sessionId);
+        liveKeys.add(session.authToken);
+    }
+
+    /**
+     * Cancels a session and drops it from the active set.
+     */
+    public void cancelSession(String sessionId) {
+        AuthSession session = activeSessions.remove(sessionId);
+        if (session != null) {
+            session.status = SessionStatus.CANCELLED;
         }
-        return session;
     }
 
     // --- Accessors and Utilities ---
 
+    public SessionRepository<AuthSession> getSessionRepository() {
+        return activeSessions;
+    }
+
     public User getUserByEmail(String email) {
         return users.values().stream()
                 .filter(user -> user.email.equalsIgnoreCase(email))
@@ -351,12 +457,6 @@ public class QRAuthService {
         this.serverUrl = url;
     }
 
-    private String generateSecureToken(int length) {
-        byte[] randomBytes = new byte[length];
-        secureRandom.nextBytes(randomBytes);
-        return Base64.getUrlEncoder().withoutPadding().encodeToString(randomBytes);
-    }
-
     private void setupDummyUsers() {
         registerUser("alice@example.com", "Alice Tester");
         registerUser("bob@example.com", "Bob Developer");
@@ -403,17 +503,7 @@ public class QRAuthService {
      * Clean up expired sessions
      */
     public void cleanupExpiredSessions() {
-        long currentTime = System.currentTimeMillis();
-        int removed = 0;
-
-        Iterator<Map.Entry<String, AuthSession>> iterator = activeSessions.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<String, AuthSession> entry = iterator.next();
-            if (currentTime > entry.getValue().expiresAt) {
-                iterator.remove();
-                removed++;
-            }
-        }
+        int removed = activeSessions.sweep();
 
         if (removed > 0) {
             logger.info("Cleaned up {} expired sessions", removed);
@@ -7,6 +7,9 @@ import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import javax.imageio.ImageIO;
@@ -15,6 +18,8 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.util.Base64;
@@ -55,7 +60,7 @@ public class QRCodeGenerator {
         return hints;
     }
 
-    private BitMatrix generateBitMatrix(String data) throws WriterException {
+    private void validateData(String data) {
         if (data == null || data.isEmpty()) {
             throw new IllegalArgumentException("Data cannot be null or empty");
         }
@@ -63,6 +68,10 @@ public class QRCodeGenerator {
         if (data.length() > MAX_CHARACTERS) {
             logger.warn("Data length ({}) exceeds recommended maximum ({})", data.length(), MAX_CHARACTERS);
         }
+    }
+
+    private BitMatrix generateBitMatrix(String data) throws WriterException {
+        validateData(data);
 
         QRCodeWriter qrCodeWriter = new QRCodeWriter();
         return qrCodeWriter.encode(data, BarcodeFormat.QR_CODE, width, height, hints);
@@ -172,6 +181,56 @@ public class QRCodeGenerator {
         }
     }
 
+    /**
+     * Encodes the data as PNG directly into the given stream, without an intermediate
+     * byte array or Base64 copy. Never opens a preview window. The stream is not closed.
+     */
+    public void writeQRCodePng(String data, OutputStream out) throws WriterException, IOException {
+        BitMatrix bitMatrix = generateBitMatrix(data);
+        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", out);
+    }
+
+    /**
+     * Encodes the data as an SVG document into the given writer. Each row of dark modules
+     * becomes a run of stroked horizontal segments in a single path, so the output size
+     * depends on the symbol version rather than the rendered pixel size. The writer is not closed.
+     */
+    public void writeQRCodeSvg(String data, Writer out) throws WriterException, IOException {
+        validateData(data);
+
+        QRCode code = Encoder.encode(data, ErrorCorrectionLevel.H, hints);
+        ByteMatrix matrix = code.getMatrix();
+        int margin = (Integer) hints.get(EncodeHintType.MARGIN);
+        int size = matrix.getWidth() + 2 * margin;
+
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 " + size + " " + size
+                + "\" width=\"" + width + "\" height=\"" + height + "\" shape-rendering=\"crispEdges\">");
+        out.write("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path stroke=\"#000\" d=\"");
+
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            int lastEnd = -1;
+            int x = 0;
+            while (x < matrix.getWidth()) {
+                if (matrix.get(x, y) != 1) {
+                    x++;
+                    continue;
+                }
+                int runStart = x;
+                while (x < matrix.getWidth() && matrix.get(x, y) == 1) {
+                    x++;
+                }
+                if (lastEnd < 0) {
+                    out.write("M" + (runStart + margin) + " " + (y + margin) + ".5h" + (x - runStart));
+                } else {
+                    out.write("m" + (runStart - lastEnd) + " 0h" + (x - runStart));
+                }
+                lastEnd = x;
+            }
+        }
+
+        out.write("\"/></svg>");
+    }
+
     /**
      * NEW: Generate mobile-friendly QR code with URL
      */
@@ -2,39 +2,70 @@ package qrcode;
 
 import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
 import com.google.zxing.MultiFormatReader;
 import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
 import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.GlobalHistogramBinarizer;
 import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
 import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
+/**
+ * Decodes QR codes from files, images and encoded bytes.
+ * Not thread-safe: the underlying ZXing reader keeps per-decode state, so use one
+ * scanner per thread or go through {@link QRDecodeService}.
+ */
 public class QRCodeScanner {
 
     private static final Logger logger = LoggerFactory.getLogger(QRCodeScanner.class);
     private static final Gson gson = new Gson();
 
     private final Map<DecodeHintType, Object> hints;
+    private final Map<DecodeHintType, Object> pureHints;
     private final MultiFormatReader reader;
+    private final QRCodeReader qrReader;
+    private final DecodeTierStats tierStats;
+    private PyramidDecoder pyramidDecoder; // created on first file scan
 
     public QRCodeScanner() {
+        this(new DecodeTierStats());
+    }
+
+    /**
+     * @param tierStats where to record which decode tier succeeded; may be shared
+     *                  between scanners.
+     */
+    public QRCodeScanner(DecodeTierStats tierStats) {
         this.hints = createDefaultHints();
+        this.pureHints = createPureHints();
         this.reader = new MultiFormatReader();
         this.reader.setHints(hints);
+        this.qrReader = new QRCodeReader();
+        this.tierStats = tierStats;
     }
 
     private Map<DecodeHintType, Object> createDefaultHints() {
@@ -44,21 +75,31 @@ public class QRCodeScanner {
         return hints;
     }
 
+    private Map<DecodeHintType, Object> createPureHints() {
+        Map<DecodeHintType, Object> hints = new HashMap<>();
+        hints.put(DecodeHintType.PURE_BARCODE, Boolean.TRUE);
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+        return hints;
+    }
+
+    public DecodeTierStats getTierStats() {
+        return tierStats;
+    }
+
     public String scanFromFile(String filePath) throws IOException, NotFoundException {
-        logger.info("Scanning QR code from file: {}", filePath);
+        logger.debug("Scanning QR code from file: {}", filePath);
 
         File file = new File(filePath);
         if (!file.exists()) {
             throw new IOException("File not found: " + filePath);
         }
 
-        BufferedImage image = ImageIO.read(file);
-        if (image == null) {
-            throw new IOException("Could not read image from file: " + filePath);
+        // Large photos are located on a downscaled pyramid and only the symbol region is read
+        if (pyramidDecoder == null) {
+            pyramidDecoder = new PyramidDecoder(this);
         }
-
-        String result = scanFromImage(image);
-        logger.info("Successfully scanned QR code from file");
+        String result = pyramidDecoder.decode(file);
+        logger.debug("Successfully scanned QR code from file");
         return result;
     }
 
@@ -70,15 +111,66 @@ public class QRCodeScanner {
         }
 
         BufferedImageLuminanceSource source = new BufferedImageLuminanceSource(image);
-        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
 
-        Result result = reader.decode(bitmap);
+        Result result = decodeTiered(source);
         String text = result.getText();
 
         logger.debug("Successfully decoded QR code: {} characters", text.length());
         return text;
     }
 
+    /**
+     * Tries the cheapest decode first and only falls back to the expensive searches when
+     * it fails: a QR-only pure-barcode read (clean, generated images), then the full
+     * multi-format TRY_HARDER search, then rotated and inverted variants.
+     */
+    Result decodeTiered(LuminanceSource source) throws NotFoundException {
+        long start = System.nanoTime();
+
+        try {
+            Result result = qrReader.decode(new BinaryBitmap(new GlobalHistogramBinarizer(source)), pureHints);
+            tierStats.record(DecodeTierStats.Tier.PURE, System.nanoTime() - start);
+            return result;
+        } catch (ReaderException e) {
+            // not a clean symbol, fall through to the full search
+        } finally {
+            qrReader.reset();
+        }
+
+        Result result = tryHybrid(source);
+        if (result != null) {
+            tierStats.record(DecodeTierStats.Tier.HYBRID_TRY_HARDER, System.nanoTime() - start);
+            return result;
+        }
+
+        if (source.isRotateSupported()) {
+            result = tryHybrid(source.rotateCounterClockwise());
+            if (result != null) {
+                tierStats.record(DecodeTierStats.Tier.ROTATED, System.nanoTime() - start);
+                return result;
+            }
+        }
+
+        result = tryHybrid(source.invert());
+        if (result != null) {
+            tierStats.record(DecodeTierStats.Tier.INVERTED, System.nanoTime() - start);
+            return result;
+        }
+
+        tierStats.record(DecodeTierStats.Tier.FAILED, System.nanoTime() - start);
+        throw NotFoundException.getNotFoundInstance();
+    }
+
+    private Result tryHybrid(LuminanceSource source) {
+        try {
+            return reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(source)));
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
     public String scanFromBytes(byte[] imageBytes) throws IOException, NotFoundException {
         logger.debug("Scanning QR code from byte array");
 
@@ -103,16 +195,204 @@ public class QRCodeScanner {
             throw new IllegalArgumentException("Base64 string cannot be null or empty");
         }
 
-        String base64Data = base64Image;
+        int offset = 0;
         if (base64Image.startsWith("data:image")) {
             int commaIndex = base64Image.indexOf(',');
             if (commaIndex != -1) {
-                base64Data = base64Image.substring(commaIndex + 1);
+                offset = commaIndex + 1;
             }
         }
 
-        byte[] imageBytes = Base64.getDecoder().decode(base64Data);
-        return scanFromBytes(imageBytes);
+        // Decode from the string's characters as the image reader asks for bytes: no copy of the payload
+        InputStream decoded = Base64.getDecoder().wrap(new CharSequenceInputStream(base64Image, offset));
+        return scanFromStream(decoded, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Decodes an image straight from a stream, e.g. an HTTP upload, with no separate
+     * read-everything step. ImageIO still caches the bytes it has read in memory so the
+     * reader can seek back, but reading stops as soon as a limit is hit. The stream is
+     * read but not closed.
+     * @param maxBytes   abort once more than this many encoded bytes have been read
+     * @param maxPixels  reject images whose header declares more pixels than this, before
+     *                   any pixel data is decoded
+     * @throws ImageTooLargeException if either limit is exceeded
+     */
+    public String scanFromStream(InputStream in, long maxBytes, long maxPixels) throws IOException, NotFoundException {
+        logger.debug("Scanning QR code from stream");
+
+        if (in == null) {
+            throw new IllegalArgumentException("Input stream cannot be null");
+        }
+
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new BoundedInputStream(in, maxBytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported or empty image stream");
+            }
+            ImageReader imageReader = readers.next();
+            try {
+                imageReader.setInput(input, true, true);
+                long pixels = (long) imageReader.getWidth(0) * imageReader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new ImageTooLargeException("Image has " + pixels + " pixels, limit is " + maxPixels);
+                }
+                return scanFromImage(imageReader.read(0));
+            } finally {
+                imageReader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Raised when an image stream exceeds the byte or pixel limit it was read with.
+     */
+    public static class ImageTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public ImageTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The characters of a Base64 string as bytes, one per char. Non-ASCII ones become
+     * {@code '?'} so the decoder rejects them instead of reading a truncated char.
+     */
+    private static class CharSequenceInputStream extends InputStream {
+        private final CharSequence text;
+        private int position;
+
+        CharSequenceInputStream(CharSequence text, int start) {
+            this.text = text;
+            this.position = start;
+        }
+
+        @Override
+        public int read() {
+            return position < text.length() ? ascii(text.charAt(position++)) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int n = Math.min(len, text.length() - position);
+            if (n <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) ascii(text.charAt(position++));
+            }
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return text.length() - position;
+        }
+
+        private static int ascii(char c) {
+            return c < 0x80 ? c : '?';
+        }
+    }
+
+    private static class BoundedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws ImageTooLargeException {
+            count += n;
+            if (count > limit) {
+                throw new ImageTooLargeException("Image stream exceeds " + limit + " bytes");
+            }
+        }
+    }
+
+    /**
+     * Decodes straight from an 8-bit luminance plane, e.g. a grayscale camera frame,
+     * skipping image decoding and RGB conversion entirely. With no region of interest
+     * the array is handed to ZXing as-is; with one, only that rectangle is read.
+     * @param roi region to search, in frame coordinates, or null for the whole frame
+     */
+    public String scanFromLuminance(byte[] luminance, int width, int height, Rectangle roi)
+            throws NotFoundException {
+        if (luminance == null || luminance.length < width * height) {
+            throw new IllegalArgumentException("Luminance data must hold width * height bytes");
+        }
+        Rectangle region = roi != null ? roi : new Rectangle(0, 0, width, height);
+
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(luminance, width, height,
+                region.x, region.y, region.width, region.height, false);
+        return decodeTiered(source).getText();
+    }
+
+    /**
+     * Same as {@link #scanFromLuminance(byte[], int, int, Rectangle)} for a buffer whose
+     * position marks the first pixel. Direct buffers are read in place.
+     */
+    public String scanFromLuminance(ByteBuffer luminance, int width, int height, Rectangle roi)
+            throws NotFoundException {
+        if (luminance == null) {
+            throw new IllegalArgumentException("Luminance buffer cannot be null");
+        }
+        if (luminance.hasArray() && luminance.arrayOffset() + luminance.position() == 0) {
+            return scanFromLuminance(luminance.array(), width, height, roi);
+        }
+        Rectangle region = roi != null ? roi : new Rectangle(0, 0, width, height);
+
+        ByteBufferLuminanceSource source = new ByteBufferLuminanceSource(luminance, width, height,
+                region.x, region.y, region.width, region.height);
+        return decodeTiered(source).getText();
+    }
+
+    /**
+     * Decodes a YUV420 frame (I420, NV12 or NV21). All of these start with the full
+     * resolution Y plane, which is the only part the decoder needs.
+     */
+    public String scanFromYUV420(byte[] frame, int width, int height, Rectangle roi) throws NotFoundException {
+        if (frame == null || frame.length < width * height * 3 / 2) {
+            throw new IllegalArgumentException("YUV420 frame must hold width * height * 3 / 2 bytes");
+        }
+        return scanFromLuminance(frame, width, height, roi);
+    }
+
+    public String scanFromYUV420(ByteBuffer frame, int width, int height, Rectangle roi) throws NotFoundException {
+        if (frame == null || frame.remaining() < width * height * 3 / 2) {
+            throw new IllegalArgumentException("YUV420 frame must hold width * height * 3 / 2 bytes");
+        }
+        return scanFromLuminance(frame, width, height, roi);
     }
 
     public AuthQRData scanAuthQRCode(String filePath) throws IOException, NotFoundException {
@@ -132,13 +412,7 @@ public class QRCodeScanner {
     public AuthQRData parseAuthQRData(String jsonData) throws JsonSyntaxException {
         logger.debug("Parsing authentication QR data");
 
-        JsonObject json = JsonParser.parseString(jsonData).getAsJsonObject();
-
-        AuthQRData authData = new AuthQRData();
-        authData.token = json.get("token").getAsString();
-        authData.url = json.get("url").getAsString();
-        authData.expirationTime = json.get("exp").getAsLong();
-        authData.type = json.get("type").getAsString();
+        AuthQRData authData = QRPayloadCodec.parseAuth(jsonData);
 
         logger.info("Parsed auth QR code - Type: {}, Expires: {}", authData.type, authData.expirationTime);
         return authData;
@@ -147,13 +421,7 @@ public class QRCodeScanner {
     public PairingQRData parsePairingQRData(String jsonData) throws JsonSyntaxException {
         logger.debug("Parsing pairing QR data");
 
-        JsonObject json = JsonParser.parseString(jsonData).getAsJsonObject();
-
-        PairingQRData pairingData = new PairingQRData();
-        pairingData.code = json.get("code").getAsString();
-        pairingData.deviceId = json.get("device").getAsString();
-        pairingData.url = json.get("url").getAsString();
-        pairingData.type = json.get("type").getAsString();
+        PairingQRData pairingData = QRPayloadCodec.parsePairing(jsonData);
 
         logger.info("Parsed pairing QR code - Device: {}, Type: {}", pairingData.deviceId, pairingData.type);
         return pairingData;
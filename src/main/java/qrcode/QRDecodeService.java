@@ -0,0 +1,129 @@
+package qrcode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent front-end for {@link QRCodeScanner}. ZXing readers are not thread-safe, so
+ * each worker thread owns its own scanner. Requests wait in a bounded queue; when it is
+ * full the returned future fails immediately with {@link RejectedExecutionException},
+ * and a request that is still queued when its timeout fires is never decoded.
+ */
+public class QRDecodeService implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(QRDecodeService.class);
+    private static final int DEFAULT_QUEUE_CAPACITY = 256;
+    private static final long DEFAULT_TIMEOUT_MS = 2000;
+
+    @FunctionalInterface
+    public interface DecodeTask<T> {
+        T decode(QRCodeScanner scanner) throws Exception;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final DecodeTierStats tierStats = new DecodeTierStats();
+    private final ThreadLocal<QRCodeScanner> scanners = ThreadLocal.withInitial(() -> new QRCodeScanner(tierStats));
+    private final long timeoutMs;
+
+    public QRDecodeService() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, DEFAULT_TIMEOUT_MS);
+    }
+
+    public QRDecodeService(int poolSize, int queueCapacity, long timeoutMs) {
+        if (poolSize < 1 || queueCapacity < 1 || timeoutMs <= 0) {
+            throw new IllegalArgumentException("Pool size, queue capacity and timeout must be positive");
+        }
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "qr-decode-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMs = timeoutMs;
+        logger.info("QR decode service started ({} readers, queue {})", poolSize, queueCapacity);
+    }
+
+    public CompletableFuture<String> decode(BufferedImage image) {
+        return submit(scanner -> scanner.scanFromImage(image));
+    }
+
+    public CompletableFuture<String> decode(byte[] imageBytes) {
+        return submit(scanner -> scanner.scanFromBytes(imageBytes));
+    }
+
+    public CompletableFuture<String> decodeFile(String filePath) {
+        return submit(scanner -> scanner.scanFromFile(filePath));
+    }
+
+    /**
+     * Runs an arbitrary decode against a worker's own scanner.
+     */
+    public <T> CompletableFuture<T> submit(DecodeTask<T> task) {
+        return submit(task, null);
+    }
+
+    /**
+     * Like {@link #submit(DecodeTask)}, with a callback for callers that bound their own
+     * in-flight work. The returned future may time out while a worker is still decoding;
+     * {@code onSettled} only runs once no worker is busy with the request any more: when
+     * the task returns, when it is skipped because it timed out in the queue, or when it
+     * is rejected. It does not run for tasks dropped by {@link #close}.
+     */
+    public <T> CompletableFuture<T> submit(DecodeTask<T> task, Runnable onSettled) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    if (future.isDone()) {
+                        return; // timed out or cancelled while queued
+                    }
+                    try {
+                        future.complete(task.decode(scanners.get()));
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                } finally {
+                    settle(onSettled);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            settle(onSettled);
+            return future;
+        }
+        return future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void settle(Runnable onSettled) {
+        if (onSettled != null) {
+            onSettled.run();
+        }
+    }
+
+    /**
+     * Tier statistics aggregated over all worker scanners.
+     */
+    public DecodeTierStats getTierStats() {
+        return tierStats;
+    }
+
+    public int getQueuedRequests() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -10,35 +10,27 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
-import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
 
 public class QRLoginService {
 
-    // Map token → expiration
-    private static final Map<String, Long> tokenStore = new HashMap<>();
     private static final long TOKEN_EXPIRATION_MS = 5 * 60 * 1000; // 5 minutes
+    private static final int MAX_TOKENS = 100_000;
+
+    // Token → expiration, thread-safe et borné (les plus anciens sont évincés)
+    private static final TokenStore tokenStore = new TokenStore(MAX_TOKENS, TOKEN_EXPIRATION_MS);
 
     // Générer token aléatoire
     public static String createToken() {
-        String token = UUID.randomUUID().toString();
-        long expiration = Instant.now().toEpochMilli() + TOKEN_EXPIRATION_MS;
-        tokenStore.put(token, expiration);
-        return token;
+        return tokenStore.issue();
     }
 
-    // Vérifier token côté serveur
+    // Vérifier token côté serveur : consommé atomiquement pour éviter le replay
     public static boolean validateToken(String token) {
-        Long expiration = tokenStore.get(token);
-        if (expiration == null) return false;        // token inconnu
-        if (Instant.now().toEpochMilli() > expiration) {
-            tokenStore.remove(token);               // token expiré
-            return false;
-        }
-        tokenStore.remove(token);                   // supprimer pour éviter replay
-        return true;
+        return tokenStore.consume(token);
+    }
+
+    public static TokenStore getTokenStore() {
+        return tokenStore;
     }
 
     // Générer QR code PNG à partir du token
@@ -0,0 +1,633 @@
+package qrcode;
+
+import com.google.gson.JsonSyntaxException;
+import storage.ObjectPool;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-pass codec for the auth and pairing QR payloads. The JSON writer fills a pooled,
+ * reused char buffer and allocates only the resulting String; the reader walks the
+ * text once, reading the fields it needs straight out of the input without building a
+ * tree. Unknown fields are skipped, so payloads from newer generators still parse.
+ *
+ * <p>The binary form is a compact length-prefixed encoding of the same fields, for places
+ * that store or ship payloads rather than print them.
+ */
+public final class QRPayloadCodec {
+
+    private static final int INITIAL_BUFFER = 256;
+    private static final byte BINARY_AUTH = 'A';
+    private static final byte BINARY_PAIRING = 'P';
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ObjectPool<JsonWriter> writers = new ObjectPool<>(JsonWriter::new);
+
+    private QRPayloadCodec() {
+    }
+
+    // --- JSON ---
+
+    /**
+     * Same layout as the historical {@code String.format} output:
+     * {@code {"token":..,"url":..,"exp":..,"type":..,"session":..}}, but with proper
+     * string escaping.
+     */
+    public static String encodeAuth(String token, String url, long exp, String type, String sessionId) {
+        JsonWriter writer = writers.borrow().begin();
+        writer.field("token", token);
+        writer.field("url", url);
+        writer.field("exp", exp);
+        writer.field("type", type);
+        writer.field("session", sessionId);
+        return finish(writer);
+    }
+
+    public static String encodePairing(String code, String deviceId, String url, String type) {
+        JsonWriter writer = writers.borrow().begin();
+        writer.field("code", code);
+        writer.field("device", deviceId);
+        writer.field("url", url);
+        writer.field("type", type);
+        return finish(writer);
+    }
+
+    private static String finish(JsonWriter writer) {
+        String json = writer.end();
+        writers.release(writer);
+        return json;
+    }
+
+    public static QRCodeScanner.AuthQRData parseAuth(CharSequence json) throws JsonSyntaxException {
+        JsonReader reader = new JsonReader(json);
+        QRCodeScanner.AuthQRData data = new QRCodeScanner.AuthQRData();
+        boolean token = false, url = false, exp = false, type = false;
+
+        reader.beginObject();
+        while (reader.nextField()) {
+            if (reader.keyIs("token")) {
+                data.token = reader.readString();
+                token = true;
+            } else if (reader.keyIs("url")) {
+                data.url = reader.readString();
+                url = true;
+            } else if (reader.keyIs("exp")) {
+                data.expirationTime = reader.readLong();
+                exp = true;
+            } else if (reader.keyIs("type")) {
+                data.type = reader.readString();
+                type = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endDocument();
+
+        require(token, "token");
+        require(url, "url");
+        require(exp, "exp");
+        require(type, "type");
+        return data;
+    }
+
+    public static QRCodeScanner.PairingQRData parsePairing(CharSequence json) throws JsonSyntaxException {
+        JsonReader reader = new JsonReader(json);
+        QRCodeScanner.PairingQRData data = new QRCodeScanner.PairingQRData();
+        boolean code = false, device = false, url = false, type = false;
+
+        reader.beginObject();
+        while (reader.nextField()) {
+            if (reader.keyIs("code")) {
+                data.code = reader.readString();
+                code = true;
+            } else if (reader.keyIs("device")) {
+                data.deviceId = reader.readString();
+                device = true;
+            } else if (reader.keyIs("url")) {
+                data.url = reader.readString();
+                url = true;
+            } else if (reader.keyIs("type")) {
+                data.type = reader.readString();
+                type = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endDocument();
+
+        require(code, "code");
+        require(device, "device");
+        require(url, "url");
+        require(type, "type");
+        return data;
+    }
+
+    public static QRCodeScanner.AuthQRData parseAuth(char[] json, int offset, int length) throws JsonSyntaxException {
+        return parseAuth(CharBuffer.wrap(json, offset, length));
+    }
+
+    public static QRCodeScanner.PairingQRData parsePairing(char[] json, int offset, int length)
+            throws JsonSyntaxException {
+        return parsePairing(CharBuffer.wrap(json, offset, length));
+    }
+
+    public static QRCodeScanner.AuthQRData parseAuth(byte[] utf8, int offset, int length) throws JsonSyntaxException {
+        return parseAuth(asChars(utf8, offset, length));
+    }
+
+    public static QRCodeScanner.PairingQRData parsePairing(byte[] utf8, int offset, int length)
+            throws JsonSyntaxException {
+        return parsePairing(asChars(utf8, offset, length));
+    }
+
+    private static void require(boolean present, String field) {
+        if (!present) {
+            throw new JsonSyntaxException("Missing field '" + field + "'");
+        }
+    }
+
+    /**
+     * Payloads are almost always ASCII, which becomes a compact Latin-1 String with a
+     * plain copy; anything else goes through the UTF-8 decoder.
+     */
+    private static String asChars(byte[] utf8, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (utf8[i] < 0) {
+                return new String(utf8, offset, length, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(utf8, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    // --- Binary ---
+
+    public static byte[] encodeAuthBinary(QRAuthService.QRAuthData data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        out.write(BINARY_AUTH);
+        writeBinaryString(out, data.token);
+        writeBinaryString(out, data.url);
+        writeBinaryLong(out, data.exp);
+        writeBinaryString(out, data.type);
+        writeBinaryString(out, data.sessionId);
+        return out.toByteArray();
+    }
+
+    public static QRAuthService.QRAuthData decodeAuthBinary(byte[] bytes) {
+        ByteBuffer in = binaryInput(bytes, BINARY_AUTH);
+        QRAuthService.QRAuthData data = new QRAuthService.QRAuthData();
+        data.token = readBinaryString(in);
+        data.url = readBinaryString(in);
+        data.exp = readBinaryLong(in);
+        data.type = readBinaryString(in);
+        data.sessionId = readBinaryString(in);
+        return data;
+    }
+
+    public static byte[] encodePairingBinary(QRCodeScanner.PairingQRData data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        out.write(BINARY_PAIRING);
+        writeBinaryString(out, data.code);
+        writeBinaryString(out, data.deviceId);
+        writeBinaryString(out, data.url);
+        writeBinaryString(out, data.type);
+        return out.toByteArray();
+    }
+
+    public static QRCodeScanner.PairingQRData decodePairingBinary(byte[] bytes) {
+        ByteBuffer in = binaryInput(bytes, BINARY_PAIRING);
+        QRCodeScanner.PairingQRData data = new QRCodeScanner.PairingQRData();
+        data.code = readBinaryString(in);
+        data.deviceId = readBinaryString(in);
+        data.url = readBinaryString(in);
+        data.type = readBinaryString(in);
+        return data;
+    }
+
+    private static ByteBuffer binaryInput(byte[] bytes, byte kind) {
+        if (bytes == null || bytes.length == 0 || bytes[0] != kind) {
+            throw new IllegalArgumentException("Not a " + (kind == BINARY_AUTH ? "auth" : "pairing") + " payload");
+        }
+        return ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+    }
+
+    /** Length is written as a varint of length + 1, so 0 stands for null. */
+    private static void writeBinaryString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            out.write(0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        int length = utf8.length + 1;
+        while ((length & ~0x7F) != 0) {
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        out.write(utf8, 0, utf8.length);
+    }
+
+    private static String readBinaryString(ByteBuffer in) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 28) {
+                throw new IllegalArgumentException("Malformed string length");
+            }
+            if (!in.hasRemaining()) {
+                throw new IllegalArgumentException("Truncated payload");
+            }
+            byte b = in.get();
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        if (length == 0) {
+            return null;
+        }
+        if (length - 1 > in.remaining() || length < 0) {
+            throw new IllegalArgumentException("Truncated payload");
+        }
+        String value = new String(in.array(), in.position(), length - 1, StandardCharsets.UTF_8);
+        in.position(in.position() + length - 1);
+        return value;
+    }
+
+    private static long readBinaryLong(ByteBuffer in) {
+        if (in.remaining() < Long.BYTES) {
+            throw new IllegalArgumentException("Truncated payload");
+        }
+        return in.getLong();
+    }
+
+    private static void writeBinaryLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    // --- Internals ---
+
+    private static final class JsonWriter {
+        private char[] buffer = new char[INITIAL_BUFFER];
+        private int length;
+
+        JsonWriter begin() {
+            length = 0;
+            append('{');
+            return this;
+        }
+
+        String end() {
+            append('}');
+            return new String(buffer, 0, length);
+        }
+
+        void field(String name, String value) {
+            name(name);
+            if (value == null) {
+                append("null");
+                return;
+            }
+            append('"');
+            int clean = 0;
+            while (clean < value.length() && !needsEscape(value.charAt(clean))) {
+                clean++;
+            }
+            if (clean == value.length()) {
+                append(value);
+                append('"');
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    append('\\');
+                    append(c);
+                } else if (c < 0x20) {
+                    append("\\u00");
+                    append(HEX[c >> 4]);
+                    append(HEX[c & 0xF]);
+                } else {
+                    append(c);
+                }
+            }
+            append('"');
+        }
+
+        void field(String name, long value) {
+            name(name);
+            ensure(20);
+            if (value == Long.MIN_VALUE) {
+                append(Long.toString(value));
+                return;
+            }
+            if (value < 0) {
+                buffer[length++] = '-';
+                value = -value;
+            }
+            int start = length;
+            do {
+                buffer[length++] = (char) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                char c = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = c;
+            }
+        }
+
+        private static boolean needsEscape(char c) {
+            return c == '"' || c == '\\' || c < 0x20;
+        }
+
+        private void name(String name) {
+            if (length > 1) {
+                append(',');
+            }
+            append('"');
+            append(name);
+            append("\":");
+        }
+
+        private void append(char c) {
+            ensure(1);
+            buffer[length++] = c;
+        }
+
+        private void append(String s) {
+            ensure(s.length());
+            s.getChars(0, s.length(), buffer, length);
+            length += s.length();
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                char[] grown = new char[Math.max(buffer.length * 2, length + extra)];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
+        }
+    }
+
+    private static final class JsonReader {
+        private final CharSequence in;
+        private int pos;
+        private int keyStart;
+        private int keyEnd;
+        private String escapedKey;
+        private boolean first = true;
+
+        JsonReader(CharSequence in) {
+            if (in == null) {
+                throw new JsonSyntaxException("Payload is null");
+            }
+            this.in = in;
+        }
+
+        void beginObject() {
+            skipWhitespace();
+            expect('{');
+        }
+
+        /** Moves to the next field's value, or consumes the closing brace and returns false. */
+        boolean nextField() {
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return false;
+            }
+            if (!first) {
+                expect(',');
+                skipWhitespace();
+            }
+            first = false;
+
+            expect('"');
+            keyStart = pos;
+            escapedKey = null;
+            while (peek() != '"') {
+                if (in.charAt(pos) == '\\') {
+                    pos = keyStart - 1;
+                    escapedKey = readString();
+                    break;
+                }
+                pos++;
+            }
+            if (escapedKey == null) {
+                keyEnd = pos++;
+            }
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            return true;
+        }
+
+        boolean keyIs(String name) {
+            if (escapedKey != null) {
+                return escapedKey.equals(name);
+            }
+            int length = keyEnd - keyStart;
+            if (length != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (in.charAt(keyStart + i) != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void endDocument() {
+            skipWhitespace();
+            if (pos != in.length()) {
+                throw error("Trailing content");
+            }
+        }
+
+        String readString() {
+            if (peek() == 'n') {
+                literal("null");
+                return null;
+            }
+            expect('"');
+            int start = pos;
+            while (true) {
+                char c = peek();
+                if (c == '"') {
+                    String value = in.subSequence(start, pos).toString();
+                    pos++;
+                    return value;
+                }
+                if (c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+
+            StringBuilder value = new StringBuilder(pos - start + 16).append(in, start, pos);
+            while (true) {
+                char c = peek();
+                pos++;
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = peek();
+                pos++;
+                switch (escaped) {
+                    case '"': case '\\': case '/': value.append(escaped); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > in.length()) {
+                            throw error("Truncated unicode escape");
+                        }
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(in.charAt(pos++), 16);
+                            if (digit < 0) {
+                                throw error("Bad unicode escape");
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        value.append((char) code);
+                        break;
+                    default:
+                        throw error("Bad escape");
+                }
+            }
+        }
+
+        /** Also accepts a number in a string, {@code "exp":"1700000000000"}, as Gson's getAsLong does. */
+        long readLong() {
+            if (peek() == '"') {
+                String text = readString();
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    throw error("Bad number");
+                }
+            }
+            int start = pos;
+            boolean negative = peek() == '-';
+            if (negative) {
+                pos++;
+            }
+            long value = 0;
+            int digits = 0;
+            while (pos < in.length() && in.charAt(pos) >= '0' && in.charAt(pos) <= '9') {
+                value = value * 10 + (in.charAt(pos++) - '0');
+                digits++;
+            }
+            if (digits == 0) {
+                throw error("Expected a number");
+            }
+            if (pos < in.length() && (in.charAt(pos) == '.' || in.charAt(pos) == 'e' || in.charAt(pos) == 'E')) {
+                // Not an integer literal: let the JDK parse it, as Gson's getAsLong would
+                skipNumber();
+                try {
+                    return (long) Double.parseDouble(in.subSequence(start, pos).toString());
+                } catch (NumberFormatException e) {
+                    throw error("Bad number");
+                }
+            }
+            if (digits > 18) {
+                try {
+                    return Long.parseLong(in.subSequence(start, pos).toString());
+                } catch (NumberFormatException e) {
+                    throw error("Number out of range");
+                }
+            }
+            return negative ? -value : value;
+        }
+
+        void skipValue() {
+            char c = peek();
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                skipContainer();
+            } else if (c == 't') {
+                literal("true");
+            } else if (c == 'f') {
+                literal("false");
+            } else if (c == 'n') {
+                literal("null");
+            } else {
+                skipNumber();
+            }
+        }
+
+        private void skipContainer() {
+            int depth = 0;
+            do {
+                char c = peek();
+                if (c == '"') {
+                    readString();
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                pos++;
+            } while (depth > 0);
+        }
+
+        private void skipNumber() {
+            int start = pos;
+            while (pos < in.length() && "+-0123456789.eE".indexOf(in.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (pos == start) {
+                throw error("Unexpected character '" + in.charAt(pos) + "'");
+            }
+        }
+
+        private void literal(String word) {
+            for (int i = 0; i < word.length(); i++) {
+                expect(word.charAt(i));
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < in.length()) {
+                char c = in.charAt(pos);
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= in.length()) {
+                throw error("Unexpected end of payload");
+            }
+            return in.charAt(pos);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private JsonSyntaxException error(String message) {
+            return new JsonSyntaxException(message + " at offset " + pos);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package qrcode;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Rectangle;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Continuous QR scanning over a stream of grayscale (or YUV420) camera frames.
+ * <ul>
+ *     <li>Frames whose sampled luminance barely changed since the last processed frame
+ *     are skipped.</li>
+ *     <li>After a decode, the next frames are searched first around the last symbol
+ *     position with a cheap QR-only read, and only then with the full tiered search.</li>
+ *     <li>Only the newest pending frame is kept: a frame that has not been picked up
+ *     before the next one arrives is dropped, so latency stays bounded under load.</li>
+ * </ul>
+ * Frames can be pushed to a background worker with {@link #offer}, or processed
+ * synchronously with {@link #processFrame}. Not safe for concurrent processFrame calls.
+ */
+public class QRStreamScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(QRStreamScanner.class);
+    private static final int SIGNATURE_COLUMNS = 32;
+    private static final int SIGNATURE_ROWS = 24;
+    private static final double DEFAULT_CHANGE_THRESHOLD = 2.0;
+    private static final int MAX_CONSECUTIVE_SKIPS = 15;
+    private static final double TRACKING_MARGIN = 0.5;
+
+    public static class Frame {
+        public final byte[] luminance;
+        public final int width;
+        public final int height;
+        public final long timestampNanos;
+
+        public Frame(byte[] luminance, int width, int height, long timestampNanos) {
+            if (luminance == null || luminance.length < width * height) {
+                throw new IllegalArgumentException("Frame must hold width * height luminance bytes");
+            }
+            this.luminance = luminance;
+            this.width = width;
+            this.height = height;
+            this.timestampNanos = timestampNanos;
+        }
+    }
+
+    public static class StreamDecode {
+        public final String text;
+        public final long frameTimestampNanos;
+        public final boolean tracked;
+
+        StreamDecode(String text, long frameTimestampNanos, boolean tracked) {
+            this.text = text;
+            this.frameTimestampNanos = frameTimestampNanos;
+            this.tracked = tracked;
+        }
+    }
+
+    private final QRCodeScanner scanner;
+    private final QRCodeReader trackingReader = new QRCodeReader();
+    private final double changeThreshold;
+    private final AtomicReference<Frame> pending = new AtomicReference<>();
+
+    private final LongAdder framesOffered = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private final LongAdder framesSkipped = new LongAdder();
+    private final LongAdder framesDecoded = new LongAdder();
+    private final LongAdder trackedDecodes = new LongAdder();
+
+    private int[] lastSignature;
+    private int consecutiveSkips;
+    private Rectangle trackedRegion;
+    private String lastText;
+
+    private volatile Thread worker;
+    private volatile Consumer<StreamDecode> listener;
+
+    public QRStreamScanner() {
+        this(new QRCodeScanner(), DEFAULT_CHANGE_THRESHOLD);
+    }
+
+    /**
+     * @param changeThreshold mean absolute luminance difference (0-255) over the sampled
+     *                        grid below which a frame counts as unchanged
+     */
+    public QRStreamScanner(QRCodeScanner scanner, double changeThreshold) {
+        this.scanner = scanner;
+        this.changeThreshold = changeThreshold;
+    }
+
+    /**
+     * Starts the background worker. The listener is called on the worker thread each
+     * time a symbol with different content from the previous one is decoded.
+     */
+    public synchronized void start(Consumer<StreamDecode> listener) {
+        if (worker != null) {
+            return;
+        }
+        this.listener = listener;
+        Thread thread = new Thread(this::runWorker, "qr-stream-scanner");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        Thread thread = worker;
+        worker = null;
+        if (thread != null) {
+            thread.interrupt();
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Hands a frame to the worker without blocking. The scanner owns the frame's buffer
+     * until it is processed or dropped.
+     * @return the previously pending frame if it was dropped unprocessed, so its buffer
+     *         can be recycled; otherwise null
+     */
+    public Frame offer(Frame frame) {
+        framesOffered.increment();
+        Frame dropped = pending.getAndSet(frame);
+        if (dropped != null) {
+            framesDropped.increment();
+        }
+        Thread thread = worker;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        return dropped;
+    }
+
+    private void runWorker() {
+        while (worker == Thread.currentThread()) {
+            Frame frame = pending.getAndSet(null);
+            if (frame == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                StreamDecode decode = processFrame(frame);
+                Consumer<StreamDecode> current = listener;
+                if (decode != null && current != null) {
+                    current.accept(decode);
+                }
+            } catch (Exception e) {
+                logger.warn("Stream frame processing failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Processes one frame synchronously.
+     * @return the decode if this frame yielded a symbol different from the last one,
+     *         otherwise null (skipped, nothing found, or same content)
+     */
+    public StreamDecode processFrame(Frame frame) {
+        int[] signature = signature(frame);
+        if (lastSignature != null && consecutiveSkips < MAX_CONSECUTIVE_SKIPS
+                && difference(signature, lastSignature) < changeThreshold) {
+            consecutiveSkips++;
+            framesSkipped.increment();
+            return null;
+        }
+        lastSignature = signature;
+        consecutiveSkips = 0;
+
+        boolean tracked = false;
+        Result result = null;
+        if (trackedRegion != null) {
+            result = decodeTracked(frame, trackedRegion);
+            tracked = result != null;
+        }
+        if (result == null) {
+            try {
+                result = scanner.decodeTiered(new PlanarYUVLuminanceSource(frame.luminance,
+                        frame.width, frame.height, 0, 0, frame.width, frame.height, false));
+            } catch (ReaderException e) {
+                trackedRegion = null;
+                return null;
+            }
+        }
+
+        framesDecoded.increment();
+        if (tracked) {
+            trackedDecodes.increment();
+        } else {
+            trackedRegion = regionAround(result.getResultPoints(), 0, 0, frame.width, frame.height);
+        }
+
+        if (result.getText().equals(lastText)) {
+            return null;
+        }
+        lastText = result.getText();
+        return new StreamDecode(lastText, frame.timestampNanos, tracked);
+    }
+
+    private Result decodeTracked(Frame frame, Rectangle region) {
+        try {
+            PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(frame.luminance,
+                    frame.width, frame.height, region.x, region.y, region.width, region.height, false);
+            Result result = trackingReader.decode(new BinaryBitmap(new HybridBinarizer(source)));
+            trackedRegion = regionAround(result.getResultPoints(), region.x, region.y, frame.width, frame.height);
+            return result;
+        } catch (ReaderException e) {
+            return null;
+        } finally {
+            trackingReader.reset();
+        }
+    }
+
+    private static Rectangle regionAround(ResultPoint[] points, int offsetX, int offsetY, int width, int height) {
+        if (points == null || points.length < 2) {
+            return null;
+        }
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -1, maxY = -1;
+        for (ResultPoint point : points) {
+            if (point == null) {
+                continue;
+            }
+            minX = Math.min(minX, point.getX());
+            minY = Math.min(minY, point.getY());
+            maxX = Math.max(maxX, point.getX());
+            maxY = Math.max(maxY, point.getY());
+        }
+        // Finder pattern centres sit inside the symbol, so pad generously on every side
+        int marginX = (int) ((maxX - minX) * TRACKING_MARGIN) + 8;
+        int marginY = (int) ((maxY - minY) * TRACKING_MARGIN) + 8;
+        int left = Math.max(0, offsetX + (int) minX - marginX);
+        int top = Math.max(0, offsetY + (int) minY - marginY);
+        int right = Math.min(width, offsetX + (int) maxX + marginX);
+        int bottom = Math.min(height, offsetY + (int) maxY + marginY);
+        return right > left && bottom > top ? new Rectangle(left, top, right - left, bottom - top) : null;
+    }
+
+    private static int[] signature(Frame frame) {
+        int[] signature = new int[SIGNATURE_COLUMNS * SIGNATURE_ROWS];
+        int stepX = Math.max(1, frame.width / SIGNATURE_COLUMNS);
+        int stepY = Math.max(1, frame.height / SIGNATURE_ROWS);
+        int i = 0;
+        for (int row = 0; row < SIGNATURE_ROWS; row++) {
+            int y = Math.min(frame.height - 1, row * stepY + stepY / 2);
+            for (int column = 0; column < SIGNATURE_COLUMNS; column++) {
+                int x = Math.min(frame.width - 1, column * stepX + stepX / 2);
+                signature[i++] = frame.luminance[y * frame.width + x] & 0xFF;
+            }
+        }
+        return signature;
+    }
+
+    private static double difference(int[] a, int[] b) {
+        long total = 0;
+        for (int i = 0; i < a.length; i++) {
+            total += Math.abs(a[i] - b[i]);
+        }
+        return (double) total / a.length;
+    }
+
+    public long getFramesOffered() {
+        return framesOffered.sum();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.sum();
+    }
+
+    public long getFramesSkipped() {
+        return framesSkipped.sum();
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded.sum();
+    }
+
+    public long getTrackedDecodes() {
+        return trackedDecodes.sum();
+    }
+}
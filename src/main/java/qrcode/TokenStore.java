@@ -0,0 +1,83 @@
+package qrcode;
+
+import storage.SessionRepository;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Store of single-use tokens with a fixed time-to-live and a bounded size, backed by a
+ * {@link SessionRepository}.
+ * <ul>
+ *     <li>{@link #consume} removes the token atomically, so of any number of concurrent
+ *     validations of the same token exactly one succeeds.</li>
+ *     <li>Expired tokens are dropped by the repository's background sweep.</li>
+ *     <li>At capacity, the token closest to expiry (the oldest, since all share one TTL)
+ *     is evicted, so memory stays bounded even if tokens are issued and never
+ *     validated.</li>
+ * </ul>
+ */
+public class TokenStore implements AutoCloseable {
+
+    private final SessionRepository<Boolean> tokens;
+    private final LongAdder consumed = new LongAdder();
+
+    public TokenStore(int capacity, long ttlMillis) {
+        this.tokens = new SessionRepository<>("tokens", capacity, ttlMillis);
+    }
+
+    /**
+     * Creates and stores a new random token.
+     */
+    public String issue() {
+        String token = UUID.randomUUID().toString();
+        put(token);
+        return token;
+    }
+
+    public void put(String token) {
+        tokens.put(token, Boolean.TRUE);
+    }
+
+    /**
+     * Validates and removes the token in one step.
+     * @return true if the token was present and not expired; a second call with the same
+     *         token, concurrent or not, returns false
+     */
+    public boolean consume(String token) {
+        if (tokens.remove(token) == null) {
+            return false;
+        }
+        consumed.increment();
+        return true;
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    public int getCapacity() {
+        return tokens.getCapacity();
+    }
+
+    public long getIssued() {
+        return tokens.getPuts();
+    }
+
+    public long getConsumed() {
+        return consumed.sum();
+    }
+
+    public long getExpired() {
+        return tokens.getExpired();
+    }
+
+    public long getEvicted() {
+        return tokens.getEvicted();
+    }
+
+    @Override
+    public void close() {
+        tokens.close();
+    }
+}
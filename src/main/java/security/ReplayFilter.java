@@ -0,0 +1,80 @@
+package security;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers which single-use tokens have already been consumed, in fixed memory.
+ *
+ * <p>Consumed tokens go into a {@link TimeSlicedBloomFilter} whose window is the token
+ * TTL: once a token has expired it would be rejected anyway, so it can be forgotten.
+ * Memory depends only on the expected number of consumptions per TTL, not on how many
+ * tokens are outstanding.
+ *
+ * <p>A fresh token is wrongly reported as consumed with the configured probability
+ * ({@link #getFalsePositiveRate()} reports the live value). A replay within the TTL is
+ * never accepted.
+ */
+public class ReplayFilter {
+
+    private static final int DEFAULT_SLICES_PER_TTL = 4;
+
+    private final TimeSlicedBloomFilter consumed;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param ttlMillis           how long a consumed token must stay remembered (the token TTL)
+     * @param expectedPerTtl      expected consumptions within one TTL window
+     * @param falsePositiveRate   target probability that a fresh token is wrongly rejected
+     */
+    public ReplayFilter(long ttlMillis, long expectedPerTtl, double falsePositiveRate) {
+        this(ttlMillis, expectedPerTtl, falsePositiveRate, DEFAULT_SLICES_PER_TTL, System::currentTimeMillis);
+    }
+
+    public ReplayFilter(long ttlMillis, long expectedPerTtl, double falsePositiveRate,
+                        int slicesPerTtl, LongSupplier clock) {
+        this.consumed = new TimeSlicedBloomFilter(ttlMillis, expectedPerTtl, falsePositiveRate, slicesPerTtl, clock);
+    }
+
+    /**
+     * Records the token as consumed.
+     * @return true on the first call for this token, false if it was (probably) consumed
+     *         before; concurrent calls with the same token return true at most once
+     */
+    public boolean markConsumed(String token) {
+        if (consumed.addIfAbsent(token)) {
+            accepted.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Whether the token has (probably) been consumed, without recording it.
+     */
+    public boolean isConsumed(String token) {
+        return consumed.mightContain(token);
+    }
+
+    public double getFalsePositiveRate() {
+        return consumed.getFalsePositiveRate();
+    }
+
+    public long getMemoryBytes() {
+        return consumed.getMemoryBytes();
+    }
+
+    public int getHashFunctions() {
+        return consumed.getHashFunctions();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
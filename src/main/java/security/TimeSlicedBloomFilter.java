@@ -0,0 +1,207 @@
+package security;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bloom filter whose entries are forgotten after a fixed window, in fixed memory.
+ *
+ * <p>Entries go into a ring of Bloom filters, one per time slice; an entry stays visible
+ * for at least the window. Each time the ring advances, the oldest slice is cleared and
+ * reused, so memory depends only on the expected number of adds per window.
+ *
+ * <p>{@link #mightContain} never misses an entry added within the window. It can report
+ * an entry that was never added; the probability is set at construction, split across
+ * the slices that are checked, and {@link #getFalsePositiveRate()} reports the current
+ * value from the actual fill.
+ */
+public class TimeSlicedBloomFilter {
+
+    private static final int DEFAULT_SLICES_PER_WINDOW = 4;
+    private static final int LOCK_STRIPES = 64;
+
+    private static class Slice {
+        final AtomicLongArray bits;
+        final LongAdder count = new LongAdder();
+        volatile long epoch = Long.MIN_VALUE;
+
+        Slice(int words) {
+            bits = new AtomicLongArray(words);
+        }
+
+        boolean mightContain(long h1, long h2, int hashes, long bitCount) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(long h1, long h2, int hashes, long bitCount) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                long mask = 1L << bit;
+                bits.getAndAccumulate((int) (bit >>> 6), mask, (current, m) -> current | m);
+            }
+            count.increment();
+        }
+
+        void clear(long newEpoch) {
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, 0);
+            }
+            count.reset();
+            epoch = newEpoch;
+        }
+    }
+
+    private final Slice[] slices;
+    private final long sliceMillis;
+    private final int hashes;
+    private final long bitsPerSlice;
+    private final LongSupplier clock;
+    private final long seed1;
+    private final long seed2;
+    private final Object[] stripes = new Object[LOCK_STRIPES];
+
+    /**
+     * @param windowMillis        how long an entry must stay visible
+     * @param expectedPerWindow   expected adds within one window
+     * @param falsePositiveRate   target probability that an entry never added is reported
+     */
+    public TimeSlicedBloomFilter(long windowMillis, long expectedPerWindow, double falsePositiveRate) {
+        this(windowMillis, expectedPerWindow, falsePositiveRate, DEFAULT_SLICES_PER_WINDOW, System::currentTimeMillis);
+    }
+
+    public TimeSlicedBloomFilter(long windowMillis, long expectedPerWindow, double falsePositiveRate,
+                                 int slicesPerWindow, LongSupplier clock) {
+        if (windowMillis <= 0 || expectedPerWindow <= 0 || slicesPerWindow < 1
+                || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Window, expected count and slices must be positive, rate in (0, 1)");
+        }
+        this.sliceMillis = Math.max(1, (windowMillis + slicesPerWindow - 1) / slicesPerWindow);
+        // An entry added at the end of a slice must survive a full window after it
+        int sliceCount = slicesPerWindow + 1;
+
+        // Each lookup checks every slice, so split the target rate between them
+        double perSliceRate = falsePositiveRate / sliceCount;
+        double perSliceExpected = Math.max(1.0, (double) expectedPerWindow / slicesPerWindow);
+        long bits = (long) Math.ceil(-perSliceExpected * Math.log(perSliceRate) / (Math.log(2) * Math.log(2)));
+        this.bitsPerSlice = Math.max(64, (bits + 63) / 64 * 64);
+        if (bitsPerSlice / 64 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filter too large for the requested rate and volume");
+        }
+        this.hashes = Math.max(1, (int) Math.round((double) bitsPerSlice / perSliceExpected * Math.log(2)));
+
+        this.slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new Slice((int) (bitsPerSlice / 64));
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        SecureRandom random = new SecureRandom();
+        this.seed1 = random.nextLong();
+        this.seed2 = random.nextLong();
+        this.clock = clock;
+    }
+
+    public void add(String key) {
+        long epoch = clock.getAsLong() / sliceMillis;
+        Slice current = currentSlice(epoch);
+        current.add(hash(key, seed1), hash(key, seed2) | 1, hashes, bitsPerSlice);
+    }
+
+    /**
+     * @return false if the key was definitely not added within the window
+     */
+    public boolean mightContain(String key) {
+        long epoch = clock.getAsLong() / sliceMillis;
+        currentSlice(epoch);
+        return mightContain(hash(key, seed1), hash(key, seed2) | 1, epoch);
+    }
+
+    /**
+     * Adds the key unless it is (probably) already present. Concurrent calls with the
+     * same key return true at most once.
+     * @return true if the key was added, false if it was already there
+     */
+    public boolean addIfAbsent(String key) {
+        long epoch = clock.getAsLong() / sliceMillis;
+        Slice current = currentSlice(epoch);
+        long h1 = hash(key, seed1);
+        long h2 = hash(key, seed2) | 1;
+
+        synchronized (stripes[(int) (h1 >>> 58)]) {
+            if (mightContain(h1, h2, epoch)) {
+                return false;
+            }
+            current.add(h1, h2, hashes, bitsPerSlice);
+        }
+        return true;
+    }
+
+    private boolean mightContain(long h1, long h2, long epoch) {
+        for (Slice slice : slices) {
+            if (slice.epoch > epoch - slices.length && slice.mightContain(h1, h2, hashes, bitsPerSlice)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Slice currentSlice(long epoch) {
+        Slice slice = slices[(int) Math.floorMod(epoch, (long) slices.length)];
+        if (slice.epoch != epoch) {
+            synchronized (slice) {
+                if (slice.epoch != epoch) {
+                    slice.clear(epoch);
+                }
+            }
+        }
+        return slice;
+    }
+
+    /** FNV-1a over the chars, finished with a 64-bit avalanche mix; seeded per instance. */
+    private static long hash(String token, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < token.length(); i++) {
+            h ^= token.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Probability that a key never added is reported present right now, from each live
+     * slice's actual fill.
+     */
+    public double getFalsePositiveRate() {
+        long epoch = clock.getAsLong() / sliceMillis;
+        double passAll = 1.0;
+        for (Slice slice : slices) {
+            if (slice.epoch > epoch - slices.length) {
+                double fill = 1 - Math.exp(-(double) hashes * slice.count.sum() / bitsPerSlice);
+                passAll *= 1 - Math.pow(fill, hashes);
+            }
+        }
+        return 1 - passAll;
+    }
+
+    public long getMemoryBytes() {
+        return slices.length * bitsPerSlice / 8;
+    }
+
+    public int getHashFunctions() {
+        return hashes;
+    }
+}
@@ -1,4 +1,238 @@
 package security;
 
+import storage.ObjectPool;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Issues and verifies stateless HMAC-SHA256 tokens carrying a session id, a purpose and
+ * an expiry. Verification needs only the signing key, so any server holding the keys can
+ * check a token without a shared token store.
+ *
+ * <p>Format: {@code <keyId>.<base64url(body || tag)>}, where body is
+ * {@code version(1) | expiresAt epoch seconds(4) | purpose length(1) | purpose | sessionId}
+ * and tag is the HMAC of {@code keyId '.' body}. A login token is about 110 characters,
+ * against about 175 for the equivalent HS256 JWT.
+ *
+ * <p>Keys rotate by id: {@link #rotateKey} makes a new key the signing key while older
+ * keys keep verifying until {@link #retireKey} drops them. Each key keeps a small pool of
+ * initialised {@link Mac}s, shared by all threads.
+ */
 public class TokenService {
+
+    private static final byte VERSION = 1;
+    private static final int TAG_LENGTH = 32;
+    private static final int HEADER_LENGTH = 6;
+    private static final Pattern KEY_ID = Pattern.compile("[A-Za-z0-9_-]{1,16}");
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+
+    public static class Claims {
+        public final String sessionId;
+        public final String purpose;
+        public final long expiresAt;
+        public final String keyId;
+
+        Claims(String sessionId, String purpose, long expiresAt, String keyId) {
+            this.sessionId = sessionId;
+            this.purpose = purpose;
+            this.expiresAt = expiresAt;
+            this.keyId = keyId;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Claims{session='%s', purpose='%s', expiresAt=%d, kid='%s'}",
+                    sessionId, purpose, expiresAt, keyId);
+        }
+    }
+
+    private static class SigningKey {
+        final String id;
+        final byte[] idBytes;
+        final ObjectPool<Mac> macs;
+
+        SigningKey(String id, byte[] secret) {
+            this.id = id;
+            this.idBytes = (id + ".").getBytes(StandardCharsets.US_ASCII);
+            SecretKeySpec spec = new SecretKeySpec(secret.clone(), "HmacSHA256");
+            this.macs = new ObjectPool<>(() -> {
+                try {
+                    Mac mac = Mac.getInstance("HmacSHA256");
+                    mac.init(spec);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("HmacSHA256 unavailable", e);
+                }
+            });
+        }
+
+        void sign(byte[] body, int length, byte[] out, int offset) {
+            Mac mac = macs.borrow();
+            mac.update(idBytes);
+            mac.update(body, 0, length);
+            try {
+                mac.doFinal(out, offset);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Could not compute token tag", e);
+            }
+            macs.release(mac); // doFinal leaves it reset for the next tag
+        }
+    }
+
+    private final Map<String, SigningKey> keys = new ConcurrentHashMap<>();
+    private final ObjectPool<byte[]> tags = new ObjectPool<>(() -> new byte[TAG_LENGTH]);
+    private volatile SigningKey activeKey;
+
+    /**
+     * Creates a service with a freshly generated random key. Tokens will not verify on
+     * other instances or after a restart; pass shared keys for that.
+     */
+    public TokenService() {
+        this("k1", randomSecret());
+    }
+
+    public TokenService(String keyId, byte[] secret) {
+        addActiveKey(keyId, secret);
+    }
+
+    public static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    /**
+     * Adds a key and makes it the one new tokens are signed with. Tokens signed with
+     * earlier keys still verify.
+     */
+    public synchronized void rotateKey(String keyId, byte[] secret) {
+        addActiveKey(keyId, secret);
+    }
+
+    private void addActiveKey(String keyId, byte[] secret) {
+        if (keyId == null || !KEY_ID.matcher(keyId).matches()) {
+            throw new IllegalArgumentException("Key id must be 1-16 characters of [A-Za-z0-9_-]");
+        }
+        if (secret == null || secret.length < 32) {
+            throw new IllegalArgumentException("HMAC secret must be at least 32 bytes");
+        }
+        if (keys.containsKey(keyId)) {
+            throw new IllegalArgumentException("Key id already in use: " + keyId);
+        }
+        SigningKey key = new SigningKey(keyId, secret);
+        keys.put(keyId, key);
+        activeKey = key;
+    }
+
+    /**
+     * Stops accepting tokens signed with the given key. The active key cannot be retired.
+     */
+    public synchronized void retireKey(String keyId) {
+        if (activeKey.id.equals(keyId)) {
+            throw new IllegalArgumentException("Cannot retire the active key: " + keyId);
+        }
+        keys.remove(keyId);
+    }
+
+    public String getActiveKeyId() {
+        return activeKey.id;
+    }
+
+    public String issue(String sessionId, String purpose, long ttlMillis) {
+        if (sessionId == null || purpose == null || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Session id, purpose and a positive TTL are required");
+        }
+        byte[] purposeBytes = purpose.getBytes(StandardCharsets.UTF_8);
+        byte[] sessionBytes = sessionId.getBytes(StandardCharsets.UTF_8);
+        if (purposeBytes.length > 255) {
+            throw new IllegalArgumentException("Purpose too long");
+        }
+
+        long expiresAtSeconds = (System.currentTimeMillis() + ttlMillis + 999) / 1000;
+        int bodyLength = HEADER_LENGTH + purposeBytes.length + sessionBytes.length;
+        byte[] raw = new byte[bodyLength + TAG_LENGTH];
+        raw[0] = VERSION;
+        raw[1] = (byte) (expiresAtSeconds >>> 24);
+        raw[2] = (byte) (expiresAtSeconds >>> 16);
+        raw[3] = (byte) (expiresAtSeconds >>> 8);
+        raw[4] = (byte) expiresAtSeconds;
+        raw[5] = (byte) purposeBytes.length;
+        System.arraycopy(purposeBytes, 0, raw, HEADER_LENGTH, purposeBytes.length);
+        System.arraycopy(sessionBytes, 0, raw, HEADER_LENGTH + purposeBytes.length, sessionBytes.length);
+
+        SigningKey key = activeKey;
+        key.sign(raw, bodyLength, raw, bodyLength);
+        return key.id + "." + encoder.encodeToString(raw);
+    }
+
+    /**
+     * Checks signature and expiry.
+     * @return the token's claims, or null if it is malformed, signed with an unknown or
+     *         retired key, tampered with, or expired
+     */
+    public Claims verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot > 16) {
+            return null;
+        }
+        SigningKey key = keys.get(token.substring(0, dot));
+        if (key == null) {
+            return null;
+        }
+
+        byte[] raw;
+        try {
+            raw = decoder.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int bodyLength = raw.length - TAG_LENGTH;
+        if (bodyLength < HEADER_LENGTH || raw[0] != VERSION || HEADER_LENGTH + (raw[5] & 0xFF) > bodyLength) {
+            return null;
+        }
+
+        byte[] expected = tags.borrow();
+        key.sign(raw, bodyLength, expected, 0);
+        int diff = 0;
+        for (int i = 0; i < TAG_LENGTH; i++) {
+            diff |= expected[i] ^ raw[bodyLength + i];
+        }
+        tags.release(expected);
+        if (diff != 0) {
+            return null;
+        }
+
+        long expiresAt = (((raw[1] & 0xFFL) << 24) | ((raw[2] & 0xFFL) << 16)
+                | ((raw[3] & 0xFFL) << 8) | (raw[4] & 0xFFL)) * 1000;
+        if (System.currentTimeMillis() > expiresAt) {
+            return null;
+        }
+
+        int purposeLength = raw[5] & 0xFF;
+        String purpose = new String(raw, HEADER_LENGTH, purposeLength, StandardCharsets.UTF_8);
+        String sessionId = new String(raw, HEADER_LENGTH + purposeLength,
+                bodyLength - HEADER_LENGTH - purposeLength, StandardCharsets.UTF_8);
+        return new Claims(sessionId, purpose, expiresAt, key.id);
+    }
+
+    /**
+     * Like {@link #verify(String)}, but also requires the token to have been issued for
+     * the given purpose.
+     */
+    public Claims verify(String token, String purpose) {
+        Claims claims = verify(token);
+        return claims != null && claims.purpose.equals(purpose) ? claims : null;
+    }
 }
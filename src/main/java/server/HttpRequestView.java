@@ -0,0 +1,412 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable view of one HTTP/1.x request held in a byte buffer.
+ *
+ * <p>{@link #parse} records offsets into the buffer instead of building strings or
+ * maps, and decodes query and form parameters ({@code %XX} and {@code +}) in place,
+ * so parsing allocates nothing. Lookups compare bytes; a {@code String} is only made
+ * when a caller asks for a value. Parameters from a POST body come after those of the
+ * query, and the last one with a given name wins.
+ *
+ * <p>The view is valid until the buffer is reused; one view serves one thread at a time.
+ */
+public final class HttpRequestView {
+
+    public static final int MAX_HEADERS = 64;
+    public static final int MAX_PARAMS = 32;
+
+    /** The request does not fit in the buffer. */
+    public static final class RequestTooLarge extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public RequestTooLarge() {
+            super("Request too large", null, false, false);
+        }
+    }
+
+    /**
+     * The request has a {@code Transfer-Encoding}. Bodies are only framed by
+     * {@code Content-Length}; reading past a chunked body as the next request would let
+     * one request be smuggled inside another.
+     */
+    public static final class UnsupportedTransferEncoding extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedTransferEncoding() {
+            super("Transfer-Encoding not supported");
+        }
+    }
+
+    private ByteBuffer buffer;
+    private int methodStart;
+    private int methodEnd;
+    private int pathStart;
+    private int pathEnd;
+    private int bodyStart;
+    private int bodyEnd;
+    private boolean keepAlive;
+    private final int[] headers = new int[4 * MAX_HEADERS]; // name start/end, value start/end
+    private int headerCount;
+    private final int[] params = new int[4 * MAX_PARAMS];
+    private int paramCount;
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Parses the request starting at the buffer's position and, once it is complete,
+     * moves the position past it.
+     * @return false, with the position unchanged, if the request is not complete yet
+     * @throws IllegalArgumentException if it is malformed, or has more than one
+     *         {@code Content-Length}
+     * @throws UnsupportedTransferEncoding if it has a {@code Transfer-Encoding}
+     * @throws RequestTooLarge if it cannot fit in the buffer
+     */
+    public boolean parse(ByteBuffer in) {
+        int start = in.position();
+        int limit = in.limit();
+        int lineStart = start;
+        // Empty lines before a request line are allowed (RFC 9112, 2.2)
+        while (lineStart < limit && (in.get(lineStart) == '\r' || in.get(lineStart) == '\n')) {
+            lineStart++;
+        }
+        int lineEnd = indexOf(in, lineStart, limit, '\n');
+        if (lineEnd < 0) {
+            return false;
+        }
+        int requestLineStart = lineStart;
+        int requestLineEnd = trimCr(in, lineStart, lineEnd);
+
+        headerCount = 0;
+        int contentLength = -1;
+        boolean close = false;
+        boolean keepAliveHeader = false;
+        lineStart = lineEnd + 1;
+        while (true) {
+            lineEnd = indexOf(in, lineStart, limit, '\n');
+            if (lineEnd < 0) {
+                return false;
+            }
+            int nameStart = lineStart;
+            int end = trimCr(in, lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+            if (end == nameStart) {
+                break; // empty line: end of the head
+            }
+            int colon = indexOf(in, nameStart, end, ':');
+            if (colon <= nameStart) {
+                throw new IllegalArgumentException("Malformed header");
+            }
+            if (headerCount == MAX_HEADERS) {
+                throw new IllegalArgumentException("Too many headers");
+            }
+            int valueStart = colon + 1;
+            int valueEnd = end;
+            while (valueStart < valueEnd && isWhitespace(in.get(valueStart))) {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && isWhitespace(in.get(valueEnd - 1))) {
+                valueEnd--;
+            }
+            int h = 4 * headerCount++;
+            headers[h] = nameStart;
+            headers[h + 1] = colon;
+            headers[h + 2] = valueStart;
+            headers[h + 3] = valueEnd;
+            if (equalsIgnoreCase(in, nameStart, colon, "content-length")) {
+                if (contentLength >= 0) {
+                    throw new IllegalArgumentException("Duplicate Content-Length");
+                }
+                contentLength = parseLength(in, valueStart, valueEnd);
+            } else if (equalsIgnoreCase(in, nameStart, colon, "transfer-encoding")) {
+                throw new UnsupportedTransferEncoding();
+            } else if (equalsIgnoreCase(in, nameStart, colon, "connection")) {
+                close |= containsIgnoreCase(in, valueStart, valueEnd, "close");
+                keepAliveHeader |= containsIgnoreCase(in, valueStart, valueEnd, "keep-alive");
+            }
+        }
+        if (contentLength < 0) {
+            contentLength = 0;
+        }
+        if (lineStart - start + contentLength > in.capacity()) {
+            throw new RequestTooLarge();
+        }
+        if (limit - lineStart < contentLength) {
+            return false;
+        }
+
+        int firstSpace = indexOf(in, requestLineStart, requestLineEnd, ' ');
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(in, firstSpace + 1, requestLineEnd, ' ');
+        if (firstSpace <= requestLineStart || secondSpace <= firstSpace + 1) {
+            throw new IllegalArgumentException("Invalid request line");
+        }
+        buffer = in;
+        methodStart = requestLineStart;
+        methodEnd = firstSpace;
+        pathStart = firstSpace + 1;
+        int question = indexOf(in, pathStart, secondSpace, '?');
+        pathEnd = question < 0 ? secondSpace : question;
+        bodyStart = lineStart;
+        bodyEnd = lineStart + contentLength;
+        boolean http11 = equalsIgnoreCase(in, secondSpace + 1, requestLineEnd, "HTTP/1.1");
+        keepAlive = !close && (http11 || keepAliveHeader);
+
+        paramCount = 0;
+        if (question >= 0) {
+            parsePairs(question + 1, secondSpace);
+        }
+        if (contentLength > 0 && methodIs("POST")) {
+            parsePairs(bodyStart, bodyEnd);
+        }
+        in.position(bodyEnd);
+        return true;
+    }
+
+    /**
+     * Blocking read of one request from the stream into {@code buffer}, which must be
+     * backed by an array; whatever it held before is discarded.
+     * @return false if the stream ended before a complete request
+     * @throws RequestTooLarge if the request does not fit in the buffer
+     */
+    public boolean readFrom(InputStream stream, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = stream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (read < 0) {
+                return false;
+            }
+            buffer.position(buffer.position() + read).flip();
+            if (parse(buffer)) {
+                return true;
+            }
+            buffer.position(buffer.limit()).limit(buffer.capacity());
+        }
+        throw new RequestTooLarge();
+    }
+
+    // --- Request line, headers and body ---
+
+    public boolean methodIs(String method) {
+        return equalsIgnoreCase(buffer, methodStart, methodEnd, method);
+    }
+
+    public String method() {
+        return string(methodStart, methodEnd, StandardCharsets.US_ASCII);
+    }
+
+    /** The path without the query string, still percent-encoded. */
+    public String path() {
+        return string(pathStart, pathEnd, StandardCharsets.ISO_8859_1);
+    }
+
+    public boolean pathEquals(String path) {
+        return equals(buffer, pathStart, pathEnd, path);
+    }
+
+    public boolean pathStartsWith(String prefix) {
+        return pathEnd - pathStart >= prefix.length()
+                && equals(buffer, pathStart, pathStart + prefix.length(), prefix);
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /** @param name compared ignoring case */
+    public String header(String name) {
+        for (int h = 0; h < 4 * headerCount; h += 4) {
+            if (equalsIgnoreCase(buffer, headers[h], headers[h + 1], name)) {
+                return string(headers[h + 2], headers[h + 3], StandardCharsets.ISO_8859_1);
+            }
+        }
+        return null;
+    }
+
+    public int bodyLength() {
+        return bodyEnd - bodyStart;
+    }
+
+    /** The body as UTF-8; form bodies are already decoded in place, so use {@link #param}. */
+    public String body() {
+        return string(bodyStart, bodyEnd, StandardCharsets.UTF_8);
+    }
+
+    // --- Parameters ---
+
+    public int paramCount() {
+        return paramCount;
+    }
+
+    public boolean hasParam(String name) {
+        return findParam(name) >= 0;
+    }
+
+    /** @return the decoded value of the last parameter with this name, or null */
+    public String param(String name) {
+        int p = findParam(name);
+        return p < 0 ? null : string(params[p + 2], params[p + 3], StandardCharsets.UTF_8);
+    }
+
+    public String param(String name, String defaultValue) {
+        String value = param(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /** Compares a parameter's decoded value with {@code value} without making a string. */
+    public boolean paramEquals(String name, String value) {
+        int p = findParam(name);
+        return p >= 0 && equals(buffer, params[p + 2], params[p + 3], value);
+    }
+
+    private int findParam(String name) {
+        for (int p = 4 * (paramCount - 1); p >= 0; p -= 4) {
+            if (equals(buffer, params[p], params[p + 1], name)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /** Splits {@code a=1&b=2} and decodes each name and value in place. */
+    private void parsePairs(int from, int to) {
+        int pairStart = from;
+        while (pairStart < to) {
+            int pairEnd = indexOf(buffer, pairStart, to, '&');
+            if (pairEnd < 0) {
+                pairEnd = to;
+            }
+            int equals = indexOf(buffer, pairStart, pairEnd, '=');
+            if (equals > pairStart) {
+                if (paramCount == MAX_PARAMS) {
+                    throw new IllegalArgumentException("Too many parameters");
+                }
+                int p = 4 * paramCount++;
+                params[p] = pairStart;
+                params[p + 1] = decode(pairStart, equals);
+                params[p + 2] = equals + 1;
+                params[p + 3] = decode(equals + 1, pairEnd);
+            }
+            pairStart = pairEnd + 1;
+        }
+    }
+
+    /**
+     * Percent-decodes {@code [from, to)} over itself; the result is never longer.
+     * @return the end of the decoded bytes
+     */
+    private int decode(int from, int to) {
+        int write = from;
+        for (int read = from; read < to; read++) {
+            byte b = buffer.get(read);
+            if (b == '+') {
+                b = ' ';
+            } else if (b == '%') {
+                int high = read + 2 < to ? hex(buffer.get(read + 1)) : -1;
+                int low = read + 2 < to ? hex(buffer.get(read + 2)) : -1;
+                if (high < 0 || low < 0) {
+                    throw new IllegalArgumentException("Malformed percent-encoding");
+                }
+                b = (byte) (high << 4 | low);
+                read += 2;
+            }
+            buffer.put(write++, b);
+        }
+        return write;
+    }
+
+    private static int hex(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    // --- Byte helpers ---
+
+    private String string(int from, int to, Charset charset) {
+        if (to - from > scratch.length) {
+            scratch = new byte[Math.max(to - from, 2 * scratch.length)];
+        }
+        buffer.get(from, scratch, 0, to - from);
+        return new String(scratch, 0, to - from, charset);
+    }
+
+    private static int indexOf(ByteBuffer in, int from, int to, char value) {
+        for (int i = from; i < to; i++) {
+            if (in.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Optional whitespace around a header value (RFC 9110, 5.6.3). */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static int trimCr(ByteBuffer in, int from, int newline) {
+        return newline > from && in.get(newline - 1) == '\r' ? newline - 1 : newline;
+    }
+
+    private static boolean equals(ByteBuffer in, int from, int to, String expected) {
+        if (to - from != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (in.get(from + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(ByteBuffer in, int from, int to, String expected) {
+        if (to - from != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            int b = in.get(from + i);
+            char c = expected.charAt(i);
+            if (b != c && Character.toLowerCase(b) != Character.toLowerCase(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsIgnoreCase(ByteBuffer in, int from, int to, String expected) {
+        for (int i = from; i <= to - expected.length(); i++) {
+            if (equalsIgnoreCase(in, i, i + expected.length(), expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int parseLength(ByteBuffer in, int from, int to) {
+        if (from == to || to - from > 9) {
+            throw new IllegalArgumentException("Invalid Content-Length");
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = in.get(i);
+            if (b < '0' || b > '9') {
+                throw new IllegalArgumentException("Invalid Content-Length");
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+}
@@ -3,15 +3,22 @@ package server;
 import com.sun.net.httpserver.*;
 import passkey.*;
 import modern.PasskeyCredential;
+import storage.AuditLog;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 
 public class MainServer {
 
     public static void main(String[] args) throws IOException {
+        AuditLog.shared(); // open the audit file now, not on the first request
         CredentialRepository repo = new CredentialRepository();
-        WebAuthnService auth = new WebAuthnService(repo);
+        WebAuthnService auth = new WebAuthnService(repo, "http://localhost:8080");
 
         HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
 
@@ -28,23 +35,74 @@ public class MainServer {
             sendResponse(exchange, "QR session created: " + sessionId);
         });
 
+        // Login is a WebAuthn ceremony: fetch a one-time challenge, then send the assertion signed over it
+        server.createContext("/authenticate/options", exchange -> {
+            String username = query(exchange).get("username");
+            sendResponse(exchange, auth.startAuthentication(username));
+        });
+
         server.createContext("/authenticate", exchange -> {
-            String[] params = exchange.getRequestURI().getQuery().split("&");
-            String id = params[0].split("=")[1];
-            String username = params[1].split("=")[1];
-            boolean valid = auth.authenticate(id, username);
-            sendResponse(exchange, "Authentication for " + username + " = " + valid);
+            Map<String, String> params = query(exchange);
+            String id = params.get("id");
+            byte[][] assertion;
+            try {
+                assertion = new byte[][]{decode(params.get("authenticatorData")),
+                        decode(params.get("clientDataJSON")), decode(params.get("signature"))};
+            } catch (IllegalArgumentException e) {
+                assertion = null;
+            }
+            if (id == null || assertion == null) {
+                sendResponse(exchange, 400, "Assertion required: id, authenticatorData, clientDataJSON, signature");
+                return;
+            }
+            auth.authenticateAsync(id, assertion[0], assertion[1], assertion[2]).whenComplete((valid, error) -> {
+                try {
+                    if (error != null) {
+                        sendResponse(exchange, 503, "Server busy, try again");
+                    } else {
+                        sendResponse(exchange, valid ? 200 : 401, "Authentication for " + id + " = " + valid);
+                    }
+                } catch (IOException e) {
+                    exchange.close();
+                }
+            });
         });
 
-        server.setExecutor(null);
+        server.setExecutor(ServerExecutors.newHttpServerExecutor("main-server", 1));
         server.start();
         System.out.println("Server started on http://localhost:8080");
     }
 
     private static void sendResponse(HttpExchange exchange, String response) throws IOException {
-        exchange.sendResponseHeaders(200, response.getBytes().length);
+        sendResponse(exchange, 200, response);
+    }
+
+    private static void sendResponse(HttpExchange exchange, int status, String response) throws IOException {
+        exchange.sendResponseHeaders(status, response.getBytes().length);
         OutputStream os = exchange.getResponseBody();
         os.write(response.getBytes());
         os.close();
     }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static byte[] decode(String base64url) {
+        if (base64url == null) {
+            throw new IllegalArgumentException("Missing value");
+        }
+        return Base64.getUrlDecoder().decode(base64url);
+    }
 }
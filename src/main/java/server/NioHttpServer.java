@@ -0,0 +1,522 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Minimal HTTP/1.1 server with one selector thread doing all the socket I/O.
+ * <ul>
+ *     <li>Connections stay open between requests (keep-alive) until the client asks
+ *     for {@code Connection: close}, sends HTTP/1.0 without keep-alive, or stays idle
+ *     for {@link #IDLE_TIMEOUT_MILLIS}. A request must arrive in full within
+ *     {@link #HEAD_TIMEOUT_MILLIS} of its first byte, so a client dripping bytes cannot
+ *     hold a connection.</li>
+ *     <li>At most {@link #MAX_CONNECTIONS} are open at once; beyond that new ones are
+ *     closed as soon as they are accepted.</li>
+ *     <li>Each connection reads into a direct buffer taken from a pool and returned on
+ *     close. Requests are parsed in that buffer by an {@link HttpRequestView}, without
+ *     allocating; pipelined requests already in it are answered as one batch.</li>
+ *     <li>Response heads are encoded into a second pooled direct buffer and written
+ *     together with the bodies in one gathering write.</li>
+ * </ul>
+ * Given an executor, the server runs the handler there, one request per connection at a
+ * time: the connection stops reading until its response is posted back to the selector.
+ * Without one, the handler runs on the selector thread and must not block, log or
+ * otherwise wait, since every connection waits with it.
+ */
+public class NioHttpServer implements AutoCloseable {
+
+    public static final long IDLE_TIMEOUT_MILLIS = 30_000;
+    public static final long HEAD_TIMEOUT_MILLIS = 10_000;
+    public static final int MAX_CONNECTIONS = 4_096;
+
+    private static final int READ_BUFFER_BYTES = 8 * 1024;
+    private static final int HEAD_BUFFER_BYTES = 4 * 1024;
+    private static final int MAX_HEAD_BYTES = 512;
+    private static final int MAX_PIPELINE = 16;
+    private static final int POOLED_BUFFERS = 256;
+    private static final long SWEEP_MILLIS = 1_000;
+
+    public interface Handler {
+        /** The view is only valid during the call. */
+        Response handle(HttpRequestView request);
+    }
+
+    public static class Response {
+        public final int status;
+        public final String reason;
+        public final String contentType;
+        public final ByteBuffer body;
+        public final boolean close;
+
+        /**
+         * @param body written from its position to its limit; it is duplicated for each
+         *             write, so one response can be cached and sent many times
+         * @param close whether to close the connection once it is written
+         */
+        public Response(int status, String reason, String contentType, ByteBuffer body, boolean close) {
+            this.status = status;
+            this.reason = reason;
+            this.contentType = contentType;
+            this.body = body;
+            this.close = close;
+        }
+
+        public static Response html(String html) {
+            return new Response(200, "OK", "text/html; charset=UTF-8",
+                    ByteBuffer.wrap(html.getBytes(StandardCharsets.UTF_8)), false);
+        }
+
+        public static Response json(String json) {
+            return new Response(200, "OK", "application/json",
+                    ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), false);
+        }
+
+        /** A response whose body lives in a direct buffer, for pages sent often. */
+        public static Response cached(int status, String reason, String contentType, String body, boolean close) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+            return new Response(status, reason, contentType, buffer.asReadOnlyBuffer(), close);
+        }
+    }
+
+    private static final Response BAD_REQUEST = Response.cached(400, "Bad Request",
+            "text/plain; charset=UTF-8", "Bad Request", true);
+    private static final Response TOO_LARGE = Response.cached(413, "Content Too Large",
+            "text/plain; charset=UTF-8", "Request too large", true);
+    private static final Response NOT_IMPLEMENTED = Response.cached(501, "Not Implemented",
+            "text/plain; charset=UTF-8", "Transfer-Encoding not supported", true);
+    private static final Response SERVER_ERROR = Response.cached(500, "Internal Server Error",
+            "text/plain; charset=UTF-8", "Internal Server Error", true);
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in;
+        final ByteBuffer head;
+        final HttpRequestView request;
+        SelectionKey key;
+        boolean inFlight; // the handler is reading the request in place, in is left alone
+        Response response; // handed back by the executor
+        final ByteBuffer[] out = new ByteBuffer[2 * MAX_PIPELINE];
+        int outCount;
+        int outIndex;
+        boolean closeAfterWrite;
+        long lastActive;
+        long headStart; // when the first byte of the pending request arrived, 0 if none
+
+        Connection(SocketChannel channel, ByteBuffer in, ByteBuffer head, HttpRequestView request) {
+            this.channel = channel;
+            this.in = in;
+            this.head = head;
+            this.request = request;
+        }
+    }
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Handler handler;
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Connection> completed = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<ByteBuffer> readBuffers = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> headBuffers = new ArrayDeque<>();
+    private final HttpRequestView request = new HttpRequestView(); // shared when the handler runs inline
+    private Thread thread;
+    private volatile boolean running;
+    private long lastSweep;
+    private int open; // selector thread only
+
+    private volatile long accepted;
+    private volatile long requests;
+    private volatile long rejected;
+
+    /**
+     * Binds the port; {@link #start} begins serving. The handler runs on the selector
+     * thread.
+     */
+    public NioHttpServer(int port, Handler handler) throws IOException {
+        this(port, handler, null);
+    }
+
+    /**
+     * @param executor runs the handler; null to run it on the selector thread
+     */
+    public NioHttpServer(int port, Handler handler, Executor executor) throws IOException {
+        this.handler = handler;
+        this.executor = executor;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    public void start(String threadName) {
+        running = true;
+        thread = new Thread(this::selectLoop, threadName);
+        thread.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    /** Connections closed on accept because {@link #MAX_CONNECTIONS} were open. */
+    public long getRejected() {
+        return rejected;
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select(SWEEP_MILLIS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    try {
+                        if (key.isWritable()) {
+                            serve(key);
+                        } else if (key.isReadable()) {
+                            read(key);
+                        }
+                    } catch (IOException | CancelledKeyException e) {
+                        close(key);
+                    }
+                }
+                Connection done;
+                while ((done = completed.poll()) != null) {
+                    complete(done);
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= SWEEP_MILLIS) {
+                    lastSweep = now;
+                    closeIdle(now);
+                }
+            } catch (IOException e) {
+                System.err.println("❌ Selector error: " + e.getMessage());
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            close(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+            if (open >= MAX_CONNECTIONS) {
+                rejected++;
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Ignore
+                }
+                continue;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(channel, borrow(readBuffers, READ_BUFFER_BYTES),
+                        borrow(headBuffers, HEAD_BUFFER_BYTES), executor != null ? new HttpRequestView() : request);
+                connection.lastActive = System.currentTimeMillis();
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                open++;
+                accepted++;
+            } catch (IOException e) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.channel.read(connection.in) < 0) {
+            close(key);
+            return;
+        }
+        connection.lastActive = System.currentTimeMillis();
+        if (connection.headStart == 0) {
+            connection.headStart = connection.lastActive;
+        }
+        serve(key);
+    }
+
+    /**
+     * Alternates between flushing queued responses and answering the requests already
+     * buffered, until the socket is full or no complete request is left.
+     */
+    private void serve(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        while (true) {
+            if (connection.outIndex < connection.outCount) {
+                if (!flush(connection)) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (connection.closeAfterWrite) {
+                    close(key);
+                    return;
+                }
+            }
+            if (!answerBuffered(connection)) {
+                key.interestOps(connection.inFlight ? 0 : SelectionKey.OP_READ);
+                return;
+            }
+        }
+    }
+
+    private boolean flush(Connection connection) throws IOException {
+        connection.channel.write(connection.out, connection.outIndex, connection.outCount - connection.outIndex);
+        while (connection.outIndex < connection.outCount && !connection.out[connection.outIndex].hasRemaining()) {
+            connection.out[connection.outIndex++] = null;
+        }
+        if (connection.outIndex < connection.outCount) {
+            return false;
+        }
+        connection.outIndex = 0;
+        connection.outCount = 0;
+        connection.lastActive = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Parses the complete requests in the read buffer, up to {@link #MAX_PIPELINE}, and
+     * queues their responses. With an executor, hands the first one to it instead.
+     * @return false if there was none, or it went to the executor
+     */
+    private boolean answerBuffered(Connection connection) {
+        if (connection.inFlight) {
+            return false;
+        }
+        ByteBuffer in = connection.in;
+        HttpRequestView request = connection.request;
+        connection.head.clear();
+        in.flip();
+        boolean parsed = false;
+        while (connection.outCount < connection.out.length
+                && connection.head.remaining() >= MAX_HEAD_BYTES && !connection.closeAfterWrite) {
+            try {
+                if (!request.parse(in)) {
+                    if (in.position() == 0 && in.limit() == in.capacity()) {
+                        queue(connection, TOO_LARGE, true);
+                    }
+                    break;
+                }
+            } catch (HttpRequestView.RequestTooLarge e) {
+                queue(connection, TOO_LARGE, true);
+                break;
+            } catch (HttpRequestView.UnsupportedTransferEncoding e) {
+                queue(connection, NOT_IMPLEMENTED, true);
+                break;
+            } catch (IllegalArgumentException e) {
+                queue(connection, BAD_REQUEST, true);
+                break;
+            }
+            parsed = true;
+            requests++;
+            if (executor == null) {
+                queue(connection, handle(request), !request.isKeepAlive());
+            } else if (dispatch(connection)) {
+                connection.headStart = 0;
+                return false; // in stays as it is until complete()
+            } else {
+                queue(connection, SERVER_ERROR, true);
+                break;
+            }
+        }
+        compact(connection, parsed);
+        return connection.outCount > 0;
+    }
+
+    private static void compact(Connection connection, boolean parsed) {
+        ByteBuffer in = connection.in;
+        in.compact();
+        if (in.position() == 0) {
+            connection.headStart = 0;
+        } else if (parsed || connection.headStart == 0) {
+            connection.headStart = System.currentTimeMillis(); // the start of the next request
+        }
+    }
+
+    /** @return false if the executor refused the task */
+    private boolean dispatch(Connection connection) {
+        connection.inFlight = true;
+        try {
+            executor.execute(() -> {
+                connection.response = handle(connection.request);
+                completed.add(connection);
+                selector.wakeup();
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            connection.inFlight = false;
+            return false;
+        }
+    }
+
+    /** Selector thread: queues the response the executor produced and resumes the connection. */
+    private void complete(Connection connection) {
+        Response response = connection.response;
+        connection.response = null;
+        connection.inFlight = false;
+        SelectionKey key = connection.key;
+        if (!key.isValid()) {
+            release(readBuffers, connection.in); // closed while the handler ran
+            return;
+        }
+        queue(connection, response, !connection.request.isKeepAlive());
+        compact(connection, true);
+        try {
+            serve(key);
+        } catch (IOException | CancelledKeyException e) {
+            close(key);
+        }
+    }
+
+    private Response handle(HttpRequestView request) {
+        try {
+            Response response = handler.handle(request);
+            return response != null ? response : SERVER_ERROR;
+        } catch (RuntimeException e) {
+            System.err.println("❌ Error handling request: " + e.getMessage());
+            return SERVER_ERROR;
+        }
+    }
+
+    private void queue(Connection connection, Response response, boolean requestClose) {
+        boolean close = requestClose || response.close;
+        ByteBuffer body = response.body.duplicate();
+        ByteBuffer head = connection.head;
+        int start = head.position();
+        putAscii(head, "HTTP/1.1 ");
+        putAscii(head, Integer.toString(response.status));
+        head.put((byte) ' ');
+        putAscii(head, response.reason);
+        putAscii(head, "\r\nContent-Type: ");
+        putAscii(head, response.contentType);
+        putAscii(head, "\r\nContent-Length: ");
+        putAscii(head, Integer.toString(body.remaining()));
+        putAscii(head, close ? "\r\nConnection: close\r\n\r\n" : "\r\nConnection: keep-alive\r\n\r\n");
+        connection.out[connection.outCount++] = head.slice(start, head.position() - start);
+        connection.out[connection.outCount++] = body;
+        connection.closeAfterWrite = close;
+    }
+
+    private static void putAscii(ByteBuffer buffer, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    // --- Connections and buffers ---
+
+    private static ByteBuffer borrow(ArrayDeque<ByteBuffer> pool, int bytes) {
+        ByteBuffer buffer = pool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bytes);
+    }
+
+    private static void release(ArrayDeque<ByteBuffer> pool, ByteBuffer buffer) {
+        if (pool.size() < POOLED_BUFFERS) {
+            pool.push(buffer.clear());
+        }
+    }
+
+    private void closeIdle(long now) {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection connection
+                    && (now - connection.lastActive > IDLE_TIMEOUT_MILLIS
+                    || connection.headStart != 0 && now - connection.headStart > HEAD_TIMEOUT_MILLIS)) {
+                close(key);
+            }
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        if (key.attachment() instanceof Connection connection) {
+            key.attach(null);
+            open--;
+            Arrays.fill(connection.out, null);
+            if (!connection.inFlight) {
+                release(readBuffers, connection.in); // otherwise complete() does
+            }
+            release(headBuffers, connection.head);
+        }
+    }
+
+    /** Stops accepting and closes every connection. */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package server;
+
+import io.javalin.util.ConcurrencyUtil;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Shared threading knob for the HTTP servers, read from the {@code server.threads}
+ * system property when a server is built:
+ * <ul>
+ *     <li>{@code virtual} (default): one virtual thread per request or connection, so
+ *     parked long-polls and slow clients cost memory, not platform threads;</li>
+ *     <li>{@code platform}: each server's historical pool of platform threads.</li>
+ * </ul>
+ * Javalin servers follow the same setting through Javalin's own Loom switch.
+ */
+public final class ServerExecutors {
+
+    public static final String PROPERTY = "server.threads";
+
+    public enum Mode {
+        VIRTUAL, PLATFORM
+    }
+
+    private static volatile Mode override;
+
+    private ServerExecutors() {
+    }
+
+    public static Mode mode() {
+        Mode mode = override;
+        if (mode != null) {
+            return mode;
+        }
+        return "platform".equalsIgnoreCase(System.getProperty(PROPERTY)) ? Mode.PLATFORM : Mode.VIRTUAL;
+    }
+
+    /** Overrides the system property for servers built from now on; null restores it. */
+    public static void setMode(Mode mode) {
+        override = mode;
+    }
+
+    /**
+     * @param platformThreads pool size in platform mode; 0 or less for a new platform
+     *                        thread per task
+     */
+    public static ExecutorService newExecutor(String name, int platformThreads) {
+        if (mode() == Mode.VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        }
+        ThreadFactory factory = Thread.ofPlatform().name(name + "-", 0).factory();
+        return platformThreads > 0
+                ? Executors.newFixedThreadPool(platformThreads, factory)
+                : Executors.newThreadPerTaskExecutor(factory);
+    }
+
+    /**
+     * Executor for a {@code com.sun.net.httpserver.HttpServer}. Its request streams block
+     * inside synchronized methods, which pin a virtual thread to its carrier before JDK 24
+     * (JEP 491): one slow client could then stall every virtual thread. On those JDKs,
+     * virtual mode gives each exchange its own platform thread instead.
+     */
+    public static ExecutorService newHttpServerExecutor(String name, int platformThreads) {
+        if (mode() == Mode.VIRTUAL && Runtime.version().feature() < 24) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofPlatform().name(name + "-", 0).factory());
+        }
+        return newExecutor(name, platformThreads);
+    }
+
+    /**
+     * Applies the mode to Javalin; call before {@code Javalin.create}. Virtual mode
+     * needs a JDK with virtual threads, otherwise Javalin keeps its platform pool.
+     */
+    public static void configureJavalin() {
+        ConcurrencyUtil.INSTANCE.setUseLoom(mode() == Mode.VIRTUAL);
+    }
+}
@@ -4,17 +4,52 @@ import passkey.CredentialRepository;
 import passkey.WebAuthnService;
 import modern.PasskeyCredential;
 import io.javalin.Javalin;
+import storage.AuditLog;
+
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Map;
 
 public class WebAuthnController {
 
+    // Attribut de session posé après une connexion réussie
+    private static final String SESSION_USER = "username";
+
     public static void main(String[] args) {
+        // Ouverture du journal d'audit au démarrage plutôt qu'à la première requête
+        AuditLog.shared();
+
         // Initialisation du repository et du service WebAuthn
         CredentialRepository repo = new CredentialRepository();
         WebAuthnService service = new WebAuthnService(repo);
 
         // Démarrage du serveur Javalin sur le port 7000
+        ServerExecutors.configureJavalin();
         Javalin app = Javalin.create().start(7000);
 
+        // 🔹 Challenge d'enregistrement, à usage unique ; un compte existant n'ajoute une passkey
+        // que si l'appelant est connecté en tant que ce compte
+        app.post("/register/options", ctx -> {
+            String username = ctx.formParam("username");
+            if (username == null || username.isEmpty()) {
+                ctx.status(400).result("Username requis !");
+                return;
+            }
+            try {
+                ctx.json(challengeOptions(service,
+                        service.startRegistration(username, ctx.sessionAttribute(SESSION_USER))));
+            } catch (GeneralSecurityException e) {
+                ctx.status(403).result("Utilisateur déjà enregistré : connectez-vous d'abord !");
+            }
+        });
+
+        // 🔹 Challenge de connexion (username facultatif)
+        app.post("/login/options", ctx -> {
+            String username = ctx.formParam("username");
+            ctx.json(challengeOptions(service, service.startAuthentication(
+                    username == null || username.isEmpty() ? null : username)));
+        });
+
         // 🔹 Enregistrement d'un utilisateur
         app.post("/register", ctx -> {
             String username = ctx.formParam("username");
@@ -22,43 +57,103 @@ public class WebAuthnController {
                 ctx.status(400).result("Username requis !");
                 return;
             }
-            PasskeyCredential cred = service.registerUser(username);
-            ctx.json(cred);
+            String attestationObject = ctx.formParam("attestationObject");
+            String clientDataJSON = ctx.formParam("clientDataJSON");
+            try {
+                if (attestationObject != null) {
+                    // attestationObject WebAuthn complet (base64url), challenge vérifié dans clientDataJSON
+                    if (clientDataJSON == null) {
+                        ctx.status(400).result("clientDataJSON requis !");
+                        return;
+                    }
+                    ctx.json(service.registerUser(username, decode(attestationObject), decode(clientDataJSON)));
+                } else if (service.hasPasskey(username) && !username.equals(ctx.sessionAttribute(SESSION_USER))) {
+                    ctx.status(403).result("Utilisateur déjà enregistré : connectez-vous d'abord !");
+                } else {
+                    ctx.json(service.registerUser(username));
+                }
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                ctx.status(400).result("Enregistrement refusé : " + e.getMessage());
+            }
         });
 
-        // 🔹 Authentification d'un utilisateur
+        // 🔹 Authentification d'un utilisateur : vérification de l'assertion WebAuthn
         app.post("/login", ctx -> {
             String id = ctx.formParam("id");
-            String username = ctx.formParam("username");
-            if (service.authenticate(id, username)) {
-                ctx.result("Authentification réussie !");
-            } else {
-                ctx.result("Échec de l'authentification !");
+            String authenticatorData = ctx.formParam("authenticatorData");
+            String clientDataJSON = ctx.formParam("clientDataJSON");
+            String signature = ctx.formParam("signature");
+            if (id == null || authenticatorData == null || clientDataJSON == null || signature == null) {
+                ctx.status(400).result("Assertion requise !");
+                return;
             }
+            byte[][] assertion;
+            try {
+                assertion = new byte[][]{decode(authenticatorData), decode(clientDataJSON), decode(signature)};
+            } catch (IllegalArgumentException e) {
+                ctx.status(401).result("Échec de l'authentification !");
+                return;
+            }
+            // Vérification de la signature sur le pool dédié : le thread HTTP est libéré
+            ctx.future(() -> service.authenticateAsync(id, assertion[0], assertion[1], assertion[2])
+                    .handle((valid, error) -> {
+                        if (error != null) {
+                            ctx.status(503).result("Serveur occupé, réessayez !");
+                        } else if (valid) {
+                            PasskeyCredential credential = repo.findById(id);
+                            if (credential != null) {
+                                ctx.sessionAttribute(SESSION_USER, credential.getUsername());
+                            }
+                            ctx.result("Authentification réussie !");
+                        } else {
+                            ctx.status(401).result("Échec de l'authentification !");
+                        }
+                        return null;
+                    }));
         });
 
-        // 🔹 Réinitialiser la passkey d'un utilisateur
+        // 🔹 Réinitialiser la passkey d'un utilisateur : réservé au propriétaire connecté
         app.post("/reset", ctx -> {
             String username = ctx.formParam("username");
             if (username == null || username.isEmpty()) {
                 ctx.status(400).result("Username requis !");
                 return;
             }
+            if (!username.equals(ctx.sessionAttribute(SESSION_USER))) {
+                ctx.status(403).result("Connectez-vous d'abord !");
+                return;
+            }
             PasskeyCredential newCred = service.resetPasskey(username);
             ctx.json(newCred);
         });
 
-        // 🔹 Supprimer un utilisateur
+        // 🔹 Supprimer un utilisateur : réservé au propriétaire connecté
         app.post("/delete", ctx -> {
             String username = ctx.formParam("username");
             if (username == null || username.isEmpty()) {
                 ctx.status(400).result("Username requis !");
                 return;
             }
+            if (!username.equals(ctx.sessionAttribute(SESSION_USER))) {
+                ctx.status(403).result("Connectez-vous d'abord !");
+                return;
+            }
             boolean success = service.deleteUser(username);
+            if (success) {
+                ctx.sessionAttribute(SESSION_USER, null); // le compte n'existe plus
+            }
             ctx.result(success ? "Utilisateur supprimé !" : "Utilisateur non trouvé !");
         });
 
         System.out.println("Serveur démarré sur http://localhost:7000");
     }
+
+    private static Map<String, Object> challengeOptions(WebAuthnService service, String challenge) {
+        return Map.of("challenge", challenge, "rpId", "localhost",
+                "timeout", service.getChallenges().getTtlMillis());
+    }
+
+    private static byte[] decode(String base64url) {
+        return Base64.getUrlDecoder().decode(base64url);
+    }
 }
@@ -0,0 +1,346 @@
+package storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous audit trail written as JSON lines to {@code audit.jsonl}.
+ * <ul>
+ *     <li>{@link #record} puts the event in a {@link RingBuffer} and returns; it never
+ *     blocks or does I/O. If the ring is full the event is dropped and counted.</li>
+ *     <li>One daemon writer thread drains the ring in batches and appends each batch
+ *     with a single write. When the ring is empty it parks until {@link #record} wakes
+ *     it.</li>
+ *     <li>Past {@code maxFileBytes} the file is rotated to {@code audit.1.jsonl},
+ *     {@code audit.2.jsonl}, ... keeping {@code maxFiles} old files.</li>
+ * </ul>
+ * Writes are not forced to disk; {@link #close} drains what is left.
+ */
+public final class AuditLog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final long DEFAULT_MAX_FILE_BYTES = 64L * 1024 * 1024;
+    private static final int DEFAULT_MAX_FILES = 5;
+    private static final int BATCH_SIZE = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100); // bounds a missed wake-up
+    private static final String FILE_NAME = "audit";
+    private static final int OUT_BUFFER_BYTES = 256 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static volatile AuditLog shared;
+
+    public static class AuditEvent {
+        public final long timestamp;
+        public final String type;
+        public final String subject;
+        public final String detail;
+
+        public AuditEvent(long timestamp, String type, String subject, String detail) {
+            this.timestamp = timestamp;
+            this.type = type;
+            this.subject = subject;
+            this.detail = detail;
+        }
+    }
+
+    private final Path directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final RingBuffer<AuditEvent> ring;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean idle;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(OUT_BUFFER_BYTES); // writer thread only
+    private FileChannel channel;
+    private long fileBytes;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long written;
+    private volatile long batches;
+    private volatile long rotations;
+
+    public AuditLog(Path directory) throws IOException {
+        this(directory, DEFAULT_CAPACITY, DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILES);
+    }
+
+    public AuditLog(Path directory, int capacity, long maxFileBytes, int maxFiles) throws IOException {
+        if (maxFileBytes <= 0 || maxFiles < 1) {
+            throw new IllegalArgumentException("File size and file count must be positive");
+        }
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.ring = new RingBuffer<>(capacity);
+        Files.createDirectories(directory);
+        open();
+        this.writer = new Thread(this::writeLoop, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** A log whose file could not be opened: every event is dropped and counted. */
+    private AuditLog() {
+        this.directory = null;
+        this.maxFileBytes = 0;
+        this.maxFiles = 0;
+        this.ring = null;
+        this.writer = null;
+        this.running = false;
+    }
+
+    /**
+     * The process-wide audit log, in the directory named by the {@code audit.dir}
+     * system property ({@code audit} by default). Drained on JVM shutdown. Servers call
+     * it at startup so the file is opened there rather than on a request. Never throws:
+     * if the file cannot be opened, a warning is logged and the returned log drops every
+     * event.
+     */
+    public static AuditLog shared() {
+        AuditLog log = shared;
+        if (log == null) {
+            synchronized (AuditLog.class) {
+                log = shared;
+                if (log == null) {
+                    String directory = System.getProperty("audit.dir", "audit");
+                    try {
+                        log = new AuditLog(Paths.get(directory));
+                        Runtime.getRuntime().addShutdownHook(new Thread(log::close, "audit-shutdown"));
+                    } catch (IOException | RuntimeException e) {
+                        logger.warn("Audit log disabled, cannot open {}: {}", directory, e.getMessage());
+                        log = new AuditLog();
+                    }
+                    shared = log;
+                }
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Queues an event without blocking.
+     * @return false if the ring was full and the event was dropped
+     */
+    public boolean record(String type, String subject, String detail) {
+        if (ring != null && ring.offer(new AuditEvent(System.currentTimeMillis(), type, subject, detail))) {
+            recorded.increment();
+            if (idle) {
+                LockSupport.unpark(writer);
+            }
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getRotations() {
+        return rotations;
+    }
+
+    public int getPending() {
+        return ring != null ? ring.size() : 0;
+    }
+
+    /** @return the current file, or null if the log could not be opened */
+    public Path getFile() {
+        return directory != null ? directory.resolve(FILE_NAME + ".jsonl") : null;
+    }
+
+    private void writeLoop() {
+        AuditEvent[] batch = new AuditEvent[BATCH_SIZE];
+        while (running) {
+            if (writeBatch(batch) == 0) {
+                idle = true;
+                // Re-check after announcing: an event offered before record() saw the flag is found here
+                if (ring.size() == 0 && running) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                idle = false;
+            }
+        }
+    }
+
+    private int writeBatch(AuditEvent[] batch) {
+        int count = ring.drainTo(batch);
+        if (count == 0) {
+            return 0;
+        }
+        try {
+            for (int i = 0; i < count; i++) {
+                putJson(batch[i]);
+                batch[i] = null;
+            }
+            flush();
+            written += count;
+            batches++;
+            if (fileBytes >= maxFileBytes) {
+                rotate();
+            }
+        } catch (IOException e) {
+            out.clear();
+            logger.warn("Audit batch of {} events lost: {}", count, e.getMessage());
+        }
+        return count;
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        fileBytes += out.remaining();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private void open() throws IOException {
+        Path file = getFile();
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        Files.deleteIfExists(directory.resolve(FILE_NAME + "." + maxFiles + ".jsonl"));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path older = directory.resolve(FILE_NAME + "." + i + ".jsonl");
+            if (Files.exists(older)) {
+                Files.move(older, directory.resolve(FILE_NAME + "." + (i + 1) + ".jsonl"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(getFile(), directory.resolve(FILE_NAME + ".1.jsonl"), StandardCopyOption.REPLACE_EXISTING);
+        open();
+        rotations++;
+    }
+
+    // JSON is encoded straight to UTF-8 bytes in the writer's buffer: no per-batch
+    // StringBuilder or charset encoder.
+
+    private void putJson(AuditEvent event) throws IOException {
+        putAscii("{\"ts\":");
+        putAscii(Long.toString(event.timestamp));
+        putAscii(",\"type\":");
+        putString(event.type);
+        putAscii(",\"subject\":");
+        putString(event.subject);
+        putAscii(",\"detail\":");
+        putString(event.detail);
+        putAscii("}\n");
+    }
+
+    private void putString(String value) throws IOException {
+        if (value == null) {
+            putAscii("null");
+            return;
+        }
+        put('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    put('\\');
+                }
+                put(c);
+            } else if (c < 0x20) {
+                switch (c) {
+                    case '\n' -> putAscii("\\n");
+                    case '\r' -> putAscii("\\r");
+                    case '\t' -> putAscii("\\t");
+                    default -> {
+                        putAscii("\\u00");
+                        put(HEX[c >> 4]);
+                        put(HEX[c & 0xF]);
+                    }
+                }
+            } else if (c < 0x800) {
+                put(0xC0 | (c >> 6));
+                put(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                put(0xF0 | (codePoint >> 18));
+                put(0x80 | ((codePoint >> 12) & 0x3F));
+                put(0x80 | ((codePoint >> 6) & 0x3F));
+                put(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                put('?'); // unpaired surrogate
+            } else {
+                put(0xE0 | (c >> 12));
+                put(0x80 | ((c >> 6) & 0x3F));
+                put(0x80 | (c & 0x3F));
+            }
+        }
+        put('"');
+    }
+
+    private void putAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            put(text.charAt(i));
+        }
+    }
+
+    private void put(int b) throws IOException {
+        if (!out.hasRemaining()) {
+            flush();
+        }
+        out.put((byte) b);
+    }
+
+    /**
+     * Stops the writer after it has written everything already recorded.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        AuditEvent[] batch = new AuditEvent[BATCH_SIZE];
+        while (writeBatch(batch) > 0) {
+            // drain what arrived before close
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Closing audit log failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package storage;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Small lock-free pool of objects that are costly to set up and not thread-safe, such as
+ * an initialised {@code Mac} or {@code Signature}, or a scratch buffer.
+ *
+ * <p>Unlike a {@code ThreadLocal}, it does not depend on thread identity: with one virtual
+ * thread per request, a thread-local copy would be built again for every request. Here
+ * an object is borrowed for one operation and released afterwards. Idle objects sit in a
+ * fixed array of slots; {@link #borrow} takes the first one found from a slot picked by
+ * thread id, and creates a new object if every slot is empty. {@link #release} puts it
+ * back in a free slot, or drops it if they are all taken.
+ */
+public final class ObjectPool<T> {
+
+    private final Supplier<? extends T> factory;
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+
+    /** Sized for the machine: two slots per core, at least 4, at most 64. */
+    public ObjectPool(Supplier<? extends T> factory) {
+        this(factory, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param slots how many idle objects are kept; rounded up to a power of two, 4 to 64
+     */
+    public ObjectPool(Supplier<? extends T> factory, int slots) {
+        int size = Integer.highestOneBit(Math.max(4, Math.min(64, slots)) - 1) << 1;
+        this.factory = factory;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /** An idle object, or a new one if none is left. Give it back with {@link #release}. */
+    public T borrow() {
+        int start = (int) Thread.currentThread().threadId();
+        for (int i = 0; i <= mask; i++) {
+            int slot = (start + i) & mask;
+            T object = slots.get(slot);
+            if (object != null && slots.compareAndSet(slot, object, null)) {
+                return object;
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * Makes the object available to the next {@link #borrow}. Only release objects in a
+     * clean state; one left half-way through an operation should just be dropped.
+     */
+    public void release(T object) {
+        int start = (int) Thread.currentThread().threadId();
+        for (int i = 0; i <= mask; i++) {
+            if (slots.compareAndSet((start + i) & mask, null, object)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer without locks.
+ *
+ * <p>Each slot carries a sequence number telling producers and the consumer whose turn
+ * it is. A producer claims a position with one CAS and publishes by bumping the slot's
+ * sequence; it never waits for the consumer. When the ring is full, {@link #offer}
+ * returns false straight away.
+ *
+ * <p>{@link #poll} and {@link #drainTo} must only be called from one thread at a time.
+ */
+public final class RingBuffer<E> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return false if the ring is full; the element is then not added
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Null element");
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = element;
+                    sequences.set(index, position + 1); // publishes the element
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // the consumer has not freed this slot yet
+            } else {
+                position = tail.get(); // another producer took it
+            }
+        }
+    }
+
+    /**
+     * @return the oldest published element, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = (E) slots[index];
+        slots[index] = null;
+        sequences.set(index, position + slots.length); // hands the slot to the next lap
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Moves up to {@code batch.length} elements into {@code batch}, oldest first.
+     * @return how many were moved
+     */
+    public int drainTo(E[] batch) {
+        int count = 0;
+        E element;
+        while (count < batch.length && (element = poll()) != null) {
+            batch[count++] = element;
+        }
+        return count;
+    }
+
+    /** Approximate number of elements waiting. */
+    public int size() {
+        return (int) Math.max(0, Math.min(slots.length, tail.get() - head));
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -1,4 +1,385 @@
 package storage;
 
-public class SessionRepository {
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Expiring, capacity-bounded key/value store for sessions and tokens.
+ * <ul>
+ *     <li>Every entry has its own expiry and can be renewed. Reads never return an
+ *     expired entry.</li>
+ *     <li>Expiry is driven by a hashed timing wheel. Each slot holds the entries due in
+ *     that tick, and a sweep only visits the slots that came due, so its cost is
+ *     proportional to what expires, not to what is stored.</li>
+ *     <li>Removing, replacing or renewing an entry leaves a stale reference in its old
+ *     slot. Once there are more stale references than the capacity, the sweeper thread
+ *     purges them from the whole wheel, so the wheel holds at most about twice the
+ *     capacity however fast entries churn.</li>
+ *     <li>At capacity, an insert evicts the entry closest to expiry.</li>
+ *     <li>All repositories share one daemon sweeper thread.</li>
+ * </ul>
+ * Operations are thread-safe. {@link #remove} is atomic, so an entry is handed out to at
+ * most one caller.
+ */
+public final class SessionRepository<V> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionRepository.class);
+    private static final long DEFAULT_RESOLUTION_MS = 1000;
+    private static final int WHEEL_SLOTS = 4096;
+
+    private static final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "session-repository-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Entry<V> {
+        final String id;
+        final V value;
+        volatile long expiresAt;
+        volatile int slot = -1; // where its current reference on the wheel is
+
+        Entry(String id, V value, long expiresAt) {
+            this.id = id;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final String name;
+    private final int capacity;
+    private final long defaultTtlMillis;
+    private final long resolutionMs;
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final List<Queue<Entry<V>>> wheel;
+    private final ScheduledFuture<?> sweepTask;
+    private volatile long sweptTick;
+    private volatile BiConsumer<String, V> removalListener;
+    private final AtomicInteger staleRefs = new AtomicInteger();
+    private final AtomicBoolean purgeScheduled = new AtomicBoolean();
+
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public SessionRepository(String name, int capacity, long defaultTtlMillis) {
+        this(name, capacity, defaultTtlMillis, DEFAULT_RESOLUTION_MS);
+    }
+
+    /**
+     * @param resolutionMs granularity of background expiry; reads are exact regardless
+     */
+    public SessionRepository(String name, int capacity, long defaultTtlMillis, long resolutionMs) {
+        if (capacity < 1 || defaultTtlMillis <= 0 || resolutionMs <= 0) {
+            throw new IllegalArgumentException("Capacity, TTL and resolution must be positive");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.resolutionMs = resolutionMs;
+        this.wheel = new ArrayList<>(WHEEL_SLOTS);
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+        this.sweptTick = System.currentTimeMillis() / resolutionMs;
+        this.sweepTask = sweeper.scheduleWithFixedDelay(this::sweepSafely, resolutionMs, resolutionMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called with entries that expired or were evicted, not with entries taken out by
+     * {@link #remove}.
+     */
+    public void setRemovalListener(BiConsumer<String, V> listener) {
+        this.removalListener = listener;
+    }
+
+    public void put(String id, V value) {
+        put(id, value, defaultTtlMillis);
+    }
+
+    /**
+     * Stores or replaces an entry. At capacity, the entry closest to expiry is evicted
+     * first; concurrent inserts can overshoot by at most one entry per inserting thread.
+     */
+    public void put(String id, V value, long ttlMillis) {
+        if (id == null || value == null || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Id, value and a positive TTL are required");
+        }
+        while (entries.size() >= capacity && !entries.containsKey(id)) {
+            if (!evictSoonest()) {
+                break;
+            }
+        }
+        Entry<V> entry = new Entry<>(id, value, System.currentTimeMillis() + ttlMillis);
+        if (entries.put(id, entry) != null) {
+            staleRef(); // the replaced entry's
+        }
+        schedule(entry);
+        puts.increment();
+    }
+
+    /**
+     * @return the live value, or null if absent or expired
+     */
+    public V get(String id) {
+        if (id == null) {
+            return null;
+        }
+        Entry<V> entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            if (expire(id, entry)) {
+                staleRef();
+            }
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Takes the entry out atomically.
+     * @return the value if it was present and live; of several concurrent callers, at
+     *         most one gets it
+     */
+    public V remove(String id) {
+        if (id == null) {
+            return null;
+        }
+        Entry<V> entry = entries.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        staleRef();
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            expired.increment();
+            notifyRemoval(id, entry.value);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Pushes a live entry's expiry to {@code ttlMillis} from now.
+     * @return the new expiry time, or -1 if the entry is absent or already expired
+     */
+    public long renew(String id, long ttlMillis) {
+        Entry<V> entry = id != null ? entries.get(id) : null;
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+            return -1;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        entry.expiresAt = expiresAt;
+        schedule(entry);
+        return expiresAt;
+    }
+
+    /**
+     * @return the entry's expiry time, or -1 if it is absent or expired
+     */
+    public long getExpiresAt(String id) {
+        Entry<V> entry = id != null ? entries.get(id) : null;
+        return entry != null && entry.expiresAt > System.currentTimeMillis() ? entry.expiresAt : -1;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getDefaultTtlMillis() {
+        return defaultTtlMillis;
+    }
+
+    public long getPuts() {
+        return puts.sum();
+    }
+
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    /**
+     * Runs the background expiry now instead of waiting for the next tick.
+     * @return how many entries it expired
+     */
+    public int sweep() {
+        long now = System.currentTimeMillis();
+        long nowTick = now / resolutionMs;
+        long from = sweptTick + 1;
+        if (nowTick - from >= WHEEL_SLOTS) {
+            from = nowTick - WHEEL_SLOTS + 1;
+        }
+
+        int removed = 0;
+        List<Entry<V>> keep = new ArrayList<>();
+        for (long tick = from; tick <= nowTick; tick++) {
+            int slot = slotOf(tick);
+            Queue<Entry<V>> queue = wheel.get(slot);
+            Entry<V> entry;
+            while ((entry = queue.poll()) != null) {
+                if (isStale(entry, slot)) {
+                    staleRefs.decrementAndGet(); // removed, replaced or renewed elsewhere
+                } else if (entry.expiresAt <= now) {
+                    if (expire(entry.id, entry)) {
+                        removed++;
+                    }
+                } else {
+                    keep.add(entry); // due in a later revolution of the wheel
+                }
+            }
+            queue.addAll(keep);
+            keep.clear();
+        }
+        sweptTick = nowTick;
+        if (removed > 0) {
+            logger.debug("[{}] expired {} entries, {} live", name, removed, entries.size());
+        }
+        return removed;
+    }
+
+    private void sweepSafely() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            logger.warn("[{}] sweep failed: {}", name, e.getMessage());
+        }
+    }
+
+    private boolean evictSoonest() {
+        long start = sweptTick + 1;
+        for (long tick = start; tick < start + WHEEL_SLOTS; tick++) {
+            int slot = slotOf(tick);
+            Queue<Entry<V>> queue = wheel.get(slot);
+            Entry<V> entry;
+            while ((entry = queue.poll()) != null) {
+                if (isStale(entry, slot)) {
+                    staleRefs.decrementAndGet();
+                    continue;
+                }
+                if (entries.remove(entry.id, entry)) {
+                    evicted.increment();
+                    notifyRemoval(entry.id, entry.value);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Whether this reference in {@code slot} no longer stands for a live schedule. */
+    private boolean isStale(Entry<V> entry, int slot) {
+        return entry.slot != slot || entries.get(entry.id) != entry;
+    }
+
+    /**
+     * Counts a reference left behind on the wheel; past the capacity, asks the sweeper
+     * thread for a purge.
+     */
+    private void staleRef() {
+        if (staleRefs.incrementAndGet() > capacity && purgeScheduled.compareAndSet(false, true)) {
+            try {
+                sweeper.execute(this::purgeStale);
+            } catch (RuntimeException e) {
+                purgeScheduled.set(false);
+            }
+        }
+    }
+
+    private void purgeStale() {
+        try {
+            int purged = 0;
+            for (int slot = 0; slot < WHEEL_SLOTS; slot++) {
+                Iterator<Entry<V>> references = wheel.get(slot).iterator();
+                while (references.hasNext()) {
+                    if (isStale(references.next(), slot)) {
+                        references.remove();
+                        purged++;
+                    }
+                }
+            }
+            staleRefs.addAndGet(-purged);
+            logger.debug("[{}] purged {} stale wheel references", name, purged);
+        } catch (RuntimeException e) {
+            logger.warn("[{}] purge failed: {}", name, e.getMessage());
+        } finally {
+            purgeScheduled.set(false);
+        }
+    }
+
+    private boolean expire(String id, Entry<V> entry) {
+        if (entries.remove(id, entry)) {
+            expired.increment();
+            notifyRemoval(id, entry.value);
+            return true;
+        }
+        return false;
+    }
+
+    private void notifyRemoval(String id, V value) {
+        BiConsumer<String, V> listener = removalListener;
+        if (listener != null) {
+            try {
+                listener.accept(id, value);
+            } catch (RuntimeException e) {
+                logger.warn("[{}] removal listener failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void schedule(Entry<V> entry) {
+        int slot = slotOf(Math.max(tickOf(entry.expiresAt), sweptTick + 1));
+        int previous = entry.slot;
+        if (previous == slot) {
+            return; // the reference already there covers the new expiry
+        }
+        entry.slot = slot;
+        wheel.get(slot).add(entry);
+        if (previous >= 0) {
+            staleRef();
+        }
+    }
+
+    private long tickOf(long time) {
+        return (time + resolutionMs - 1) / resolutionMs;
+    }
+
+    private static int slotOf(long tick) {
+        return (int) Math.floorMod(tick, (long) WHEEL_SLOTS);
+    }
+
+    @Override
+    public void close() {
+        sweepTask.cancel(false);
+        entries.clear();
+        for (Queue<Entry<V>> queue : wheel) {
+            queue.clear();
+        }
+        staleRefs.set(0);
+    }
 }